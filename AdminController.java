@@ -1,10 +1,92 @@
 package com.acadify;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Set;
 
 public class AdminController {
+    // Paths handled below; the route table for per-route metrics
+    static final Set<String> ROUTES = Set.of(
+            "/admin/create-student", "/admin/create-teacher", "/admin/create-subject", "/admin/assign-teacher",
+            "/admin/top-performers", "/admin/lowest-performers", "/admin/backlogs", "/admin/high-risk",
+            "/admin/stream-performance", "/admin/active-term", "/admin/changes", "/admin/activity",
+            "/admin/metrics", "/admin/system/limits", "/admin/system/rate-limits", "/admin/system/bulkheads",
+            "/admin/jfr/start", "/admin/jfr/stop", "/admin/system/slow-requests", "/admin/system/cache",
+            "/admin/system/breakers", "/admin/system/config", "/admin/config/reload");
+    private static final Set<String> AGGREGATE_PATHS = Set.of(
+            "/admin/top-performers", "/admin/lowest-performers", "/admin/backlogs",
+            "/admin/high-risk", "/admin/stream-performance");
+
+    // Aggregates are the same for every admin, so concurrent identical requests share one execution
+    private static final SingleFlight AGGREGATES = new SingleFlight("admin-aggregate");
+    // The heaviest aggregates may be served up to a few minutes old and are refreshed in the background
+    private static final AggregateCache AGGREGATE_CACHE = new AggregateCache("admin", AGGREGATES, 1);
+
+    static {
+        AGGREGATE_CACHE.register("/admin/stream-performance", "stream-performance", 60, 240);
+        AGGREGATE_CACHE.register("/admin/high-risk", "high-risk", 60, 240);
+        AGGREGATE_CACHE.register("/admin/backlogs", "backlogs", 60, 240);
+    }
+
+    // Row shapes of the list endpoints, selectable with ?fields=
+    private static final Projection.Schema PERFORMER_FIELDS = Projection.schema()
+            .field("student_id", Projection.Type.INT)
+            .field("student_name", Projection.Type.STRING)
+            .field("roll_number", Projection.Type.STRING)
+            .field("subject_name", Projection.Type.STRING)
+            .field("marks_obtained", Projection.Type.DECIMAL)
+            .field("semester", Projection.Type.INT);
+    private static final Projection.Schema BACKLOG_FIELDS = Projection.schema()
+            .field("student_id", Projection.Type.INT)
+            .field("student_name", Projection.Type.STRING)
+            .field("roll_number", Projection.Type.STRING)
+            .field("stream", Projection.Type.STRING)
+            .field("backlog_count", Projection.Type.INT);
+    private static final Projection.Schema HIGH_RISK_FIELDS = Projection.schema()
+            .field("student_id", Projection.Type.INT)
+            .field("student_name", Projection.Type.STRING)
+            .field("roll_number", Projection.Type.STRING)
+            .field("stream", Projection.Type.STRING)
+            .field("cgpa", Projection.Type.DECIMAL)
+            .field("backlog_count", Projection.Type.INT)
+            .field("risk_score", Projection.Type.DECIMAL);
+    private static final Projection.Schema STREAM_PERFORMANCE_FIELDS = Projection.schema()
+            .field("stream", Projection.Type.STRING)
+            .field("total_students", Projection.Type.INT)
+            .field("average_cgpa", Projection.Type.DECIMAL)
+            .field("highest_cgpa", Projection.Type.DECIMAL)
+            .field("lowest_cgpa", Projection.Type.DECIMAL);
+
+    static boolean isAggregate(String path) {
+        return AGGREGATE_PATHS.contains(path);
+    }
+
+    /**
+     * True for an aggregate request that the cache or an execution already running will
+     * answer, so it does not need a database connection of its own
+     */
+    static boolean isServedWithoutQuery(HttpExchange exchange) {
+        if (!exchange.getRequestMethod().equals("GET") || !isAggregate(exchange.getRequestURI().getPath())) return false;
+        return AGGREGATE_CACHE.canServe(exchange) || AGGREGATES.isInFlight(exchange);
+    }
+
     public static void handle(HttpExchange exchange, int userId) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (exchange.getRequestMethod().equals("GET") && isAggregate(path)) {
+            if (AGGREGATE_CACHE.isCached(path)) {
+                AGGREGATE_CACHE.serve(exchange, ex -> route(ex, userId));
+            } else {
+                AGGREGATES.execute(exchange, ex -> route(ex, userId));
+            }
+            return;
+        }
+        route(exchange, userId);
+    }
+
+    private static void route(HttpExchange exchange, int userId) throws IOException {
         String path = exchange.getRequestURI().getPath();
         String method = exchange.getRequestMethod();
         
@@ -50,10 +132,57 @@ public class AdminController {
                 else if (method.equals("POST")) handleSetActiveTerm(exchange, userId);
                 else ResponseUtil.sendMethodNotAllowed(exchange);
                 break;
+            case "/admin/changes":
+                ChangeFeed.handle(exchange, ChangeFeed.Reader.admin(userId));
+                break;
             case "/admin/activity":
                 if (method.equals("GET")) handleGetActivity(exchange, userId);
                 else ResponseUtil.sendMethodNotAllowed(exchange);
                 break;
+            case "/admin/metrics":
+                if (method.equals("GET")) handleMetrics(exchange);
+                else ResponseUtil.sendMethodNotAllowed(exchange);
+                break;
+            case "/admin/system/limits":
+                if (method.equals("GET")) handleSystemLimits(exchange);
+                else ResponseUtil.sendMethodNotAllowed(exchange);
+                break;
+            case "/admin/system/rate-limits":
+                if (method.equals("GET")) handleSystemRateLimits(exchange);
+                else ResponseUtil.sendMethodNotAllowed(exchange);
+                break;
+            case "/admin/system/bulkheads":
+                if (method.equals("GET")) handleSystemBulkheads(exchange);
+                else ResponseUtil.sendMethodNotAllowed(exchange);
+                break;
+            case "/admin/jfr/start":
+                if (method.equals("POST")) handleJfrStart(exchange);
+                else ResponseUtil.sendMethodNotAllowed(exchange);
+                break;
+            case "/admin/jfr/stop":
+                if (method.equals("POST")) handleJfrStop(exchange);
+                else ResponseUtil.sendMethodNotAllowed(exchange);
+                break;
+            case "/admin/system/slow-requests":
+                if (method.equals("GET")) handleSlowRequests(exchange);
+                else ResponseUtil.sendMethodNotAllowed(exchange);
+                break;
+            case "/admin/system/cache":
+                if (method.equals("GET")) handleSystemCache(exchange);
+                else ResponseUtil.sendMethodNotAllowed(exchange);
+                break;
+            case "/admin/system/breakers":
+                if (method.equals("GET")) handleSystemBreakers(exchange);
+                else ResponseUtil.sendMethodNotAllowed(exchange);
+                break;
+            case "/admin/system/config":
+                if (method.equals("GET")) handleSystemConfig(exchange);
+                else ResponseUtil.sendMethodNotAllowed(exchange);
+                break;
+            case "/admin/config/reload":
+                if (method.equals("POST")) handleConfigReload(exchange);
+                else ResponseUtil.sendMethodNotAllowed(exchange);
+                break;
             default:
                 ResponseUtil.sendNotFound(exchange, "Endpoint not found");
         }
@@ -83,6 +212,17 @@ public class AdminController {
             return;
         }
 
+        try {
+            if (EmailIndex.isRegistered(email)) {
+                ResponseUtil.sendConflict(exchange, "Email already exists");
+                return;
+            }
+        } catch (SQLException e) {
+            Log.error("AdminController", "CreateStudent duplicate check error", "error", e.getMessage());
+            ResponseUtil.sendServerError(exchange, "Failed to create student");
+            return;
+        }
+
         String hashedPassword = AuthController.hashPassword(password);
         Connection conn = null;
         try {
@@ -93,8 +233,10 @@ public class AdminController {
                     "INSERT INTO users (email, password, role) VALUES (?, ?, 'STUDENT') RETURNING user_id");
             insertUser.setString(1, email);
             insertUser.setString(2, hashedPassword);
-            insertUser.executeUpdate();
-            int newUserId = insertUser.getGeneratedKeys().getInt("user_id");
+            ResultSet userKeys = insertUser.executeQuery();
+            userKeys.next();
+            int newUserId = userKeys.getInt("user_id");
+            userKeys.close();
             insertUser.close();
 
             PreparedStatement insertStudent = conn.prepareStatement(
@@ -104,13 +246,16 @@ public class AdminController {
             insertStudent.setInt(3, age);
             insertStudent.setString(4, rollNumber);
             insertStudent.setString(5, stream);
-            insertStudent.executeUpdate();
-            int studentId = insertStudent.getGeneratedKeys().getInt("student_id");
+            ResultSet studentKeys = insertStudent.executeQuery();
+            studentKeys.next();
+            int studentId = studentKeys.getInt("student_id");
+            studentKeys.close();
             insertStudent.close();
 
             AuthController.logActivity(conn, adminUserId, "STUDENT_CREATED", "students", studentId);
             conn.commit();
             conn.setAutoCommit(true);
+            EmailIndex.add(email);
 
             String data = JsonBuilder.object()
                     .add("user_id", newUserId)
@@ -123,9 +268,10 @@ public class AdminController {
                 try { conn.rollback(); } catch (SQLException ignored) {}
             }
             if (e.getMessage() != null && e.getMessage().contains("duplicate key")) {
+                EmailIndex.addIfEmailConflict(email, e);
                 ResponseUtil.sendConflict(exchange, "Email or roll number already exists");
             } else {
-                System.err.println("[AdminController] CreateStudent error: " + e.getMessage());
+                Log.error("AdminController", "CreateStudent error", "error", e.getMessage());
                 ResponseUtil.sendServerError(exchange, "Failed to create student");
             }
         } finally {
@@ -147,6 +293,17 @@ public class AdminController {
             return;
         }
 
+        try {
+            if (EmailIndex.isRegistered(email)) {
+                ResponseUtil.sendConflict(exchange, "Email already exists");
+                return;
+            }
+        } catch (SQLException e) {
+            Log.error("AdminController", "CreateTeacher duplicate check error", "error", e.getMessage());
+            ResponseUtil.sendServerError(exchange, "Failed to create teacher");
+            return;
+        }
+
         String hashedPassword = AuthController.hashPassword(password);
         Connection conn = null;
         try {
@@ -157,8 +314,10 @@ public class AdminController {
                     "INSERT INTO users (email, password, role) VALUES (?, ?, 'TEACHER') RETURNING user_id");
             insertUser.setString(1, email);
             insertUser.setString(2, hashedPassword);
-            insertUser.executeUpdate();
-            int newUserId = insertUser.getGeneratedKeys().getInt("user_id");
+            ResultSet userKeys = insertUser.executeQuery();
+            userKeys.next();
+            int newUserId = userKeys.getInt("user_id");
+            userKeys.close();
             insertUser.close();
 
             PreparedStatement insertTeacher = conn.prepareStatement(
@@ -167,13 +326,16 @@ public class AdminController {
             insertTeacher.setString(2, name);
             insertTeacher.setString(3, department);
             insertTeacher.setString(4, designation);
-            insertTeacher.executeUpdate();
-            int teacherId = insertTeacher.getGeneratedKeys().getInt("teacher_id");
+            ResultSet teacherKeys = insertTeacher.executeQuery();
+            teacherKeys.next();
+            int teacherId = teacherKeys.getInt("teacher_id");
+            teacherKeys.close();
             insertTeacher.close();
 
             AuthController.logActivity(conn, adminUserId, "TEACHER_CREATED", "teachers", teacherId);
             conn.commit();
             conn.setAutoCommit(true);
+            EmailIndex.add(email);
 
             String data = JsonBuilder.object()
                     .add("user_id", newUserId)
@@ -186,9 +348,10 @@ public class AdminController {
                 try { conn.rollback(); } catch (SQLException ignored) {}
             }
             if (e.getMessage() != null && e.getMessage().contains("duplicate key")) {
+                EmailIndex.addIfEmailConflict(email, e);
                 ResponseUtil.sendConflict(exchange, "Email already exists");
             } else {
-                System.err.println("[AdminController] CreateTeacher error: " + e.getMessage());
+                Log.error("AdminController", "CreateTeacher error", "error", e.getMessage());
                 ResponseUtil.sendServerError(exchange, "Failed to create teacher");
             }
         } finally {
@@ -229,8 +392,10 @@ public class AdminController {
                     "INSERT INTO subjects (subject_name, semester) VALUES (?, ?) RETURNING subject_id");
             ps.setString(1, subjectName);
             ps.setInt(2, semester);
-            ps.executeUpdate();
-            int subjectId = ps.getGeneratedKeys().getInt("subject_id");
+            ResultSet keys = ps.executeQuery();
+            keys.next();
+            int subjectId = keys.getInt("subject_id");
+            keys.close();
             ps.close();
 
             AuthController.logActivity(conn, adminUserId, "SUBJECT_CREATED", "subjects", subjectId);
@@ -241,7 +406,7 @@ public class AdminController {
             
             ResponseUtil.sendCreated(exchange, "Subject created successfully", data);
         } catch (SQLException e) {
-            System.err.println("[AdminController] CreateSubject error: " + e.getMessage());
+            Log.error("AdminController", "CreateSubject error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to create subject");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -299,10 +464,13 @@ public class AdminController {
             ps.executeUpdate();
             ps.close();
 
+            DataVersions.subjectChanged(subjectId);
+            ChangeFeed.subjectChanged(subjectId, teacherId);
+            if (currentTeacher != null) ChangeFeed.subjectChanged(subjectId, currentTeacher);
             AuthController.logActivity(conn, adminUserId, "TEACHER_ASSIGNED", "subjects", subjectId);
             ResponseUtil.sendSuccess(exchange, "Teacher assigned successfully");
         } catch (SQLException e) {
-            System.err.println("[AdminController] AssignTeacher error: " + e.getMessage());
+            Log.error("AdminController", "AssignTeacher error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to assign teacher");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -310,6 +478,9 @@ public class AdminController {
     }
 
     private static void handleTopPerformers(HttpExchange exchange) throws IOException {
+        Projection projection = Projection.parse(exchange, PERFORMER_FIELDS);
+        if (projection == null) return;
+
         String query = exchange.getRequestURI().getQuery();
         String limitStr = RequestUtil.extractQueryParam(query, "limit");
         int limit = (limitStr != null) ? Integer.parseInt(limitStr) : 10;
@@ -318,28 +489,20 @@ public class AdminController {
         try {
             conn = DatabaseConfig.getConnection();
             PreparedStatement ps = conn.prepareStatement(
-                    "SELECT * FROM get_top_performers(?)");
+                    "SELECT " + projection.columns() + " FROM get_top_performers(?)");
             ps.setInt(1, limit);
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String performer = JsonBuilder.object()
-                        .add("student_id", rs.getInt("student_id"))
-                        .add("student_name", rs.getString("student_name"))
-                        .add("roll_number", rs.getString("roll_number"))
-                        .add("subject_name", rs.getString("subject_name"))
-                        .add("marks_obtained", rs.getBigDecimal("marks_obtained"))
-                        .add("semester", rs.getInt("semester"))
-                        .build();
-                array.add(performer);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Top performers retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[AdminController] TopPerformers error: " + e.getMessage());
+            Log.error("AdminController", "TopPerformers error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve top performers");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -347,6 +510,9 @@ public class AdminController {
     }
 
     private static void handleLowestPerformers(HttpExchange exchange) throws IOException {
+        Projection projection = Projection.parse(exchange, PERFORMER_FIELDS);
+        if (projection == null) return;
+
         String query = exchange.getRequestURI().getQuery();
         String limitStr = RequestUtil.extractQueryParam(query, "limit");
         int limit = (limitStr != null) ? Integer.parseInt(limitStr) : 10;
@@ -355,28 +521,20 @@ public class AdminController {
         try {
             conn = DatabaseConfig.getConnection();
             PreparedStatement ps = conn.prepareStatement(
-                    "SELECT * FROM get_lowest_performers(?)");
+                    "SELECT " + projection.columns() + " FROM get_lowest_performers(?)");
             ps.setInt(1, limit);
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String performer = JsonBuilder.object()
-                        .add("student_id", rs.getInt("student_id"))
-                        .add("student_name", rs.getString("student_name"))
-                        .add("roll_number", rs.getString("roll_number"))
-                        .add("subject_name", rs.getString("subject_name"))
-                        .add("marks_obtained", rs.getBigDecimal("marks_obtained"))
-                        .add("semester", rs.getInt("semester"))
-                        .build();
-                array.add(performer);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Lowest performers retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[AdminController] LowestPerformers error: " + e.getMessage());
+            Log.error("AdminController", "LowestPerformers error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve lowest performers");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -384,30 +542,26 @@ public class AdminController {
     }
 
     private static void handleDetectBacklogs(HttpExchange exchange) throws IOException {
+        Projection projection = Projection.parse(exchange, BACKLOG_FIELDS);
+        if (projection == null) return;
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
             PreparedStatement ps = conn.prepareStatement(
-                    "SELECT * FROM detect_backlogs()");
+                    "SELECT " + projection.columns() + " FROM detect_backlogs()");
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String backlog = JsonBuilder.object()
-                        .add("student_id", rs.getInt("student_id"))
-                        .add("student_name", rs.getString("student_name"))
-                        .add("roll_number", rs.getString("roll_number"))
-                        .add("stream", rs.getString("stream"))
-                        .add("backlog_count", rs.getInt("backlog_count"))
-                        .build();
-                array.add(backlog);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Backlogs retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[AdminController] DetectBacklogs error: " + e.getMessage());
+            Log.error("AdminController", "DetectBacklogs error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to detect backlogs");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -415,32 +569,26 @@ public class AdminController {
     }
 
     private static void handleHighRiskStudents(HttpExchange exchange) throws IOException {
+        Projection projection = Projection.parse(exchange, HIGH_RISK_FIELDS);
+        if (projection == null) return;
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
             PreparedStatement ps = conn.prepareStatement(
-                    "SELECT * FROM get_high_risk_students()");
+                    "SELECT " + projection.columns() + " FROM get_high_risk_students()");
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String student = JsonBuilder.object()
-                        .add("student_id", rs.getInt("student_id"))
-                        .add("student_name", rs.getString("student_name"))
-                        .add("roll_number", rs.getString("roll_number"))
-                        .add("stream", rs.getString("stream"))
-                        .add("cgpa", rs.getBigDecimal("cgpa"))
-                        .add("backlog_count", rs.getInt("backlog_count"))
-                        .add("risk_score", rs.getBigDecimal("risk_score"))
-                        .build();
-                array.add(student);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "High risk students retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[AdminController] HighRiskStudents error: " + e.getMessage());
+            Log.error("AdminController", "HighRiskStudents error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve high risk students");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -448,29 +596,25 @@ public class AdminController {
     }
 
     private static void handleStreamPerformance(HttpExchange exchange) throws IOException {
+        Projection projection = Projection.parse(exchange, STREAM_PERFORMANCE_FIELDS);
+        if (projection == null) return;
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
-            PreparedStatement ps = conn.prepareStatement("SELECT * FROM get_stream_performance()");
+            PreparedStatement ps = conn.prepareStatement("SELECT " + projection.columns() + " FROM get_stream_performance()");
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String stream = JsonBuilder.object()
-                        .add("stream", rs.getString("stream"))
-                        .add("total_students", rs.getInt("total_students"))
-                        .add("average_cgpa", rs.getBigDecimal("average_cgpa"))
-                        .add("highest_cgpa", rs.getBigDecimal("highest_cgpa"))
-                        .add("lowest_cgpa", rs.getBigDecimal("lowest_cgpa"))
-                        .build();
-                array.add(stream);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Stream performance retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[AdminController] StreamPerformance error: " + e.getMessage());
+            Log.error("AdminController", "StreamPerformance error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve stream performance");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -500,7 +644,7 @@ public class AdminController {
                 ResponseUtil.sendSuccess(exchange, "No active term set");
             }
         } catch (SQLException e) {
-            System.err.println("[AdminController] GetActiveTerm error: " + e.getMessage());
+            Log.error("AdminController", "GetActiveTerm error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve active term");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -536,7 +680,7 @@ public class AdminController {
             AuthController.logActivity(conn, adminUserId, "ACTIVE_TERM_SET", "academic_terms", termId);
             ResponseUtil.sendSuccess(exchange, "Active term updated successfully");
         } catch (SQLException e) {
-            System.err.println("[AdminController] SetActiveTerm error: " + e.getMessage());
+            Log.error("AdminController", "SetActiveTerm error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to set active term");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -544,33 +688,126 @@ public class AdminController {
     }
 
     private static void handleGetActivity(HttpExchange exchange, int userId) throws IOException {
+        Projection projection = Projection.parse(exchange, AuthController.ACTIVITY_FIELDS);
+        if (projection == null) return;
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
-            PreparedStatement ps = conn.prepareStatement("SELECT * FROM get_user_activity(?)");
+            PreparedStatement ps = conn.prepareStatement("SELECT " + projection.columns() + " FROM get_user_activity(?)");
             ps.setInt(1, userId);
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String activity = JsonBuilder.object()
-                        .add("log_id", rs.getInt("log_id"))
-                        .add("action", rs.getString("action"))
-                        .add("entity_type", rs.getString("entity_type"))
-                        .add("entity_id", rs.getInt("entity_id"))
-                        .add("created_at", rs.getTimestamp("created_at"))
-                        .build();
-                array.add(activity);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Activity log retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[AdminController] GetActivity error: " + e.getMessage());
+            Log.error("AdminController", "GetActivity error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve activity");
         } finally {
             DatabaseConfig.releaseConnection(conn);
         }
     }
+
+    private static void handleSystemLimits(HttpExchange exchange) throws IOException {
+        JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
+        for (ConcurrencyLimiter limiter : ConcurrencyLimiter.all()) {
+            array.add(limiter.toJson());
+        }
+        ResponseUtil.sendSuccess(exchange, "Concurrency limits retrieved successfully", array.build());
+    }
+
+    private static void handleSystemBulkheads(HttpExchange exchange) throws IOException {
+        JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
+        for (Bulkhead bulkhead : Bulkhead.all()) {
+            array.add(bulkhead.toJson());
+        }
+        ResponseUtil.sendSuccess(exchange, "Bulkheads retrieved successfully", array.build());
+    }
+
+    private static void handleSystemRateLimits(HttpExchange exchange) throws IOException {
+        JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
+        for (RateLimiter limiter : RateLimiter.all()) {
+            array.add(limiter.toJson());
+        }
+        ResponseUtil.sendSuccess(exchange, "Rate limits retrieved successfully", array.build());
+    }
+
+    private static void handleMetrics(HttpExchange exchange) throws IOException {
+        ResponseUtil.sendText(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", Metrics.renderPrometheus());
+    }
+
+    private static void handleSlowRequests(HttpExchange exchange) throws IOException {
+        ResponseUtil.sendSuccess(exchange, "Slow requests retrieved successfully", SlowRequestLog.toJson());
+    }
+
+    private static void handleJfrStart(HttpExchange exchange) throws IOException {
+        String secondsParam = RequestUtil.extractQueryParam(exchange.getRequestURI().getQuery(), "seconds");
+        long seconds = 300;
+        if (secondsParam != null) {
+            try {
+                seconds = Long.parseLong(secondsParam);
+            } catch (NumberFormatException e) {
+                ResponseUtil.sendBadRequest(exchange, "seconds must be a number");
+                return;
+            }
+            if (seconds <= 0) {
+                ResponseUtil.sendBadRequest(exchange, "seconds must be positive");
+                return;
+            }
+        }
+        try {
+            if (!JfrEvents.startRecording(Duration.ofSeconds(seconds))) {
+                ResponseUtil.sendConflict(exchange, "A recording is already running");
+                return;
+            }
+            ResponseUtil.sendSuccess(exchange, "Recording started", null);
+        } catch (ParseException | IllegalStateException e) {
+            Log.error("AdminController", "Failed to start JFR recording", "error", e.getMessage());
+            ResponseUtil.sendServerError(exchange, "Failed to start recording");
+        }
+    }
+
+    private static void handleJfrStop(HttpExchange exchange) throws IOException {
+        Path file = JfrEvents.stopRecording();
+        if (file == null) {
+            ResponseUtil.sendNotFound(exchange, "No recording to stop");
+            return;
+        }
+        ResponseUtil.sendSuccess(exchange, "Recording dumped", JsonBuilder.object().add("file", file.toString()).build());
+    }
+
+    private static void handleSystemCache(HttpExchange exchange) throws IOException {
+        ResponseUtil.sendSuccess(exchange, "Aggregate cache retrieved successfully", AGGREGATE_CACHE.toJson());
+    }
+
+    private static void handleSystemBreakers(HttpExchange exchange) throws IOException {
+        JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
+        for (CircuitBreaker breaker : CircuitBreaker.all()) {
+            array.add(breaker.toJson());
+        }
+        String data = JsonBuilder.object()
+                .addRaw("breakers", array.build())
+                .addRaw("fallback", FallbackCache.toJson())
+                .build();
+        ResponseUtil.sendSuccess(exchange, "Circuit breakers retrieved successfully", data);
+    }
+
+    private static void handleSystemConfig(HttpExchange exchange) throws IOException {
+        ResponseUtil.sendSuccess(exchange, "Configuration retrieved successfully", AppConfig.toJson());
+    }
+
+    private static void handleConfigReload(HttpExchange exchange) throws IOException {
+        int changed = AppConfig.reload();
+        if (changed < 0) {
+            ResponseUtil.sendServerError(exchange, "Failed to read configuration file");
+            return;
+        }
+        ResponseUtil.sendSuccess(exchange, "Configuration reloaded", JsonBuilder.object().add("changed", changed).build());
+    }
 }
@@ -0,0 +1,298 @@
+package com.acadify;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Refresh-ahead response cache for aggregate reads that may be somewhat out of date.
+ * Each registered route has a freshness window (cache.<name>.<route>.ttl.seconds) and a
+ * staleness limit (cache.<name>.<route>.max.stale.seconds), how long past that window a
+ * response may still be served while a newer one loads. Once an entry is past most of its
+ * freshness window it is reloaded in the background while readers keep getting the
+ * cached copy, and a periodic sweep does the same for entries that are still being
+ * read, so a route in use is normally refreshed before anyone sees it expire. Only an
+ * entry older than its staleness limit, or a first request, waits for the database,
+ * and then through a SingleFlight so concurrent misses share one load. Every response
+ * carries an Age header. Refreshes run on their own bulkhead with its own connection
+ * quota, so they cannot starve request traffic.
+ */
+public class AggregateCache {
+
+    private static final double REFRESH_AHEAD_FRACTION = 0.8;
+    private static final long SWEEP_INTERVAL_MS = 1000;
+    private static final int MAX_ENTRIES = 256;
+    private static final List<AggregateCache> REGISTRY = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final SingleFlight flights;
+    private final Bulkhead refresher;
+    private final ScheduledExecutorService sweeper;
+    private volatile boolean stopped;
+    private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder freshHits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    private static final class Policy {
+        final AppConfig.Setting<Integer> ttlSeconds;
+        final AppConfig.Setting<Integer> maxStaleSeconds;
+
+        Policy(String prefix, int ttlSeconds, int maxStaleSeconds) {
+            this.ttlSeconds = AppConfig.intSetting(prefix + "ttl.seconds", ttlSeconds, 1, 86_400, true);
+            this.maxStaleSeconds = AppConfig.intSetting(prefix + "max.stale.seconds", maxStaleSeconds, 0, 86_400, true);
+        }
+
+        long ttlNanos() {
+            return TimeUnit.SECONDS.toNanos(ttlSeconds.get());
+        }
+
+        long refreshAheadNanos() {
+            return (long) (ttlNanos() * REFRESH_AHEAD_FRACTION);
+        }
+
+        /**
+         * Oldest an entry may be and still be served; never shorter than the freshness window
+         */
+        long maxAgeNanos() {
+            return ttlNanos() + TimeUnit.SECONDS.toNanos(maxStaleSeconds.get());
+        }
+    }
+
+    /**
+     * A response and when it was loaded, replaced together on refresh
+     */
+    private static final class Snapshot {
+        final CapturedResponse response;
+        final long loadedAt;
+
+        Snapshot(CapturedResponse response, long loadedAt) {
+            this.response = response;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static final class Entry {
+        final String pathAndQuery;
+        final Policy policy;
+        final HttpHandler handler;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        volatile Snapshot snapshot;
+        volatile long lastReadAt;
+
+        Entry(String pathAndQuery, Policy policy, HttpHandler handler, Snapshot snapshot) {
+            this.pathAndQuery = pathAndQuery;
+            this.policy = policy;
+            this.handler = handler;
+            this.snapshot = snapshot;
+            this.lastReadAt = snapshot.loadedAt;
+        }
+    }
+
+    /**
+     * @param flights      coalescing group for loads, shared with the routes' uncached path
+     * @param refreshThreads background refresh threads, also the size of the refresh connection quota
+     */
+    public AggregateCache(String name, SingleFlight flights, int refreshThreads) {
+        this.name = name;
+        this.flights = flights;
+        this.refresher = Bulkhead.fromConfig(name + "-refresh", refreshThreads, 64);
+        DatabaseConfig.registerQuota(name + "-refresh", refreshThreads);
+        String labels = Metrics.labels("cache", name);
+        Metrics.counter("acadify_cache_requests_total", Metrics.labels("cache", name, "result", "fresh"), freshHits::sum);
+        Metrics.counter("acadify_cache_requests_total", Metrics.labels("cache", name, "result", "stale"), staleHits::sum);
+        Metrics.counter("acadify_cache_requests_total", Metrics.labels("cache", name, "result", "miss"), misses::sum);
+        Metrics.counter("acadify_cache_refreshes_total", Metrics.labels("cache", name, "result", "ok"), refreshes::sum);
+        Metrics.counter("acadify_cache_refreshes_total", Metrics.labels("cache", name, "result", "failed"), refreshFailures::sum);
+        Metrics.gauge("acadify_cache_entries", labels, entries::size);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "acadify-" + name + "-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        REGISTRY.add(this);
+    }
+
+    /**
+     * Stop the sweeps and queue no more refreshes, for shutdown; refreshes already queued
+     * still run, and entries keep being served as they are
+     */
+    public static void stopRefreshing() {
+        for (AggregateCache cache : REGISTRY) {
+            cache.stopped = true;
+            cache.sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Get every cache's refresh bulkhead, which shutdown drains after request traffic,
+     * since a request may be waiting on a refresh's load
+     */
+    public static List<Bulkhead> refreshers() {
+        List<Bulkhead> refreshers = new ArrayList<>();
+        for (AggregateCache cache : REGISTRY) refreshers.add(cache.refresher);
+        return refreshers;
+    }
+
+    /**
+     * Cache GET responses for the route, with settings cache.<name>.<route>.ttl.seconds
+     * and cache.<name>.<route>.max.stale.seconds
+     */
+    public void register(String path, String route, int ttlSeconds, int maxStaleSeconds) {
+        policies.put(path, new Policy("cache." + name + "." + route + ".", ttlSeconds, maxStaleSeconds));
+    }
+
+    public boolean isCached(String path) {
+        return policies.containsKey(path);
+    }
+
+    /**
+     * True if a request for the exchange's route and parameters would be answered from
+     * the cache without waiting for a load
+     */
+    public boolean canServe(HttpExchange exchange) {
+        Entry entry = entries.get(SingleFlight.key(exchange));
+        return entry != null && System.nanoTime() - entry.snapshot.loadedAt <= entry.policy.maxAgeNanos();
+    }
+
+    /**
+     * Serve the exchange from the cache, loading through the handler on a miss.
+     * The handler's response must not depend on the caller.
+     */
+    public void serve(HttpExchange exchange, HttpHandler handler) throws IOException {
+        Policy policy = policies.get(exchange.getRequestURI().getPath());
+        String key = SingleFlight.key(exchange);
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            Snapshot snapshot = entry.snapshot;
+            long age = now - snapshot.loadedAt;
+            if (age <= policy.maxAgeNanos()) {
+                entry.lastReadAt = now;
+                if (age >= policy.refreshAheadNanos()) scheduleRefresh(entry);
+                (age < policy.ttlNanos() ? freshHits : staleHits).increment();
+                write(exchange, snapshot.response, age, true);
+                return;
+            }
+        }
+        misses.increment();
+        CapturedResponse response = flights.load(exchange, handler);
+        if (response.getStatus() == 200) {
+            store(key, SingleFlight.pathAndQuery(exchange), policy, handler, response);
+        }
+        write(exchange, response, 0, false);
+    }
+
+    private void store(String key, String pathAndQuery, Policy policy, HttpHandler handler, CapturedResponse response) {
+        Snapshot snapshot = new Snapshot(response, System.nanoTime());
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.snapshot = snapshot;
+            return;
+        }
+        if (entries.size() >= MAX_ENTRIES) return;
+        entries.putIfAbsent(key, new Entry(pathAndQuery, policy, handler, snapshot));
+    }
+
+    private static void write(HttpExchange exchange, CapturedResponse response, long ageNanos, boolean shared)
+            throws IOException {
+        exchange.getResponseHeaders().set("Age", String.valueOf(TimeUnit.NANOSECONDS.toSeconds(ageNanos)));
+        response.writeTo(exchange, shared);
+    }
+
+    /**
+     * Reload entries still in use that are due for refresh, and drop entries nobody has
+     * read within their staleness limit
+     */
+    private void sweep() {
+        try {
+            long now = System.nanoTime();
+            for (Map.Entry<String, Entry> mapping : entries.entrySet()) {
+                Entry entry = mapping.getValue();
+                Snapshot snapshot = entry.snapshot;
+                if (now - entry.lastReadAt > entry.policy.maxAgeNanos()) {
+                    entries.remove(mapping.getKey(), entry);
+                } else if (now - snapshot.loadedAt >= entry.policy.refreshAheadNanos()) {
+                    scheduleRefresh(entry);
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.error("AggregateCache", "Sweep failed", "cache", name, "error", e.getMessage());
+        }
+    }
+
+    private void scheduleRefresh(Entry entry) {
+        if (stopped || !entry.refreshing.compareAndSet(false, true)) return;
+        boolean queued = refresher.submit(() -> {
+            try {
+                refresh(entry);
+            } finally {
+                entry.refreshing.set(false);
+            }
+        });
+        if (!queued) entry.refreshing.set(false);
+    }
+
+    private void refresh(Entry entry) {
+        long start = System.nanoTime();
+        try {
+            CapturedResponse response = flights.load(new LocalExchange("GET", entry.pathAndQuery, null), entry.handler);
+            if (response.getStatus() == 200) {
+                entry.snapshot = new Snapshot(response, System.nanoTime());
+                refreshes.increment();
+                Log.debug("AggregateCache", "Refreshed", "cache", name, "path", entry.pathAndQuery,
+                        "elapsed_ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } else {
+                refreshFailures.increment();
+                Log.warn("AggregateCache", "Refresh failed, keeping cached response", "cache", name,
+                        "path", entry.pathAndQuery, "status", response.getStatus());
+            }
+        } catch (IOException | RuntimeException e) {
+            refreshFailures.increment();
+            Log.warn("AggregateCache", "Refresh failed, keeping cached response", "cache", name,
+                    "path", entry.pathAndQuery, "error", e.getMessage());
+        }
+    }
+
+    /**
+     * Build a JSON snapshot of this cache's entries and counters
+     */
+    public String toJson() {
+        long now = System.nanoTime();
+        JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
+        for (Entry entry : entries.values()) {
+            Snapshot snapshot = entry.snapshot;
+            array.add(JsonBuilder.object()
+                    .add("path", entry.pathAndQuery)
+                    .add("age_seconds", TimeUnit.NANOSECONDS.toSeconds(now - snapshot.loadedAt))
+                    .add("ttl_seconds", entry.policy.ttlSeconds.get())
+                    .add("max_stale_seconds", entry.policy.maxStaleSeconds.get())
+                    .add("bytes", snapshot.response.getBodyLength())
+                    .add("refreshing", entry.refreshing.get())
+                    .build());
+        }
+        return JsonBuilder.object()
+                .add("name", name)
+                .add("fresh_hits", freshHits.sum())
+                .add("stale_hits", staleHits.sum())
+                .add("misses", misses.sum())
+                .add("refreshes", refreshes.sum())
+                .add("refresh_failures", refreshFailures.sum())
+                .addRaw("entries", array.build())
+                .build();
+    }
+}
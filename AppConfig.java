@@ -0,0 +1,327 @@
+package com.acadify;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Typed runtime settings. Each component declares the settings it reads, with a default
+ * and bounds, next to the code that uses them. Values come from the properties file
+ * named by ACADIFY_CONFIG (default acadify.properties, optional), and an environment
+ * variable overrides the file: key "db.pool.size" is DB_POOL_SIZE. The file is watched;
+ * on change, reloadable settings take the new value and notify their listeners, while
+ * settings that are only read at startup log that a restart is needed.
+ */
+public class AppConfig {
+
+    private static final String CONFIG_FILE = System.getenv().getOrDefault("ACADIFY_CONFIG", "acadify.properties");
+    private static final long DEBOUNCE_MS = 250;
+
+    private static final Map<String, Setting<?>> SETTINGS = new ConcurrentSkipListMap<>();
+    private static final LongAdder reloads = new LongAdder();
+    private static final LongAdder reloadFailures = new LongAdder();
+    private static final LongAdder changes = new LongAdder();
+    private static volatile Properties fileValues = new Properties();
+    private static volatile long lastReloadMillis;
+    private static Thread watcher;
+
+    static {
+        try {
+            fileValues = readFile();
+        } catch (IOException e) {
+            Log.warn("AppConfig", "Failed to read config file, using environment and defaults",
+                    "file", CONFIG_FILE, "error", e.getMessage());
+        }
+        lastReloadMillis = System.currentTimeMillis();
+        Metrics.counter("acadify_config_reloads_total", Metrics.labels("result", "ok"), reloads::sum);
+        Metrics.counter("acadify_config_reloads_total", Metrics.labels("result", "failed"), reloadFailures::sum);
+        Metrics.counter("acadify_config_changes_total", "", changes::sum);
+        Metrics.gauge("acadify_config_last_reload_timestamp_seconds", "", () -> lastReloadMillis / 1000.0);
+    }
+
+    /**
+     * One named, typed value with its current source and change listeners
+     */
+    public static final class Setting<T> {
+        private final String key;
+        private final String envKey;
+        private final T defaultValue;
+        private final Function<String, T> parser;
+        private final boolean reloadable;
+        private final List<Consumer<T>> listeners = new CopyOnWriteArrayList<>();
+        private volatile T value;
+        private volatile String source = "default";
+
+        private Setting(String key, T defaultValue, Function<String, T> parser, boolean reloadable) {
+            this.key = key;
+            this.envKey = key.toUpperCase(Locale.ROOT).replace('.', '_').replace('-', '_');
+            this.defaultValue = defaultValue;
+            this.parser = parser;
+            this.reloadable = reloadable;
+            this.value = defaultValue;
+            refresh(fileValues, true);
+        }
+
+        public T get() {
+            return value;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Register a listener called with the new value after each reload that changes it
+         */
+        public Setting<T> onChange(Consumer<T> listener) {
+            listeners.add(listener);
+            return this;
+        }
+
+        /**
+         * Re-resolve from environment and file; returns true if the value changed
+         */
+        private boolean refresh(Properties file, boolean initial) {
+            String raw;
+            String from;
+            String env = System.getenv(envKey);
+            if (env != null && !env.isBlank()) {
+                raw = env.trim();
+                from = "env";
+            } else if (file.containsKey(key)) {
+                raw = file.getProperty(key).trim();
+                from = "file";
+            } else {
+                raw = null;
+                from = "default";
+            }
+            T next;
+            try {
+                next = raw == null ? defaultValue : parser.apply(raw);
+            } catch (IllegalArgumentException e) {
+                Log.warn("AppConfig", "Ignoring invalid setting", "key", key, "value", raw, "source", from,
+                        "error", e.getMessage(), "keeping", value);
+                return false;
+            }
+            if (initial) {
+                value = next;
+                source = from;
+                return false;
+            }
+            if (Objects.equals(next, value)) {
+                source = from;
+                return false;
+            }
+            if (!reloadable) {
+                Log.warn("AppConfig", "Setting changed but only applies after a restart", "key", key,
+                        "current", value, "configured", next);
+                return false;
+            }
+            T previous = value;
+            value = next;
+            source = from;
+            changes.increment();
+            Log.info("AppConfig", "Setting changed", "key", key, "old", previous, "new", next, "source", from);
+            for (Consumer<T> listener : listeners) {
+                try {
+                    listener.accept(next);
+                } catch (RuntimeException e) {
+                    Log.error("AppConfig", "Setting listener failed", "key", key, "error", e.getMessage());
+                }
+            }
+            return true;
+        }
+
+        private String toJson() {
+            return JsonBuilder.object()
+                    .add("key", key)
+                    .add("env", envKey)
+                    .add("value", String.valueOf(value))
+                    .add("default", String.valueOf(defaultValue))
+                    .add("source", source)
+                    .add("reloadable", reloadable)
+                    .build();
+        }
+    }
+
+    public static Setting<Integer> intSetting(String key, int defaultValue, int min, int max, boolean reloadable) {
+        return register(new Setting<>(key, defaultValue, raw -> {
+            int v = Integer.parseInt(raw);
+            if (v < min || v > max) throw new IllegalArgumentException("must be between " + min + " and " + max);
+            return v;
+        }, reloadable), true);
+    }
+
+    public static Setting<Long> longSetting(String key, long defaultValue, long min, long max, boolean reloadable) {
+        return register(new Setting<>(key, defaultValue, raw -> {
+            long v = Long.parseLong(raw);
+            if (v < min || v > max) throw new IllegalArgumentException("must be between " + min + " and " + max);
+            return v;
+        }, reloadable), true);
+    }
+
+    public static Setting<Double> doubleSetting(String key, double defaultValue, double min, double max, boolean reloadable) {
+        return register(new Setting<>(key, defaultValue, raw -> {
+            double v = Double.parseDouble(raw);
+            if (!(v >= min && v <= max)) throw new IllegalArgumentException("must be between " + min + " and " + max);
+            return v;
+        }, reloadable), true);
+    }
+
+    public static Setting<Boolean> booleanSetting(String key, boolean defaultValue, boolean reloadable) {
+        return register(new Setting<>(key, defaultValue, raw -> {
+            if (raw.equalsIgnoreCase("true")) return true;
+            if (raw.equalsIgnoreCase("false")) return false;
+            throw new IllegalArgumentException("must be true or false");
+        }, reloadable), true);
+    }
+
+    public static Setting<String> stringSetting(String key, String defaultValue, boolean reloadable) {
+        return register(new Setting<>(key, defaultValue, raw -> raw, reloadable), false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Setting<T> register(Setting<T> setting, boolean exportValue) {
+        Setting<?> existing = SETTINGS.putIfAbsent(setting.key, setting);
+        if (existing != null) return (Setting<T>) existing;
+        if (exportValue) {
+            Metrics.gauge("acadify_config_value", Metrics.labels("key", setting.key), () -> {
+                Object v = setting.value;
+                return v instanceof Boolean ? ((Boolean) v ? 1 : 0) : (Number) v;
+            });
+        }
+        return setting;
+    }
+
+    /**
+     * Re-read the file and environment and apply changed values; returns the number of
+     * settings changed, or -1 if the file could not be read
+     */
+    public static synchronized int reload() {
+        Properties file;
+        try {
+            file = readFile();
+        } catch (IOException e) {
+            reloadFailures.increment();
+            Log.warn("AppConfig", "Config reload failed", "file", CONFIG_FILE, "error", e.getMessage());
+            return -1;
+        }
+        fileValues = file;
+        int changed = 0;
+        for (Setting<?> setting : SETTINGS.values()) {
+            if (setting.refresh(file, false)) changed++;
+        }
+        for (String key : file.stringPropertyNames()) {
+            if (!SETTINGS.containsKey(key)) {
+                Log.warn("AppConfig", "Unknown setting in config file", "key", key);
+            }
+        }
+        reloads.increment();
+        lastReloadMillis = System.currentTimeMillis();
+        Log.info("AppConfig", "Configuration reloaded", "file", CONFIG_FILE, "changed", changed);
+        return changed;
+    }
+
+    /**
+     * Watch the config file's directory and reload when the file's contents change.
+     * The whole directory is watched because editors and mounted config volumes replace
+     * the file by rename rather than writing it in place.
+     */
+    public static synchronized void startWatching() {
+        if (watcher != null) return;
+        Path dir = Paths.get(CONFIG_FILE).toAbsolutePath().getParent();
+        if (dir == null || !Files.isDirectory(dir)) {
+            Log.warn("AppConfig", "Config directory missing, hot reload disabled", "dir", dir);
+            return;
+        }
+        WatchService watchService;
+        try {
+            watchService = dir.getFileSystem().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            Log.warn("AppConfig", "Failed to watch config directory, hot reload disabled", "dir", dir,
+                    "error", e.getMessage());
+            return;
+        }
+        watcher = new Thread(() -> watch(watchService), "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        Log.info("AppConfig", "Watching config file", "file", Paths.get(CONFIG_FILE).toAbsolutePath());
+    }
+
+    private static void watch(WatchService watchService) {
+        try {
+            while (true) {
+                drain(watchService.take());
+                // Coalesce the burst of events a single save produces
+                Thread.sleep(DEBOUNCE_MS);
+                WatchKey more;
+                while ((more = watchService.poll()) != null) {
+                    drain(more);
+                }
+                Properties current;
+                try {
+                    current = readFile();
+                } catch (IOException e) {
+                    reloadFailures.increment();
+                    Log.warn("AppConfig", "Config reload failed", "file", CONFIG_FILE, "error", e.getMessage());
+                    continue;
+                }
+                if (!current.equals(fileValues)) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void drain(WatchKey key) {
+        key.pollEvents();
+        key.reset();
+    }
+
+    private static Properties readFile() throws IOException {
+        Properties properties = new Properties();
+        Path path = Paths.get(CONFIG_FILE);
+        if (Files.exists(path)) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Build a JSON array describing every setting, its value and where it came from
+     */
+    public static String toJson() {
+        JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
+        for (Setting<?> setting : SETTINGS.values()) {
+            array.add(setting.toJson());
+        }
+        return JsonBuilder.object()
+                .add("file", Paths.get(CONFIG_FILE).toAbsolutePath().toString())
+                .add("last_reload_epoch_ms", lastReloadMillis)
+                .addRaw("settings", array.build())
+                .build();
+    }
+}
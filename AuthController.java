@@ -2,8 +2,14 @@ package com.acadify;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
 import java.sql.*;
+import java.util.Set;
 
 public class AuthController {
+    // Paths handled below; the route table for per-route metrics
+    static final Set<String> ROUTES = Set.of("/auth/login", "/auth/register");
+    private static final RateLimiter LOGIN_IP_LIMITER = new RateLimiter("login-ip", 20, 3000, 100_000);
+    private static final RateLimiter LOGIN_EMAIL_LIMITER = new RateLimiter("login-email", 5, 12000, 100_000);
+
     public static void handle(HttpExchange exchange) throws IOException {
         String path = exchange.getRequestURI().getPath();
         String method = exchange.getRequestMethod();
@@ -18,6 +24,14 @@ public class AuthController {
     }
 
     private static void handleLogin(HttpExchange exchange) throws IOException {
+        String clientIp = ClientAddress.of(exchange);
+        long ipWait = LOGIN_IP_LIMITER.tryAcquire(clientIp);
+        if (ipWait > 0) {
+            ResponseUtil.sendTooManyRequests(exchange, "Too many login attempts, please retry later",
+                    RateLimiter.toRetryAfterSeconds(ipWait));
+            return;
+        }
+
         String body = RequestUtil.readBody(exchange);
         String[] fields = RequestUtil.parseJson(body, "email", "password");
         String email = fields[0];
@@ -28,6 +42,13 @@ public class AuthController {
             return;
         }
 
+        long emailWait = LOGIN_EMAIL_LIMITER.tryAcquire(email.trim().toLowerCase());
+        if (emailWait > 0) {
+            ResponseUtil.sendTooManyRequests(exchange, "Too many login attempts for this account, please retry later",
+                    RateLimiter.toRetryAfterSeconds(emailWait));
+            return;
+        }
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
@@ -63,7 +84,7 @@ public class AuthController {
                 ResponseUtil.sendUnauthorized(exchange, "Invalid email or password");
             }
         } catch (SQLException e) {
-            System.err.println("[AuthController] Login error: " + e.getMessage());
+            Log.error("AuthController", "Login error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Authentication failed");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -90,6 +111,17 @@ public class AuthController {
             return;
         }
 
+        try {
+            if (EmailIndex.isRegistered(email)) {
+                ResponseUtil.sendConflict(exchange, "Email already registered");
+                return;
+            }
+        } catch (SQLException e) {
+            Log.error("AuthController", "Duplicate email check failed", "error", e.getMessage());
+            ResponseUtil.sendServerError(exchange, "Registration failed");
+            return;
+        }
+
         String hashedPassword = PBKDF2Util.hashPassword(password);
         Connection conn = null;
         try {
@@ -119,6 +151,7 @@ public class AuthController {
             
             conn.commit();
             conn.setAutoCommit(true);
+            EmailIndex.add(email);
 
             String data = JsonBuilder.object()
                     .add("user_id", userId)
@@ -131,9 +164,10 @@ public class AuthController {
                 try { conn.rollback(); } catch (SQLException ignored) {}
             }
             if (e.getMessage() != null && e.getMessage().contains("duplicate key")) {
+                EmailIndex.addIfEmailConflict(email, e);
                 ResponseUtil.sendConflict(exchange, "Email already registered");
             } else {
-                System.err.println("[AuthController] Register error: " + e.getMessage());
+                Log.error("AuthController", "Register error", "error", e.getMessage());
                 ResponseUtil.sendServerError(exchange, "Registration failed");
             }
         } finally {
@@ -181,9 +215,19 @@ public class AuthController {
         }
     }
 
+    /**
+     * Row shape of the activity log endpoints, selectable with ?fields=
+     */
+    static final Projection.Schema ACTIVITY_FIELDS = Projection.schema()
+            .field("log_id", Projection.Type.INT)
+            .field("action", Projection.Type.STRING)
+            .field("entity_type", Projection.Type.STRING)
+            .field("entity_id", Projection.Type.INT)
+            .field("created_at", Projection.Type.TIMESTAMP);
+
     static void logActivity(Connection conn, int userId, String action, String entityType, int entityId) {
         try {
-            CallableStatement cs = conn.prepareCall("{ CALL log_activity(?, ?, ?, ?) }");
+            CallableStatement cs = conn.prepareCall("CALL log_activity(?, ?, ?, ?)");
             cs.setInt(1, userId);
             cs.setString(2, action);
             cs.setString(3, entityType);
@@ -191,7 +235,7 @@ public class AuthController {
             cs.execute();
             cs.close();
         } catch (SQLException e) {
-            System.err.println("[AuthController] Activity log failed: " + e.getMessage());
+            Log.error("AuthController", "Activity log failed", "error", e.getMessage());
         }
     }
 
@@ -0,0 +1,264 @@
+package com.acadify;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class BatchController {
+    private static final AppConfig.Setting<Integer> MAX_BATCH_ITEMS = AppConfig.intSetting("batch.max.items", 20, 1, 1000, true);
+    private static final AppConfig.Setting<Integer> MAX_BATCH_BODY_BYTES =
+            AppConfig.intSetting("batch.max.body.bytes", 256 * 1024, 1024, 64 * 1024 * 1024, true);
+    private static final AppConfig.Setting<Integer> MAX_PARALLEL_PER_BATCH = AppConfig.intSetting("batch.max.parallel", 4, 1, 64, true);
+    private static final AppConfig.Setting<Long> BATCH_DEADLINE_MS = AppConfig.longSetting("batch.deadline.ms", 10_000, 100, 600_000, true);
+    static final String PATH = "/batch";
+
+    // Sub-requests run on a pool of the caller's role, so one role's batches cannot take another's threads
+    private static final Map<String, Bulkhead> SUB_REQUEST_POOLS = Map.of(
+            "STUDENT", Bulkhead.fromConfig("batch-student", 4, 64),
+            "TEACHER", Bulkhead.fromConfig("batch-teacher", 4, 64),
+            "ADMIN", Bulkhead.fromConfig("batch-admin", 2, 32));
+
+    /**
+     * Get the sub-request pools, which shutdown drains after the batch requests feeding them
+     */
+    static Collection<Bulkhead> subRequestPools() {
+        return SUB_REQUEST_POOLS.values();
+    }
+
+    private static class BatchItem {
+        final int index;
+        final String method;
+        final String path;
+        final byte[] body;
+        int status = 504;
+        String responseBody;
+
+        BatchItem(int index, String method, String path, byte[] body) {
+            this.index = index;
+            this.method = method;
+            this.path = path;
+            this.body = body;
+        }
+    }
+
+    public static void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals(PATH)) {
+            ResponseUtil.sendNotFound(exchange, "Endpoint not found");
+            return;
+        }
+        if (!exchange.getRequestMethod().equals("POST")) {
+            ResponseUtil.sendMethodNotAllowed(exchange);
+            return;
+        }
+
+        long sessionStart = System.nanoTime();
+        String[] session = SessionUtil.extractAndValidate(exchange);
+        RequestContext.record(RequestContext.Phase.SESSION, System.nanoTime() - sessionStart);
+        if (session == null) {
+            ResponseUtil.sendUnauthorized(exchange, "Unauthorized: Invalid or expired session");
+            return;
+        }
+        int userId = Integer.parseInt(session[0]);
+        String role = session[1].toUpperCase();
+
+        String batchKey = exchange.getRequestHeaders().getFirst(Idempotency.HEADER);
+        if (batchKey != null && !Idempotency.isValidKey(batchKey)) {
+            ResponseUtil.sendBadRequest(exchange, Idempotency.HEADER + " must be 1 to " + Idempotency.MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        int maxBodyBytes = MAX_BATCH_BODY_BYTES.get();
+        String body = RequestUtil.readBody(exchange, maxBodyBytes);
+        if (body == null) {
+            ResponseUtil.sendPayloadTooLarge(exchange, "Batch body exceeds " + maxBodyBytes + " bytes");
+            return;
+        }
+
+        List<String> rawItems = RequestUtil.splitJsonArray(RequestUtil.extractRawValue(body, "requests"));
+        if (rawItems == null || rawItems.isEmpty()) {
+            ResponseUtil.sendBadRequest(exchange, "A non-empty 'requests' array is required");
+            return;
+        }
+        int maxItems = MAX_BATCH_ITEMS.get();
+        if (rawItems.size() > maxItems) {
+            ResponseUtil.sendBadRequest(exchange, "A batch may contain at most " + maxItems + " requests");
+            return;
+        }
+
+        // Database work is charged to the role's connection quota, as for its direct requests
+        Bulkhead quota = MainApplication.roleBulkhead(role);
+        long resolveStart = System.nanoTime();
+        int[] resolved = new int[1];
+        Bulkhead.runWithin(quota, () -> resolved[0] = resolveEntityId(role, userId));
+        int entityId = resolved[0];
+        RequestContext.record(RequestContext.Phase.RESOLVE, System.nanoTime() - resolveStart);
+        if (entityId == EntityResolver.UNAVAILABLE) {
+            ResponseUtil.sendServiceUnavailable(exchange, "Database temporarily unavailable, please retry",
+                    DatabaseConfig.breaker().getRetryAfterSeconds());
+            return;
+        }
+        if (entityId == EntityResolver.NOT_FOUND) {
+            ResponseUtil.sendNotFound(exchange, "Profile not found for role " + role);
+            return;
+        }
+
+        List<BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < rawItems.size(); i++) {
+            String raw = rawItems.get(i);
+            String[] fields = RequestUtil.parseJson(raw, "method", "path");
+            String itemBody = RequestUtil.extractRawValue(raw, "body");
+            String method = fields[0] == null ? "GET" : fields[0].toUpperCase();
+            items.add(new BatchItem(i, method, fields[1],
+                    itemBody == null ? null : itemBody.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        long deadline = System.currentTimeMillis() + BATCH_DEADLINE_MS.get();
+        List<BatchItem> readGroup = new ArrayList<>();
+        for (BatchItem item : items) {
+            if (item.method.equals("GET")) {
+                readGroup.add(item);
+                continue;
+            }
+            runParallel(exchange, readGroup, role, userId, entityId, quota, deadline);
+            readGroup.clear();
+            if (System.currentTimeMillis() < deadline) {
+                Bulkhead.runWithin(quota, () -> execute(exchange, item, role, userId, entityId));
+            }
+        }
+        runParallel(exchange, readGroup, role, userId, entityId, quota, deadline);
+
+        JsonBuilder.JsonArrayBuilder results = JsonBuilder.array();
+        for (BatchItem item : items) {
+            synchronized (item) {
+                if (item.responseBody == null) {
+                    complete(item, 504, "Batch deadline exceeded");
+                }
+                results.add(JsonBuilder.object()
+                        .add("index", item.index)
+                        .add("status", item.status)
+                        .addRaw("body", item.responseBody.isEmpty() ? "null" : item.responseBody));
+            }
+        }
+        ResponseUtil.sendSuccess(exchange, "Batch processed", results.build());
+    }
+
+    private static void runParallel(HttpExchange exchange, List<BatchItem> group, String role,
+                                    int userId, int entityId, Bulkhead quota, long deadline) {
+        Bulkhead pool = SUB_REQUEST_POOLS.get(role);
+        RequestContext context = RequestContext.current();
+        int parallel = MAX_PARALLEL_PER_BATCH.get();
+        for (int start = 0; start < group.size(); start += parallel) {
+            List<BatchItem> window = group.subList(start, Math.min(start + parallel, group.size()));
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (BatchItem item : window) {
+                if (System.currentTimeMillis() >= deadline) break;
+                if (pool == null) {
+                    execute(exchange, item, role, userId, entityId);
+                    continue;
+                }
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                boolean queued = pool.submit(() -> {
+                    // Sub-request phases count toward the batch request's breakdown
+                    RequestContext previous = RequestContext.attach(context);
+                    try {
+                        Bulkhead.runWithin(quota, () -> execute(exchange, item, role, userId, entityId));
+                    } finally {
+                        RequestContext.attach(previous);
+                        future.complete(null);
+                    }
+                });
+                if (!queued) {
+                    complete(item, 503, "Server is busy, please retry shortly");
+                    continue;
+                }
+                futures.add(future);
+            }
+            for (CompletableFuture<Void> future : futures) {
+                long remaining = deadline - System.currentTimeMillis();
+                try {
+                    future.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    return;
+                } catch (Exception e) {
+                    Log.error("BatchController", "Sub-request failed", "error", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void execute(HttpExchange parent, BatchItem item, String role, int userId, int entityId) {
+        String prefix = "/" + role.toLowerCase() + "/";
+        if (item.path == null || !item.path.startsWith(prefix)) {
+            complete(item, 403, "Sub-request path must start with " + prefix);
+            return;
+        }
+
+        LocalExchange local;
+        try {
+            local = new LocalExchange(parent, item.method, item.path, item.body);
+        } catch (IllegalArgumentException e) {
+            complete(item, 400, "Invalid sub-request path");
+            return;
+        }
+        // The batch's own validators say nothing about its sub-requests, which must return bodies
+        local.getRequestHeaders().remove("If-None-Match");
+        // A write is deduplicated under its own key, so a retried batch does not repeat it
+        String batchKey = local.getRequestHeaders().getFirst(Idempotency.HEADER);
+        local.getRequestHeaders().remove(Idempotency.HEADER);
+        if (batchKey != null && !item.method.equals("GET")) {
+            local.getRequestHeaders().set(Idempotency.HEADER, Idempotency.subRequestKey(batchKey, item.index));
+        }
+
+        try {
+            switch (role) {
+                case "STUDENT":
+                    MainApplication.serveUser(local, userId, ex -> StudentController.handle(ex, userId, entityId));
+                    break;
+                case "TEACHER":
+                    MainApplication.serveUser(local, userId, ex -> TeacherController.handle(ex, userId, entityId));
+                    break;
+                case "ADMIN":
+                    MainApplication.serveUser(local, userId, ex -> AdminController.handle(ex, userId));
+                    break;
+                default:
+                    complete(item, 403, "Forbidden: Insufficient privileges");
+                    return;
+            }
+            synchronized (item) {
+                item.status = local.getResponseCode();
+                item.responseBody = local.getCapturedBodyAsString();
+            }
+        } catch (Exception e) {
+            Log.error("BatchController", "Sub-request error", "path", item.path, "error", e.getMessage());
+            complete(item, 500, "Internal server error");
+        }
+    }
+
+    private static void complete(BatchItem item, int status, String message) {
+        synchronized (item) {
+            item.status = status;
+            item.responseBody = JsonBuilder.object()
+                    .add("success", false)
+                    .add("message", message)
+                    .addRaw("data", "null")
+                    .build();
+        }
+    }
+
+    private static int resolveEntityId(String role, int userId) {
+        switch (role) {
+            case "STUDENT":
+                return EntityResolver.resolveStudentId(userId);
+            case "TEACHER":
+                return EntityResolver.resolveTeacherId(userId);
+            default:
+                return userId;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.acadify;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Independently sized executor for one class of traffic (auth, student, teacher, admin).
+ * Each bulkhead has its own bounded queue and its own connection quota in DatabaseConfig,
+ * so a flood in one role cannot take threads or connections from the others.
+ */
+public class Bulkhead {
+
+    private static final List<Bulkhead> REGISTRY = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    public Bulkhead(String name, int threads, int queueCapacity) {
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(() -> {
+                        CURRENT.set(this);
+                        r.run();
+                    }, "acadify-" + name + "-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        REGISTRY.add(this);
+        String labels = Metrics.labels("bulkhead", name);
+        Metrics.gauge("acadify_bulkhead_threads", labels, executor::getCorePoolSize);
+        Metrics.gauge("acadify_bulkhead_active_threads", labels, executor::getActiveCount);
+        Metrics.gauge("acadify_bulkhead_queue_depth", labels, () -> executor.getQueue().size());
+        Metrics.counter("acadify_bulkhead_rejected_total", labels, rejected::sum);
+    }
+
+    /**
+     * Create a bulkhead sized from bulkhead.<name>.threads and bulkhead.<name>.queue.
+     * The thread count follows config reloads; the queue is fixed for the process lifetime.
+     */
+    public static Bulkhead fromConfig(String name, int defaultThreads, int defaultQueue) {
+        String prefix = "bulkhead." + name + ".";
+        AppConfig.Setting<Integer> threads = AppConfig.intSetting(prefix + "threads", defaultThreads, 1, 1024, true);
+        AppConfig.Setting<Integer> queue = AppConfig.intSetting(prefix + "queue", defaultQueue, 1, 1_000_000, false);
+        Bulkhead bulkhead = new Bulkhead(name, threads.get(), queue.get());
+        threads.onChange(size -> resize(bulkhead.executor, size));
+        return bulkhead;
+    }
+
+    /**
+     * Resize a fixed-size executor in place; running tasks are unaffected and surplus
+     * threads exit once idle
+     */
+    public static void resize(ThreadPoolExecutor executor, int threads) {
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * Get every bulkhead created in this process
+     */
+    public static List<Bulkhead> all() {
+        return REGISTRY;
+    }
+
+    /**
+     * Get the bulkhead the calling thread is working for, or null outside any bulkhead
+     */
+    public static Bulkhead current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run a task on the calling thread as if it belonged to the given bulkhead
+     */
+    public static void runWithin(Bulkhead bulkhead, Runnable task) {
+        Bulkhead previous = CURRENT.get();
+        CURRENT.set(bulkhead);
+        try {
+            task.run();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Queue a task; returns false if the bulkhead's queue is full
+     */
+    public boolean submit(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Stop taking new tasks on every bulkhead and wait for queued and running ones
+     * until the deadline; stragglers are interrupted. Returns true if all finished in time.
+     */
+    public static boolean shutdownAll(long deadlineNanos) {
+        return shutdown(REGISTRY, deadlineNanos);
+    }
+
+    /**
+     * Drain just the given bulkheads, as shutdownAll does; for draining in stages when
+     * work on one bulkhead submits to another
+     */
+    public static boolean shutdown(Collection<Bulkhead> bulkheads, long deadlineNanos) {
+        for (Bulkhead bulkhead : bulkheads) {
+            bulkhead.executor.shutdown();
+        }
+        boolean drained = true;
+        for (Bulkhead bulkhead : bulkheads) {
+            try {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (!bulkhead.executor.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+                    drained = false;
+                    int abandoned = bulkhead.executor.shutdownNow().size();
+                    Log.warn("Bulkhead", "Drain deadline passed", "bulkhead", bulkhead.name,
+                            "active", bulkhead.executor.getActiveCount(), "queued_abandoned", abandoned);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                bulkhead.executor.shutdownNow();
+                drained = false;
+            }
+        }
+        return drained;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPoolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Build a JSON snapshot of this bulkhead's state
+     */
+    public String toJson() {
+        int poolSize = executor.getCorePoolSize();
+        int active = executor.getActiveCount();
+        return JsonBuilder.object()
+                .add("name", name)
+                .add("threads", poolSize)
+                .add("active", active)
+                .add("utilization", poolSize == 0 ? 0.0 : (double) active / poolSize)
+                .add("queue_depth", executor.getQueue().size())
+                .add("queue_capacity", queueCapacity)
+                .add("completed", executor.getCompletedTaskCount())
+                .add("rejected", rejected.sum())
+                .add("db_quota", DatabaseConfig.getQuotaSize(name))
+                .add("db_quota_available", DatabaseConfig.getQuotaAvailable(name))
+                .build();
+    }
+}
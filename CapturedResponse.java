@@ -0,0 +1,67 @@
+package com.acadify;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A complete response captured from a LocalExchange: status, headers and the serialized
+ * body bytes. Immutable once built, so one capture can be written to any number of
+ * client exchanges without running the handler or serializing again. The body is kept
+ * unencoded; each encoded form is made the first time a client asks for it and kept
+ * alongside, so a shared response is compressed once per encoding, not once per write.
+ */
+public final class CapturedResponse {
+    private final int status;
+    private final List<Map.Entry<String, List<String>>> headers;
+    private final byte[] body;
+    private volatile byte[] gzipBody;
+    private volatile byte[] deflateBody;
+
+    public CapturedResponse(LocalExchange local) {
+        this.status = local.getResponseCode() < 0 ? 500 : local.getResponseCode();
+        List<Map.Entry<String, List<String>>> copy = new ArrayList<>();
+        for (Map.Entry<String, List<String>> header : local.getResponseHeaders().entrySet()) {
+            copy.add(Map.entry(header.getKey(), List.copyOf(header.getValue())));
+        }
+        this.headers = copy;
+        this.body = local.getCapturedBody();
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public int getBodyLength() {
+        return body.length;
+    }
+
+    /**
+     * Write this response to the exchange. For a response shared with a request other
+     * than the one that produced it, the producer's Server-Timing header is left out.
+     * Headers the caller has already set on the exchange are kept unless overwritten.
+     */
+    public void writeTo(HttpExchange exchange, boolean shared) throws IOException {
+        for (Map.Entry<String, List<String>> header : headers) {
+            if (shared && header.getKey().equalsIgnoreCase("Server-Timing")) continue;
+            exchange.getResponseHeaders().put(header.getKey(), new ArrayList<>(header.getValue()));
+        }
+        Compression.send(exchange, status, body, this::encodedBody);
+    }
+
+    /**
+     * The body in the given encoding; a race may compress twice, but both results are equal
+     */
+    private byte[] encodedBody(String encoding) {
+        if (encoding.equals(Compression.GZIP)) {
+            byte[] encoded = gzipBody;
+            if (encoded == null) gzipBody = encoded = Compression.compress(body, encoding);
+            return encoded;
+        }
+        byte[] encoded = deflateBody;
+        if (encoded == null) deflateBody = encoded = Compression.compress(body, encoding);
+        return encoded;
+    }
+}
@@ -0,0 +1,350 @@
+package com.acadify;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Change sequence behind the /changes?since= endpoints. Write paths publish each mark,
+ * doubt or subject assignment they commit, and the feed numbers them in publication
+ * order. Because a change is published only after its statement has committed, a
+ * reader that has seen sequence N has already been able to read every change up to N,
+ * and polling from a cursor never skips one that committed late. A poll returns the
+ * changes after the cursor that the caller may see: students their own marks and
+ * doubts, teachers marks in their subjects and doubts addressed to them, admins all. The
+ * rows themselves are read by id, with the caller's current access checked again, along
+ * with the caller's activity entries about them, so a poll costs in proportion to what
+ * changed rather than to the size of the lists. The feed keeps the last
+ * changes.buffer.size changes in memory. A cursor from before that window, or from
+ * before a restart, gets reset=true and the current cursor: the client reloads its lists
+ * and polls from there. Only writes made through this process are published.
+ */
+public class ChangeFeed {
+
+    public static final String SINCE_PARAM = "since";
+    private static final String PATH_SUFFIX = "/changes";
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private static final AppConfig.Setting<Integer> BUFFER_SIZE =
+            AppConfig.intSetting("changes.buffer.size", 10_000, 16, 10_000_000, false);
+    private static final AppConfig.Setting<Integer> MAX_BATCH =
+            AppConfig.intSetting("changes.max.batch", 500, 1, 100_000, true);
+
+    private static final String MARKS_SQL =
+            "SELECT m.mark_id, m.student_id, m.subject_id, s.subject_name, m.marks_obtained, m.semester"
+                    + " FROM marks m JOIN subjects s ON s.subject_id = m.subject_id"
+                    + " WHERE m.mark_id = ANY(?)";
+    private static final String DOUBTS_SQL =
+            "SELECT doubt_id, student_id, teacher_id, question, answer, status, created_at"
+                    + " FROM doubts WHERE doubt_id = ANY(?)";
+    private static final String SUBJECTS_SQL =
+            "SELECT subject_id, subject_name, semester, teacher_id FROM subjects WHERE subject_id = ANY(?)";
+    private static final String ACTIVITY_SQL =
+            "SELECT log_id, action, entity_type, entity_id, created_at FROM activity_logs"
+                    + " WHERE user_id = ? AND ((entity_type = 'marks' AND entity_id = ANY(?))"
+                    + " OR (entity_type = 'doubts' AND entity_id = ANY(?))"
+                    + " OR (entity_type = 'subjects' AND entity_id = ANY(?)))"
+                    + " ORDER BY log_id";
+
+    private static final Projection.Schema MARK_FIELDS = Projection.schema()
+            .field("mark_id", Projection.Type.INT)
+            .field("student_id", Projection.Type.INT)
+            .field("subject_id", Projection.Type.INT)
+            .field("subject_name", Projection.Type.STRING)
+            .field("marks_obtained", Projection.Type.DECIMAL)
+            .field("semester", Projection.Type.INT);
+    private static final Projection.Schema DOUBT_FIELDS = Projection.schema()
+            .field("doubt_id", Projection.Type.INT)
+            .field("student_id", Projection.Type.INT)
+            .field("teacher_id", Projection.Type.INT)
+            .field("question", Projection.Type.STRING)
+            .field("answer", Projection.Type.NULLABLE_STRING)
+            .field("status", Projection.Type.STRING)
+            .field("created_at", Projection.Type.TIMESTAMP);
+    private static final Projection.Schema SUBJECT_FIELDS = Projection.schema()
+            .field("subject_id", Projection.Type.INT)
+            .field("subject_name", Projection.Type.STRING)
+            .field("semester", Projection.Type.INT)
+            .field("teacher_id", Projection.Type.INT);
+
+    private enum Kind { MARK, DOUBT, SUBJECT }
+
+    private static final class Change {
+        final Kind kind;
+        final int id;
+        final int studentId;
+        final int teacherId;
+
+        Change(Kind kind, int id, int studentId, int teacherId) {
+            this.kind = kind;
+            this.id = id;
+            this.studentId = studentId;
+            this.teacherId = teacherId;
+        }
+    }
+
+    // Guarded by RING; the change with sequence n is at n % length
+    private static final Change[] RING = new Change[BUFFER_SIZE.get()];
+    private static long lastSeq;
+    private static final LongAdder published = new LongAdder();
+    private static final LongAdder deltas = new LongAdder();
+    private static final LongAdder resets = new LongAdder();
+
+    static {
+        Metrics.counter("acadify_changes_published_total", "", published::sum);
+        Metrics.counter("acadify_changes_requests_total", Metrics.labels("result", "delta"), deltas::sum);
+        Metrics.counter("acadify_changes_requests_total", Metrics.labels("result", "reset"), resets::sum);
+        Metrics.gauge("acadify_changes_sequence", "", () -> {
+            synchronized (RING) {
+                return lastSeq;
+            }
+        });
+    }
+
+    /**
+     * Who is polling, which decides the changes they are sent
+     */
+    public static final class Reader {
+        final int userId;
+        final int studentId;
+        final int teacherId;
+        final boolean admin;
+
+        private Reader(int userId, int studentId, int teacherId, boolean admin) {
+            this.userId = userId;
+            this.studentId = studentId;
+            this.teacherId = teacherId;
+            this.admin = admin;
+        }
+
+        public static Reader student(int userId, int studentId) {
+            return new Reader(userId, studentId, 0, false);
+        }
+
+        public static Reader teacher(int userId, int teacherId) {
+            return new Reader(userId, 0, teacherId, false);
+        }
+
+        public static Reader admin(int userId) {
+            return new Reader(userId, 0, 0, true);
+        }
+
+        boolean canSee(Change change) {
+            if (admin) return true;
+            if (studentId > 0) return change.kind != Kind.SUBJECT && change.studentId == studentId;
+            return change.teacherId == teacherId;
+        }
+    }
+
+    /**
+     * A mark was inserted or updated by the given teacher
+     */
+    public static void markChanged(int markId, int studentId, int teacherId) {
+        publish(new Change(Kind.MARK, markId, studentId, teacherId));
+    }
+
+    /**
+     * A doubt was raised or answered; teacherId is 0 for a doubt addressed to nobody.
+     * Returns the cursor just after the change, for events pushed about it.
+     */
+    public static String doubtChanged(int doubtId, int studentId, int teacherId) {
+        return EPOCH + "-" + publish(new Change(Kind.DOUBT, doubtId, studentId, teacherId));
+    }
+
+    /**
+     * A subject was assigned to or taken from the teacher
+     */
+    public static void subjectChanged(int subjectId, int teacherId) {
+        publish(new Change(Kind.SUBJECT, subjectId, 0, teacherId));
+    }
+
+    /**
+     * The cursor a reader starting now would poll from
+     */
+    public static String cursor() {
+        synchronized (RING) {
+            return EPOCH + "-" + lastSeq;
+        }
+    }
+
+    private static long publish(Change change) {
+        long seq;
+        synchronized (RING) {
+            seq = ++lastSeq;
+            RING[(int) (seq % RING.length)] = change;
+        }
+        published.increment();
+        return seq;
+    }
+
+    /**
+     * The changes after a cursor that one reader may see, up to a batch limit
+     */
+    private static final class Delta {
+        final boolean reset;
+        final long cursor;
+        final boolean hasMore;
+        final List<Change> changes;
+
+        Delta(boolean reset, long cursor, boolean hasMore, List<Change> changes) {
+            this.reset = reset;
+            this.cursor = cursor;
+            this.hasMore = hasMore;
+            this.changes = changes;
+        }
+    }
+
+    private static Delta read(long since, Reader reader, int maxBatch) {
+        List<Change> visible = new ArrayList<>();
+        long last;
+        Change[] range;
+        // Only the copy is made under the lock, so polls filtering a long range do not hold up publish()
+        synchronized (RING) {
+            last = lastSeq;
+            long oldest = Math.max(1, last - RING.length + 1);
+            if (since < 0 || since < oldest - 1 || since > last) {
+                return new Delta(true, last, false, visible);
+            }
+            range = new Change[(int) (last - since)];
+            int start = (int) ((since + 1) % RING.length);
+            int head = Math.min(range.length, RING.length - start);
+            System.arraycopy(RING, start, range, 0, head);
+            System.arraycopy(RING, 0, range, head, range.length - head);
+        }
+        for (int i = 0; i < range.length; i++) {
+            if (!reader.canSee(range[i])) continue;
+            visible.add(range[i]);
+            if (visible.size() == maxBatch) return new Delta(false, since + 1 + i, i < range.length - 1, visible);
+        }
+        return new Delta(false, last, false, visible);
+    }
+
+    /**
+     * True for a role's /changes endpoint
+     */
+    public static boolean isFeedPath(String path) {
+        return path.endsWith(PATH_SUFFIX);
+    }
+
+    /**
+     * Answer GET .../changes?since=cursor for the reader. Without since, or with a cursor
+     * the feed no longer covers, the reply has reset=true and the cursor to poll from.
+     */
+    public static void handle(HttpExchange exchange, Reader reader) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            ResponseUtil.sendMethodNotAllowed(exchange);
+            return;
+        }
+        String since = RequestUtil.extractQueryParam(exchange.getRequestURI().getQuery(), SINCE_PARAM);
+        long sinceSeq = -1;
+        if (since != null) {
+            int dash = since.lastIndexOf('-');
+            try {
+                if (dash > 0 && since.substring(0, dash).equals(EPOCH)) {
+                    sinceSeq = Long.parseLong(since.substring(dash + 1));
+                }
+            } catch (NumberFormatException e) {
+                ResponseUtil.sendBadRequest(exchange, "Invalid " + SINCE_PARAM + " cursor");
+                return;
+            }
+        }
+
+        Delta delta = read(sinceSeq, reader, MAX_BATCH.get());
+        (delta.reset ? resets : deltas).increment();
+        Set<Integer> markIds = new LinkedHashSet<>();
+        Set<Integer> doubtIds = new LinkedHashSet<>();
+        Set<Integer> subjectIds = new LinkedHashSet<>();
+        for (Change change : delta.changes) {
+            switch (change.kind) {
+                case MARK:
+                    markIds.add(change.id);
+                    break;
+                case DOUBT:
+                    doubtIds.add(change.id);
+                    break;
+                case SUBJECT:
+                    subjectIds.add(change.id);
+                    break;
+            }
+        }
+
+        JsonBuilder.JsonArrayBuilder marks = JsonBuilder.array();
+        JsonBuilder.JsonArrayBuilder doubts = JsonBuilder.array();
+        JsonBuilder.JsonArrayBuilder subjects = JsonBuilder.array();
+        JsonBuilder.JsonArrayBuilder activity = JsonBuilder.array();
+        if (!delta.changes.isEmpty()) {
+            Connection conn = null;
+            try {
+                conn = DatabaseConfig.getConnection();
+                if (!markIds.isEmpty()) {
+                    if (reader.admin) select(conn, MARKS_SQL, markIds, 0, MARK_FIELDS, marks);
+                    else if (reader.studentId > 0) select(conn, MARKS_SQL + " AND m.student_id = ?", markIds, reader.studentId, MARK_FIELDS, marks);
+                    else select(conn, MARKS_SQL + " AND s.teacher_id = ?", markIds, reader.teacherId, MARK_FIELDS, marks);
+                }
+                if (!doubtIds.isEmpty()) {
+                    if (reader.admin) select(conn, DOUBTS_SQL, doubtIds, 0, DOUBT_FIELDS, doubts);
+                    else if (reader.studentId > 0) select(conn, DOUBTS_SQL + " AND student_id = ?", doubtIds, reader.studentId, DOUBT_FIELDS, doubts);
+                    else select(conn, DOUBTS_SQL + " AND teacher_id = ?", doubtIds, reader.teacherId, DOUBT_FIELDS, doubts);
+                }
+                if (!subjectIds.isEmpty()) {
+                    select(conn, SUBJECTS_SQL, subjectIds, 0, SUBJECT_FIELDS, subjects);
+                }
+                PreparedStatement ps = conn.prepareStatement(ACTIVITY_SQL);
+                ps.setInt(1, reader.userId);
+                ps.setArray(2, intArray(conn, markIds));
+                ps.setArray(3, intArray(conn, doubtIds));
+                ps.setArray(4, intArray(conn, subjectIds));
+                ResultSet rs = ps.executeQuery();
+                Projection activityFields = Projection.all(AuthController.ACTIVITY_FIELDS);
+                while (rs.next()) activity.add(activityFields.row(rs));
+                rs.close();
+                ps.close();
+            } catch (SQLException e) {
+                Log.error("ChangeFeed", "Changes error", "error", e.getMessage());
+                ResponseUtil.sendServerError(exchange, "Failed to retrieve changes");
+                return;
+            } finally {
+                DatabaseConfig.releaseConnection(conn);
+            }
+        }
+
+        String data = JsonBuilder.object()
+                .add("cursor", EPOCH + "-" + delta.cursor)
+                .add("reset", delta.reset)
+                .add("has_more", delta.hasMore)
+                .addRaw("marks", marks.build())
+                .addRaw("doubts", doubts.build())
+                .addRaw("subjects", subjects.build())
+                .addRaw("activity", activity.build())
+                .build();
+        ResponseUtil.sendSuccess(exchange, "Changes retrieved successfully", data);
+    }
+
+    /**
+     * Read the rows with the given ids; scopeId, when not 0, binds the SQL's access check
+     */
+    private static void select(Connection conn, String sql, Set<Integer> ids, int scopeId, Projection.Schema schema,
+                               JsonBuilder.JsonArrayBuilder into) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql);
+        ps.setArray(1, intArray(conn, ids));
+        if (scopeId != 0) ps.setInt(2, scopeId);
+        ResultSet rs = ps.executeQuery();
+        Projection all = Projection.all(schema);
+        while (rs.next()) into.add(all.row(rs));
+        rs.close();
+        ps.close();
+    }
+
+    private static Array intArray(Connection conn, Set<Integer> ids) throws SQLException {
+        return conn.createArrayOf("integer", ids.toArray(new Integer[0]));
+    }
+}
@@ -0,0 +1,232 @@
+package com.acadify;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker for a downstream dependency, fed with the outcome and latency of
+ * each call. It opens when, over the last breaker.<name>.window.calls calls, the share
+ * of failures reaches breaker.<name>.failure.rate or the share of calls slower than
+ * breaker.<name>.slow.call.ms reaches breaker.<name>.slow.rate. While open, callers are
+ * refused at once instead of waiting on the dependency. After breaker.<name>.open.seconds
+ * it turns half-open and lets breaker.<name>.half.open.probes calls through; if they all
+ * succeed it closes, and any failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private static final List<CircuitBreaker> REGISTRY = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final AppConfig.Setting<Integer> windowCalls;
+    private final AppConfig.Setting<Integer> minCalls;
+    private final AppConfig.Setting<Double> failureRate;
+    private final AppConfig.Setting<Long> slowCallMs;
+    private final AppConfig.Setting<Double> slowRate;
+    private final AppConfig.Setting<Integer> openSeconds;
+    private final AppConfig.Setting<Integer> halfOpenProbes;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+    private volatile State state = State.CLOSED;
+
+    // Guarded by this
+    private boolean[] failedRing;
+    private boolean[] slowRing;
+    private int ringPosition;
+    private int ringCount;
+    private int failures;
+    private int slowCalls;
+    private long stateSince = System.nanoTime();
+    private int probesIssued;
+    private int probesSucceeded;
+
+    public CircuitBreaker(String name, double failureRate, long slowCallMs, double slowRate, int openSeconds) {
+        this.name = name;
+        String prefix = "breaker." + name + ".";
+        this.windowCalls = AppConfig.intSetting(prefix + "window.calls", 50, 1, 100_000, true);
+        this.minCalls = AppConfig.intSetting(prefix + "min.calls", 20, 1, 100_000, true);
+        this.failureRate = AppConfig.doubleSetting(prefix + "failure.rate", failureRate, 0.01, 1.0, true);
+        this.slowCallMs = AppConfig.longSetting(prefix + "slow.call.ms", slowCallMs, 1, 600_000, true);
+        this.slowRate = AppConfig.doubleSetting(prefix + "slow.rate", slowRate, 0.01, 1.0, true);
+        this.openSeconds = AppConfig.intSetting(prefix + "open.seconds", openSeconds, 1, 3600, true);
+        this.halfOpenProbes = AppConfig.intSetting(prefix + "half.open.probes", 3, 1, 1000, true);
+        resetWindow();
+        windowCalls.onChange(v -> resetWindow());
+        REGISTRY.add(this);
+        String labels = Metrics.labels("breaker", name);
+        Metrics.gauge("acadify_circuit_breaker_state", labels, () -> state.ordinal());
+        Metrics.counter("acadify_circuit_breaker_opened_total", labels, opened::sum);
+        Metrics.counter("acadify_circuit_breaker_rejected_total", labels, rejected::sum);
+    }
+
+    /**
+     * Get every circuit breaker created in this process
+     */
+    public static List<CircuitBreaker> all() {
+        return REGISTRY;
+    }
+
+    /**
+     * Ask to make a call; false means the breaker is open, or half-open with all probes
+     * already out, and the caller should fail fast
+     */
+    public boolean tryAcquirePermission() {
+        if (state == State.CLOSED) return true;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (state == State.OPEN && now - stateSince >= openNanos()) {
+                transition(State.HALF_OPEN, now);
+            }
+            if (state == State.HALF_OPEN) {
+                // Probes that never report back must not wedge the breaker half-open
+                if (probesIssued >= halfOpenProbes.get() && now - stateSince >= openNanos()) {
+                    probesIssued = probesSucceeded;
+                    stateSince = now;
+                }
+                if (probesIssued < halfOpenProbes.get()) {
+                    probesIssued++;
+                    return true;
+                }
+            } else if (state == State.CLOSED) {
+                return true;
+            }
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * True while the breaker is open and not yet due to probe, so callers can skip
+     * the attempt entirely
+     */
+    public boolean isOpen() {
+        if (state != State.OPEN) return false;
+        synchronized (this) {
+            return state == State.OPEN && System.nanoTime() - stateSince < openNanos();
+        }
+    }
+
+    public void recordSuccess(long elapsedNanos) {
+        record(false, elapsedNanos >= TimeUnit.MILLISECONDS.toNanos(slowCallMs.get()));
+    }
+
+    public void recordFailure() {
+        record(true, false);
+    }
+
+    private synchronized void record(boolean failed, boolean slow) {
+        long now = System.nanoTime();
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                transition(State.OPEN, now);
+            } else if (++probesSucceeded >= halfOpenProbes.get()) {
+                transition(State.CLOSED, now);
+            }
+            return;
+        }
+        if (state == State.OPEN) return;
+        if (ringCount == failedRing.length) {
+            if (failedRing[ringPosition]) failures--;
+            if (slowRing[ringPosition]) slowCalls--;
+        } else {
+            ringCount++;
+        }
+        failedRing[ringPosition] = failed;
+        slowRing[ringPosition] = slow;
+        if (failed) failures++;
+        if (slow) slowCalls++;
+        ringPosition = (ringPosition + 1) % failedRing.length;
+        if (ringCount >= minCalls.get()
+                && (failures >= failureRate.get() * ringCount || slowCalls >= slowRate.get() * ringCount)) {
+            Log.warn("CircuitBreaker", "Opening circuit", "breaker", name, "calls", ringCount,
+                    "failures", failures, "slow_calls", slowCalls, "open_seconds", openSeconds.get());
+            transition(State.OPEN, now);
+        }
+    }
+
+    private void transition(State next, long now) {
+        if (next == State.OPEN) opened.increment();
+        if (next != State.OPEN || state != State.CLOSED) {
+            Log.info("CircuitBreaker", "State changed", "breaker", name, "from", state, "to", next);
+        }
+        state = next;
+        stateSince = now;
+        probesIssued = 0;
+        probesSucceeded = 0;
+        if (next == State.CLOSED) clearWindow();
+    }
+
+    private synchronized void resetWindow() {
+        failedRing = new boolean[windowCalls.get()];
+        slowRing = new boolean[windowCalls.get()];
+        clearWindow();
+    }
+
+    private void clearWindow() {
+        Arrays.fill(failedRing, false);
+        Arrays.fill(slowRing, false);
+        ringPosition = 0;
+        ringCount = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    private long openNanos() {
+        return TimeUnit.SECONDS.toNanos(openSeconds.get());
+    }
+
+    /**
+     * Seconds until an open breaker next lets a probe through, for Retry-After
+     */
+    public synchronized int getRetryAfterSeconds() {
+        if (state != State.OPEN) return 1;
+        long remaining = openNanos() - (System.nanoTime() - stateSince);
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + 999_999_999L));
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * True if the exception says the database itself is unreachable, overloaded or
+     * timing out, as opposed to rejecting this particular statement: SQLSTATE classes
+     * 08 (connection), 53 (insufficient resources), 57 (operator intervention, which
+     * includes statement timeouts and shutdown) and 58 (system error)
+     */
+    public static boolean isUnavailable(SQLException e) {
+        String sqlState = e.getSQLState();
+        if (sqlState == null || sqlState.length() < 2) return false;
+        String sqlClass = sqlState.substring(0, 2);
+        return sqlClass.equals("08") || sqlClass.equals("53") || sqlClass.equals("57") || sqlClass.equals("58");
+    }
+
+    /**
+     * Build a JSON snapshot of this breaker's state
+     */
+    public synchronized String toJson() {
+        return JsonBuilder.object()
+                .add("name", name)
+                .add("state", state.name())
+                .add("state_seconds", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - stateSince))
+                .add("window_calls", ringCount)
+                .add("window_failures", failures)
+                .add("window_slow_calls", slowCalls)
+                .add("failure_rate_threshold", failureRate.get())
+                .add("slow_call_ms", slowCallMs.get())
+                .add("slow_rate_threshold", slowRate.get())
+                .add("open_seconds", openSeconds.get())
+                .add("times_opened", opened.sum())
+                .add("rejected", rejected.sum())
+                .build();
+    }
+}
@@ -0,0 +1,162 @@
+package com.acadify;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The address of the client behind a request, for keying per-client limits. Behind a
+ * load balancer or platform router (Render, Railway) the socket peer is the proxy, so
+ * every client would share one key. Proxies listed in http.trusted.proxies (comma
+ * separated addresses or CIDR blocks, e.g. 10.0.0.0/8) are believed about the client:
+ * when the peer is one of them, the Forwarded or X-Forwarded-For chain is read from the
+ * right, and the first hop that is not a trusted proxy is the client. Entries left of
+ * that hop were written by the client and are ignored, so they cannot be forged to
+ * pick another client's key. With no trusted proxies, the default, headers are never
+ * read and the socket peer is the client.
+ */
+public class ClientAddress {
+
+    private static final AppConfig.Setting<String> TRUSTED_PROXIES =
+            AppConfig.stringSetting("http.trusted.proxies", "", true);
+
+    private static volatile List<Block> trusted = parse(TRUSTED_PROXIES.get());
+
+    static {
+        TRUSTED_PROXIES.onChange(value -> trusted = parse(value));
+    }
+
+    /**
+     * An address prefix; a plain address is a block of its full length
+     */
+    private static final class Block {
+        final byte[] prefix;
+        final int bits;
+
+        Block(byte[] prefix, int bits) {
+            this.prefix = prefix;
+            this.bits = bits;
+        }
+
+        boolean contains(InetAddress address) {
+            byte[] candidate = address.getAddress();
+            if (candidate.length != prefix.length) return false;
+            int whole = bits / 8;
+            for (int i = 0; i < whole; i++) {
+                if (candidate[i] != prefix[i]) return false;
+            }
+            int rest = bits % 8;
+            if (rest == 0) return true;
+            int mask = (0xFF << (8 - rest)) & 0xFF;
+            return (candidate[whole] & mask) == (prefix[whole] & mask);
+        }
+    }
+
+    /**
+     * Get the client's address as text: a socket peer, or a hop named by a trusted proxy
+     */
+    public static String of(HttpExchange exchange) {
+        InetAddress peer = exchange.getRemoteAddress().getAddress();
+        if (!isTrusted(peer)) return peer.getHostAddress();
+        List<String> hops = forwardedFor(exchange.getRequestHeaders());
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            InetAddress hop = literal(hops.get(i));
+            // A hop a trusted proxy wrote but that is no address, e.g. "unknown", still names one client
+            if (hop == null) return hops.get(i);
+            if (!isTrusted(hop)) return hop.getHostAddress();
+        }
+        return hops.isEmpty() ? peer.getHostAddress() : hops.get(0);
+    }
+
+    private static boolean isTrusted(InetAddress address) {
+        for (Block block : trusted) {
+            if (block.contains(address)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The for= hops of the Forwarded header, or else of X-Forwarded-For, in order
+     */
+    private static List<String> forwardedFor(Headers headers) {
+        List<String> hops = new ArrayList<>();
+        List<String> forwarded = headers.get("Forwarded");
+        if (forwarded != null) {
+            for (String header : forwarded) {
+                for (String element : header.split(",")) {
+                    for (String pair : element.split(";")) {
+                        String[] parts = pair.trim().split("=", 2);
+                        if (parts.length == 2 && parts[0].trim().equalsIgnoreCase("for")) {
+                            hops.add(stripForwardedNode(parts[1].trim()));
+                        }
+                    }
+                }
+            }
+            return hops;
+        }
+        List<String> xff = headers.get("X-Forwarded-For");
+        if (xff != null) {
+            for (String header : xff) {
+                for (String hop : header.split(",")) {
+                    if (!hop.isBlank()) hops.add(hop.trim());
+                }
+            }
+        }
+        return hops;
+    }
+
+    /**
+     * Drop the quotes, brackets and port of a Forwarded node, e.g. "[2001:db8::1]:4711"
+     */
+    private static String stripForwardedNode(String node) {
+        if (node.length() >= 2 && node.startsWith("\"") && node.endsWith("\"")) {
+            node = node.substring(1, node.length() - 1);
+        }
+        if (node.startsWith("[")) {
+            int close = node.indexOf(']');
+            return close > 0 ? node.substring(1, close) : node;
+        }
+        int colon = node.indexOf(':');
+        return colon > 0 && node.indexOf(':', colon + 1) < 0 ? node.substring(0, colon) : node;
+    }
+
+    /**
+     * Parse an IP address literal; null for anything else, so no name is ever looked up
+     */
+    private static InetAddress literal(String text) {
+        boolean ipv4 = text.matches("\\d{1,3}(\\.\\d{1,3}){3}");
+        boolean ipv6 = text.indexOf(':') >= 0 && text.matches("[0-9A-Fa-f:.]+");
+        if (!ipv4 && !ipv6) return null;
+        try {
+            return InetAddress.getByName(text);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static List<Block> parse(String value) {
+        List<Block> blocks = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+            int slash = entry.indexOf('/');
+            InetAddress address = literal(slash < 0 ? entry : entry.substring(0, slash));
+            int maxBits = address == null ? 0 : address.getAddress().length * 8;
+            int bits = maxBits;
+            try {
+                if (slash >= 0) bits = Integer.parseInt(entry.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                bits = -1;
+            }
+            if (address == null || bits < 0 || bits > maxBits) {
+                Log.warn("ClientAddress", "Ignoring invalid trusted proxy", "entry", entry);
+                continue;
+            }
+            blocks.add(new Block(address.getAddress(), bits));
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,317 @@
+package com.acadify;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Response body compression negotiated from Accept-Encoding, applied where bytes leave
+ * for the client. JSON and text bodies of at least compression.min.bytes are sent as
+ * gzip or deflate when the client accepts one of them, and kept as they are when
+ * compressing would not make them smaller. Responses captured on a LocalExchange are
+ * never compressed, because LocalExchange drops Accept-Encoding: a captured response
+ * may be replayed to any client, and each one is encoded for its own client when
+ * written. Deflaters hold native memory and are costly to create, so they are pooled,
+ * compression.pool.size idle ones per encoding. A compressed body's ETag gets a suffix
+ * naming the encoding, since a strong tag must differ between encodings of a resource.
+ * Sizes before and after compression are counted per route.
+ */
+public class Compression {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private static final AppConfig.Setting<Boolean> ENABLED =
+            AppConfig.booleanSetting("compression.enabled", true, true);
+    private static final AppConfig.Setting<Integer> MIN_BYTES =
+            AppConfig.intSetting("compression.min.bytes", 1024, 0, 64 * 1024 * 1024, true);
+    private static final AppConfig.Setting<Integer> LEVEL =
+            AppConfig.intSetting("compression.level", 6, 1, 9, true);
+    private static final AppConfig.Setting<Integer> POOL_SIZE =
+            AppConfig.intSetting("compression.pool.size", 16, 1, 1024, false);
+
+    private static final int BUFFER_BYTES = 8192;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final ArrayBlockingQueue<Deflater> GZIP_POOL = new ArrayBlockingQueue<>(POOL_SIZE.get());
+    private static final ArrayBlockingQueue<Deflater> DEFLATE_POOL = new ArrayBlockingQueue<>(POOL_SIZE.get());
+    private static final LongAdder created = new LongAdder();
+
+    static {
+        Metrics.counter("acadify_compression_deflaters_created_total", "", created::sum);
+        Metrics.gauge("acadify_compression_deflaters_idle", Metrics.labels("encoding", GZIP), GZIP_POOL::size);
+        Metrics.gauge("acadify_compression_deflaters_idle", Metrics.labels("encoding", DEFLATE), DEFLATE_POOL::size);
+    }
+
+    /**
+     * Send the status and body, compressed if the client and the response allow it
+     */
+    public static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        send(exchange, status, body, encoding -> compress(body, encoding));
+    }
+
+    /**
+     * Like send, with the encoded body supplied by the caller, so a response written
+     * to many clients can keep its encoded forms instead of compressing each time
+     */
+    public static void send(HttpExchange exchange, int status, byte[] body, Function<String, byte[]> encoder)
+            throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        byte[] wire = body;
+        if (isNegotiable(headers, status) && body.length >= MIN_BYTES.get()) {
+            addVary(headers);
+            String encoding = negotiate(exchange);
+            if (encoding != null) {
+                long start = System.nanoTime();
+                byte[] encoded = encoder.apply(encoding);
+                RequestContext.record(RequestContext.Phase.SERIALIZE, System.nanoTime() - start);
+                if (encoded.length < body.length) {
+                    wire = encoded;
+                    markEncoded(headers, encoding);
+                }
+            }
+        }
+        long start = System.nanoTime();
+        exchange.sendResponseHeaders(status, wire.length == 0 ? -1 : wire.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(wire);
+        os.close();
+        RequestContext.record(RequestContext.Phase.WRITE, System.nanoTime() - start);
+        recordBytes(exchange, body.length, wire.length);
+    }
+
+    /**
+     * Send the status and open a chunked body for a response written over time, such as
+     * an event stream. When compressed, each flush() pushes everything written so far to
+     * the client as complete deflate blocks, so a reader sees each message as it is flushed.
+     */
+    public static OutputStream openStream(HttpExchange exchange, int status) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        String encoding = null;
+        if (isNegotiable(headers, status)) {
+            addVary(headers);
+            encoding = negotiate(exchange);
+            if (encoding != null) markEncoded(headers, encoding);
+        }
+        exchange.sendResponseHeaders(status, 0);
+        Metrics.RouteMetrics route = route(exchange);
+        return new EncodingStream(exchange.getResponseBody(), encoding, route);
+    }
+
+    /**
+     * Compress a whole body with the given encoding
+     */
+    public static byte[] compress(byte[] body, String encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (EncodingStream stream = new EncodingStream(out, encoding, null)) {
+            stream.write(body, 0, body.length);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory compression failed", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The encoding to use for the client, gzip preferred at equal weight, or null for
+     * none. An encoding with q=0 is refused, and * stands for any encoding not listed.
+     */
+    static String negotiate(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (header == null) return null;
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String token : header.split(",")) {
+            String[] parts = token.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (name.equals(GZIP) || name.equals("x-gzip")) gzip = q;
+            else if (name.equals(DEFLATE)) deflate = q;
+            else if (name.equals("*")) any = q;
+        }
+        if (gzip < 0) gzip = any;
+        if (deflate < 0) deflate = any;
+        if (gzip > 0 && gzip >= deflate) return GZIP;
+        if (deflate > 0) return DEFLATE;
+        return null;
+    }
+
+    /**
+     * The tag an ETag names once any encoding suffix added here is removed, for
+     * comparing If-None-Match against the identity tag
+     */
+    public static String identityTag(String etag) {
+        for (String encoding : new String[] {GZIP, DEFLATE}) {
+            String suffix = "-" + encoding + "\"";
+            if (etag.endsWith(suffix)) return etag.substring(0, etag.length() - suffix.length()) + "\"";
+        }
+        return etag;
+    }
+
+    private static boolean isNegotiable(Headers headers, int status) {
+        if (!ENABLED.get() || status == 204 || status == 304 || headers.containsKey("Content-Encoding")) return false;
+        String contentType = headers.getFirst("Content-Type");
+        return contentType != null && (contentType.startsWith("application/json") || contentType.startsWith("text/"));
+    }
+
+    private static void addVary(Headers headers) {
+        List<String> vary = headers.get("Vary");
+        if (vary == null || !vary.contains("Accept-Encoding")) headers.add("Vary", "Accept-Encoding");
+    }
+
+    private static void markEncoded(Headers headers, String encoding) {
+        headers.set("Content-Encoding", encoding);
+        String etag = headers.getFirst("ETag");
+        if (etag != null && etag.endsWith("\"")) {
+            headers.set("ETag", etag.substring(0, etag.length() - 1) + "-" + encoding + "\"");
+        }
+    }
+
+    private static Metrics.RouteMetrics route(HttpExchange exchange) {
+        if (exchange instanceof LocalExchange) return null;
+        return Metrics.route(exchange.getRequestMethod(), exchange.getRequestURI().getPath());
+    }
+
+    private static void recordBytes(HttpExchange exchange, long bodyBytes, long sentBytes) {
+        Metrics.RouteMetrics route = route(exchange);
+        if (route != null) route.recordBytes(bodyBytes, sentBytes);
+    }
+
+    private static Deflater borrow(String encoding) {
+        Deflater deflater = (encoding.equals(GZIP) ? GZIP_POOL : DEFLATE_POOL).poll();
+        if (deflater == null) {
+            created.increment();
+            // gzip frames raw deflate data itself; deflate is the zlib format
+            deflater = new Deflater(LEVEL.get(), encoding.equals(GZIP));
+        } else {
+            deflater.setLevel(LEVEL.get());
+        }
+        return deflater;
+    }
+
+    private static void release(String encoding, Deflater deflater) {
+        deflater.reset();
+        if (!(encoding.equals(GZIP) ? GZIP_POOL : DEFLATE_POOL).offer(deflater)) deflater.end();
+    }
+
+    /**
+     * Body stream that encodes with a pooled Deflater, or passes bytes through when the
+     * encoding is null, and counts bytes in and out for the route on close
+     */
+    private static final class EncodingStream extends OutputStream {
+        private final OutputStream out;
+        private final String encoding;
+        private final Metrics.RouteMetrics route;
+        private final CRC32 crc;
+        private final byte[] buffer;
+        private Deflater deflater;
+        private long bytesIn;
+        private long bytesOut;
+        private boolean closed;
+
+        EncodingStream(OutputStream out, String encoding, Metrics.RouteMetrics route) throws IOException {
+            this.out = out;
+            this.encoding = encoding;
+            this.route = route;
+            this.crc = GZIP.equals(encoding) ? new CRC32() : null;
+            this.buffer = encoding == null ? null : new byte[BUFFER_BYTES];
+            if (encoding != null) {
+                this.deflater = borrow(encoding);
+                if (crc != null) emit(GZIP_HEADER, GZIP_HEADER.length);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Stream closed");
+            bytesIn += len;
+            if (encoding == null) {
+                out.write(b, off, len);
+                bytesOut += len;
+                return;
+            }
+            if (crc != null) crc.update(b, off, len);
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) drain(Deflater.NO_FLUSH);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (closed) return;
+            if (encoding != null) {
+                int produced;
+                do {
+                    produced = drain(Deflater.SYNC_FLUSH);
+                } while (produced == buffer.length);
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                if (encoding != null) {
+                    deflater.finish();
+                    while (!deflater.finished()) drain(Deflater.NO_FLUSH);
+                    if (crc != null) {
+                        byte[] trailer = new byte[8];
+                        writeIntLE(trailer, 0, (int) crc.getValue());
+                        writeIntLE(trailer, 4, (int) bytesIn);
+                        emit(trailer, trailer.length);
+                    }
+                }
+            } finally {
+                if (deflater != null) {
+                    release(encoding, deflater);
+                    deflater = null;
+                }
+                out.close();
+                if (route != null) route.recordBytes(bytesIn, bytesOut);
+            }
+        }
+
+        private int drain(int flush) throws IOException {
+            int produced = deflater.deflate(buffer, 0, buffer.length, flush);
+            if (produced > 0) emit(buffer, produced);
+            return produced;
+        }
+
+        private void emit(byte[] bytes, int len) throws IOException {
+            out.write(bytes, 0, len);
+            bytesOut += len;
+        }
+
+        private static void writeIntLE(byte[] target, int offset, int value) {
+            target[offset] = (byte) value;
+            target[offset + 1] = (byte) (value >> 8);
+            target[offset + 2] = (byte) (value >> 16);
+            target[offset + 3] = (byte) (value >> 24);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.acadify;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive (AIMD) concurrency limiter for a route group.
+ * The limit grows by roughly one slot per limit's worth of fast completions while the
+ * group is busy, and is cut multiplicatively when observed latency exceeds the target.
+ * Requests beyond the current limit are rejected immediately instead of queueing.
+ * Bounds, latency target and Retry-After are read from limiter.<name>.* settings, with
+ * the constructor arguments as defaults, and follow config reloads.
+ */
+public class ConcurrencyLimiter {
+
+    private static final List<ConcurrencyLimiter> REGISTRY = new CopyOnWriteArrayList<>();
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final long BACKOFF_COOLDOWN_NANOS = 100_000_000L;
+
+    private final String name;
+    private volatile int minLimit;
+    private volatile int maxLimit;
+    private volatile long latencyTargetNanos;
+    private volatile int retryAfterSeconds;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final ReentrantLock sampleLock = new ReentrantLock();
+    private volatile int limit;
+    private double estimatedLimit;
+    private long lastBackoffNanos;
+
+    public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                              long latencyTargetMs, int retryAfterSeconds) {
+        this.name = name;
+        String prefix = "limiter." + name + ".";
+        AppConfig.Setting<Integer> min = AppConfig.intSetting(prefix + "min", minLimit, 1, 100_000, true);
+        AppConfig.Setting<Integer> max = AppConfig.intSetting(prefix + "max", maxLimit, 1, 100_000, true);
+        AppConfig.Setting<Long> target = AppConfig.longSetting(prefix + "latency.target.ms", latencyTargetMs, 1, 600_000, true);
+        AppConfig.Setting<Integer> retryAfter = AppConfig.intSetting(prefix + "retry.after.seconds", retryAfterSeconds, 0, 3600, true);
+        this.minLimit = min.get();
+        this.maxLimit = Math.max(min.get(), max.get());
+        this.latencyTargetNanos = target.get() * 1_000_000L;
+        this.retryAfterSeconds = retryAfter.get();
+        this.estimatedLimit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.limit = (int) this.estimatedLimit;
+        min.onChange(v -> setBounds(v, max.get()));
+        max.onChange(v -> setBounds(min.get(), v));
+        target.onChange(v -> latencyTargetNanos = v * 1_000_000L);
+        retryAfter.onChange(v -> this.retryAfterSeconds = v);
+        REGISTRY.add(this);
+        String labels = Metrics.labels("group", name);
+        Metrics.gauge("acadify_concurrency_limit", labels, () -> this.limit);
+        Metrics.gauge("acadify_concurrency_in_flight", labels, inFlight::get);
+        Metrics.counter("acadify_concurrency_rejected_total", labels, rejected::sum);
+    }
+
+    /**
+     * Get every limiter created in this process
+     */
+    public static List<ConcurrencyLimiter> all() {
+        return REGISTRY;
+    }
+
+    /**
+     * Try to take a slot; returns false if the group is at its limit
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return a slot and feed the observed latency into the limit estimate
+     */
+    public void release(long latencyNanos) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        // Skip the sample rather than contend; the next completion will adjust the limit
+        if (!sampleLock.tryLock()) return;
+        try {
+            if (latencyNanos > latencyTargetNanos) {
+                long now = System.nanoTime();
+                if (now - lastBackoffNanos >= BACKOFF_COOLDOWN_NANOS) {
+                    estimatedLimit = Math.max(minLimit, estimatedLimit * BACKOFF_RATIO);
+                    lastBackoffNanos = now;
+                }
+            } else if (inFlightAtCompletion * 2 >= (int) estimatedLimit) {
+                estimatedLimit = Math.min(maxLimit, estimatedLimit + 1.0 / estimatedLimit);
+            }
+            limit = (int) estimatedLimit;
+        } finally {
+            sampleLock.unlock();
+        }
+    }
+
+    private void setBounds(int min, int max) {
+        sampleLock.lock();
+        try {
+            minLimit = min;
+            maxLimit = Math.max(min, max);
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+            limit = (int) estimatedLimit;
+        } finally {
+            sampleLock.unlock();
+        }
+    }
+
+    /**
+     * Return a slot without sampling, for requests that never ran
+     */
+    public void abandon() {
+        inFlight.decrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Build a JSON snapshot of this limiter's state
+     */
+    public String toJson() {
+        return JsonBuilder.object()
+                .add("name", name)
+                .add("limit", limit)
+                .add("min_limit", minLimit)
+                .add("max_limit", maxLimit)
+                .add("in_flight", inFlight.get())
+                .add("latency_target_ms", latencyTargetNanos / 1_000_000L)
+                .add("accepted", accepted.sum())
+                .add("rejected", rejected.sum())
+                .build();
+    }
+}
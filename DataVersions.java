@@ -0,0 +1,93 @@
+package com.acadify;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Version counters for the data behind the per-student and per-subject reads, used to
+ * build strong ETags and answer If-None-Match with 304 before any query runs. A
+ * student's counter moves whenever one of their marks or doubts is written, a subject's
+ * whenever marks in it are written or its teacher changes. Write paths bump a counter
+ * only after their statement has committed, and reads take the tag before querying, so
+ * a tag never claims data newer than the body it was sent with. The tag also carries
+ * the process start time: counters start again from zero after a restart, and old tags
+ * must not match them. Only writes made through this process are seen, so data changed
+ * directly in the database keeps its old tag until the next write through the API.
+ */
+public class DataVersions {
+
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private static final ConcurrentHashMap<Integer, AtomicLong> STUDENTS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, AtomicLong> SUBJECTS = new ConcurrentHashMap<>();
+    private static final LongAdder notModified = new LongAdder();
+    private static final LongAdder modified = new LongAdder();
+
+    static {
+        Metrics.counter("acadify_conditional_requests_total", Metrics.labels("result", "not_modified"), notModified::sum);
+        Metrics.counter("acadify_conditional_requests_total", Metrics.labels("result", "modified"), modified::sum);
+    }
+
+    public static void studentChanged(int studentId) {
+        STUDENTS.computeIfAbsent(studentId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    public static void subjectChanged(int subjectId) {
+        SUBJECTS.computeIfAbsent(subjectId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * ETag for reads of one student's marks and doubts
+     */
+    public static String studentTag(int studentId) {
+        return "\"" + EPOCH + "-st" + studentId + "-" + version(STUDENTS, studentId) + "\"";
+    }
+
+    /**
+     * ETag for a teacher's reads of one subject's marks. The teacher is part of the tag
+     * because whether they may read the subject at all is decided by the same query.
+     */
+    public static String subjectTag(int subjectId, int teacherId) {
+        return "\"" + EPOCH + "-sb" + subjectId + "-t" + teacherId + "-" + version(SUBJECTS, subjectId) + "\"";
+    }
+
+    private static long version(ConcurrentHashMap<Integer, AtomicLong> versions, int id) {
+        AtomicLong version = versions.get(id);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * Answer 304 and return true if the request's If-None-Match already names the tag;
+     * otherwise set the tag on the response, for the handler's 200 to carry, and return false
+     */
+    public static boolean isNotModified(HttpExchange exchange, String etag) throws IOException {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String matched = ifNoneMatch == null ? null : match(ifNoneMatch, etag);
+        if (matched != null) {
+            notModified.increment();
+            ResponseUtil.sendNotModified(exchange, matched);
+            return true;
+        }
+        if (ifNoneMatch != null) modified.increment();
+        exchange.getResponseHeaders().set("ETag", etag);
+        return false;
+    }
+
+    /**
+     * Find the If-None-Match entry naming the tag and return it, as the 304 should carry
+     * the tag of the copy the client holds. If-None-Match uses weak comparison, so a W/
+     * prefix is ignored, and so is the suffix Compression gives the tag of an encoded body.
+     */
+    private static String match(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) return etag;
+            if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+            if (Compression.identityTag(candidate).equals(etag)) return candidate;
+        }
+        return null;
+    }
+}
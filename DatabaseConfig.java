@@ -4,9 +4,52 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 public class DatabaseConfig {
-    private static final int POOL_SIZE = 20;
+    private static final AppConfig.Setting<Integer> POOL_SIZE = AppConfig.intSetting("db.pool.size", 20, 1, 1000, true)
+            .onChange(DatabaseConfig::resizePool);
+    private static final AppConfig.Setting<Long> QUOTA_WAIT_MS = AppConfig.longSetting("db.quota.wait.ms", 5000, 0, 600_000, true);
+    private static final AppConfig.Setting<Integer> PREPARE_THRESHOLD = AppConfig.intSetting("db.prepare.threshold", 1, -1, 1000, false);
+    private static final AppConfig.Setting<Integer> CONNECT_TIMEOUT_SECONDS = AppConfig.intSetting("db.connect.timeout.seconds", 5, 0, 600, false);
+    // Backstop for a database that stops answering without closing the socket, where a query timeout's cancel cannot get through
+    private static final AppConfig.Setting<Integer> SOCKET_TIMEOUT_SECONDS = AppConfig.intSetting("db.socket.timeout.seconds", 120, 0, 3600, false);
+    private static final CircuitBreaker BREAKER = new CircuitBreaker("db", 0.5, 2000, 0.8, 10);
     private static final Deque<Connection> pool = new ArrayDeque<>();
+    private static final Map<String, QuotaSemaphore> quotas = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> quotaSizes = new ConcurrentHashMap<>();
+    private static final Map<Connection, Semaphore> borrowedQuotas = new IdentityHashMap<>();
+    private static final Map<Connection, Long> borrowedAt = new IdentityHashMap<>();
+    private static final Map<String, Histogram> poolWait = new ConcurrentHashMap<>();
+    private static boolean closed;
+    static {
+        Metrics.gauge("acadify_db_pool_idle_connections", "", DatabaseConfig::idleCount);
+    }
+    /**
+     * Fair semaphore whose permit count can shrink as well as grow on config reload
+     */
+    private static final class QuotaSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        QuotaSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        void resize(int delta) {
+            if (delta > 0) release(delta);
+            else if (delta < 0) reducePermits(-delta);
+        }
+    }
+    /**
+     * Work done against one pooled connection, e.g. statement preparation during warm-up
+     */
+    public interface ConnectionTask {
+        void run(Connection conn) throws SQLException;
+    }
     private static String jdbcUrl;
     private static String username;
     private static String password;
@@ -16,38 +59,229 @@ public class DatabaseConfig {
         password = requireEnv("DB_PASSWORD");
         try {
             Class.forName("org.postgresql.Driver");
-            for (int i = 0; i < POOL_SIZE; i++) {
+            int size = POOL_SIZE.get();
+            for (int i = 0; i < size; i++) {
                 pool.push(createConnection());
             }
-            System.out.println("[DatabaseConfig] Connection pool initialized with " + POOL_SIZE + " connections.");
+            Log.info("DatabaseConfig", "Connection pool initialized", "connections", size);
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("[DatabaseConfig] PostgreSQL JDBC driver not found on classpath.", e);
         } catch (SQLException e) {
             throw new RuntimeException("[DatabaseConfig] Failed to initialize connection pool.", e);
         }
     }
-    public static synchronized Connection getConnection() throws SQLException {
-        Connection conn = pool.poll();
-        if (conn == null || conn.isClosed()) {
-            conn = createConnection();
+    /**
+     * Create the connection quota for a bulkhead, sized by db.quota.<name>. On reload the
+     * quota grows or shrinks in place; borrowers already holding permits keep them.
+     */
+    public static void registerQuota(String name, int defaultSize) {
+        AppConfig.Setting<Integer> setting = AppConfig.intSetting("db.quota." + name, defaultSize, 1, 1000, true);
+        QuotaSemaphore quota = new QuotaSemaphore(setting.get());
+        quotas.put(name, quota);
+        quotaSizes.put(name, setting.get());
+        setting.onChange(size -> {
+            Integer previous = quotaSizes.put(name, size);
+            quota.resize(size - (previous == null ? 0 : previous));
+        });
+        Metrics.gauge("acadify_db_quota_available", Metrics.labels("bulkhead", name), quota::availablePermits);
+    }
+    private static synchronized int idleCount() {
+        return pool.size();
+    }
+    /**
+     * Number of executions after which the driver switches a statement to a named server-side prepare
+     */
+    public static int getPrepareThreshold() {
+        return PREPARE_THRESHOLD.get();
+    }
+    /**
+     * Run a task once on every idle pooled connection, taking them from the bottom of
+     * the stack and returning each to the top so live borrowers are never starved.
+     * Returns the number of connections the task completed on.
+     */
+    public static int forEachPooledConnection(ConnectionTask task) {
+        int count = idleCount();
+        int completed = 0;
+        for (int i = 0; i < count; i++) {
+            Connection conn;
+            synchronized (DatabaseConfig.class) {
+                conn = pool.pollLast();
+            }
+            if (conn == null) break;
+            try {
+                task.run(conn);
+                completed++;
+            } catch (SQLException e) {
+                Log.warn("DatabaseConfig", "Pooled connection task failed", "error", e.getMessage());
+            } finally {
+                releaseConnection(conn);
+            }
+        }
+        return completed;
+    }
+    public static int getQuotaSize(String name) {
+        return quotaSizes.getOrDefault(name, 0);
+    }
+    public static int getQuotaAvailable(String name) {
+        Semaphore quota = quotas.get(name);
+        return quota == null ? 0 : quota.availablePermits();
+    }
+    /**
+     * The breaker guarding the database: fed by every statement execution and connection
+     * attempt, and consulted before each borrow
+     */
+    public static CircuitBreaker breaker() {
+        return BREAKER;
+    }
+    public static Connection getConnection() throws SQLException {
+        if (!BREAKER.tryAcquirePermission()) {
+            throw new SQLException("[DatabaseConfig] Database unavailable, circuit open", "08000");
+        }
+        JfrEvents.ConnectionBorrow event = new JfrEvents.ConnectionBorrow();
+        event.begin();
+        long start = System.nanoTime();
+        Bulkhead bulkhead = Bulkhead.current();
+        Semaphore quota = bulkhead == null ? null : quotas.get(bulkhead.getName());
+        if (quota != null) {
+            try {
+                if (!quota.tryAcquire(QUOTA_WAIT_MS.get(), TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("[DatabaseConfig] Connection quota exhausted for " + bulkhead.getName());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("[DatabaseConfig] Interrupted while waiting for a connection");
+            }
+        }
+        try {
+            Connection conn = borrow();
+            synchronized (DatabaseConfig.class) {
+                if (quota != null) borrowedQuotas.put(conn, quota);
+                borrowedAt.put(conn, System.nanoTime());
+            }
+            String group = bulkhead == null ? "none" : bulkhead.getName();
+            long waited = System.nanoTime() - start;
+            poolWait.computeIfAbsent(group, g -> Metrics.histogram("acadify_db_pool_wait_seconds", Metrics.labels("bulkhead", g)))
+                    .record(waited);
+            RequestContext.record(RequestContext.Phase.POOL, waited);
+            if (event.shouldCommit()) {
+                event.bulkhead = group;
+                event.route = JfrEvents.route();
+                event.commit();
+            }
+            return conn;
+        } catch (SQLException | RuntimeException e) {
+            if (quota != null) quota.release();
+            throw e;
+        }
+    }
+    private static Connection borrow() throws SQLException {
+        synchronized (DatabaseConfig.class) {
+            if (closed) {
+                throw new SQLException("[DatabaseConfig] Connection pool is closed");
+            }
+            Connection conn = pool.poll();
+            if (conn != null && !conn.isClosed()) return conn;
         }
-        return conn;
+        // Connect outside the lock, so an unreachable database stalls only this borrower
+        return createConnection();
     }
-    public static synchronized void releaseConnection(Connection conn) {
+    public static void releaseConnection(Connection conn) {
         if (conn == null) return;
+        Semaphore quota;
+        Long borrowedNanos;
+        synchronized (DatabaseConfig.class) {
+            quota = borrowedQuotas.remove(conn);
+            borrowedNanos = borrowedAt.remove(conn);
+            try {
+                if (closed || pool.size() >= POOL_SIZE.get()) {
+                    conn.close();
+                } else if (!conn.isClosed()) {
+                    conn.setAutoCommit(true);
+                    pool.push(conn);
+                }
+            } catch (SQLException e) {
+                Log.warn("DatabaseConfig", "Failed to release connection cleanly", "error", e.getMessage());
+            }
+        }
+        if (quota != null) quota.release();
+        JfrEvents.ConnectionReturn event = new JfrEvents.ConnectionReturn();
+        if (borrowedNanos != null && event.shouldCommit()) {
+            event.heldNanos = System.nanoTime() - borrowedNanos;
+            event.route = JfrEvents.route();
+            event.commit();
+        }
+    }
+    /**
+     * Apply a new db.pool.size: open connections up to the new size, or close idle ones
+     * above it. Borrowed connections are never touched; surplus ones are closed on release.
+     */
+    private static void resizePool(int size) {
+        int opened = 0;
+        int closedNow = 0;
         try {
-            if (!conn.isClosed()) {
-                conn.setAutoCommit(true);
-                pool.push(conn);
+            while (true) {
+                synchronized (DatabaseConfig.class) {
+                    if (closed || jdbcUrl == null || pool.size() + borrowedAt.size() >= size) break;
+                }
+                Connection conn = createConnection();
+                synchronized (DatabaseConfig.class) {
+                    pool.push(conn);
+                }
+                opened++;
             }
         } catch (SQLException e) {
-            System.err.println("[DatabaseConfig] Failed to release connection cleanly.");
+            Log.warn("DatabaseConfig", "Failed to open connection while growing pool", "error", e.getMessage());
+        }
+        synchronized (DatabaseConfig.class) {
+            while (pool.size() > size) {
+                try {
+                    pool.pollLast().close();
+                    closedNow++;
+                } catch (SQLException e) {
+                    Log.warn("DatabaseConfig", "Failed to close connection", "error", e.getMessage());
+                }
+            }
         }
+        Log.info("DatabaseConfig", "Connection pool resized", "size", size, "opened", opened, "closed", closedNow);
+    }
+    /**
+     * Close every idle connection and refuse further borrows; connections still out are
+     * closed as they are released. Returns the number of connections closed now.
+     */
+    public static synchronized int shutdown() {
+        closed = true;
+        int count = 0;
+        Connection conn;
+        while ((conn = pool.poll()) != null) {
+            try {
+                conn.close();
+                count++;
+            } catch (SQLException e) {
+                Log.warn("DatabaseConfig", "Failed to close connection", "error", e.getMessage());
+            }
+        }
+        Log.info("DatabaseConfig", "Connection pool closed", "closed", count, "still_borrowed", borrowedAt.size());
+        return count;
     }
     private static Connection createConnection() throws SQLException {
-        Connection conn = DriverManager.getConnection(jdbcUrl, username, password);
+        Properties props = new Properties();
+        props.setProperty("user", username);
+        props.setProperty("password", password);
+        props.setProperty("prepareThreshold", String.valueOf(PREPARE_THRESHOLD.get()));
+        props.setProperty("connectTimeout", String.valueOf(CONNECT_TIMEOUT_SECONDS.get()));
+        props.setProperty("loginTimeout", String.valueOf(CONNECT_TIMEOUT_SECONDS.get()));
+        props.setProperty("socketTimeout", String.valueOf(SOCKET_TIMEOUT_SECONDS.get()));
+        long start = System.nanoTime();
+        Connection conn;
+        try {
+            conn = DriverManager.getConnection(jdbcUrl, props);
+        } catch (SQLException e) {
+            BREAKER.recordFailure();
+            throw e;
+        }
+        BREAKER.recordSuccess(System.nanoTime() - start);
         conn.setAutoCommit(true);
-        return conn;
+        return InstrumentedConnection.wrap(conn);
     }
     private static String requireEnv(String key) {
         String value = System.getenv(key);
@@ -0,0 +1,173 @@
+package com.acadify;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory Bloom filter over users.email, loaded at startup and maintained on insert.
+ * Lets registration paths reject duplicate emails before paying for a PBKDF2 hash:
+ * a negative answer is definitive, a positive one is confirmed with an indexed lookup.
+ */
+public class EmailIndex {
+    private static final int HASH_COUNT = 7;
+    private static final int MIN_BITS = 1 << 20;
+    private static final int BITS_PER_ENTRY = 16;
+    // Name Postgres gives the UNIQUE constraint on users.email in schema.sql
+    private static final String EMAIL_CONSTRAINT = "users_email_key";
+    private static volatile AtomicLongArray bits;
+    private static volatile int bitMask;
+    private static final LongAdder definitelyNew = new LongAdder();
+    private static final LongAdder confirmedDuplicates = new LongAdder();
+    private static final LongAdder falsePositives = new LongAdder();
+    static {
+        Metrics.counter("acadify_email_index_checks_total", Metrics.labels("result", "definitely_new"), definitelyNew::sum);
+        Metrics.counter("acadify_email_index_checks_total", Metrics.labels("result", "duplicate"), confirmedDuplicates::sum);
+        Metrics.counter("acadify_email_index_checks_total", Metrics.labels("result", "false_positive"), falsePositives::sum);
+    }
+
+    /**
+     * Build the filter from every email currently in the users table
+     */
+    public static void load() {
+        Connection conn = null;
+        try {
+            conn = DatabaseConfig.getConnection();
+            PreparedStatement count = conn.prepareStatement("SELECT COUNT(*) FROM users");
+            ResultSet countRs = count.executeQuery();
+            long total = countRs.next() ? countRs.getLong(1) : 0;
+            countRs.close();
+            count.close();
+
+            int size = MIN_BITS;
+            while (size < total * BITS_PER_ENTRY && size < (1 << 30)) size <<= 1;
+            AtomicLongArray loaded = new AtomicLongArray(size / 64);
+            int mask = size - 1;
+
+            PreparedStatement ps = conn.prepareStatement("SELECT email FROM users");
+            ps.setFetchSize(5000);
+            ResultSet rs = ps.executeQuery();
+            int loadedCount = 0;
+            while (rs.next()) {
+                set(loaded, mask, rs.getString("email"));
+                loadedCount++;
+            }
+            rs.close();
+            ps.close();
+
+            bitMask = mask;
+            bits = loaded;
+            Log.info("EmailIndex", "Email filter loaded", "emails", loadedCount, "bits", size);
+        } catch (SQLException e) {
+            Log.error("EmailIndex", "Load failed, duplicate checks will always query", "error", e.getMessage());
+        } finally {
+            DatabaseConfig.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * Record a newly inserted email
+     */
+    public static void add(String email) {
+        AtomicLongArray current = bits;
+        if (current != null && email != null) {
+            set(current, bitMask, email);
+        }
+    }
+
+    /**
+     * Record an email found registered by an insert failing on the users.email unique
+     * constraint. Emails registered through another instance or outside the application
+     * are missing from this filter until restart, so without this every retry for such
+     * an email would pay for a hash before hitting the same conflict.
+     */
+    public static void addIfEmailConflict(String email, SQLException e) {
+        if (e.getMessage() != null && e.getMessage().contains(EMAIL_CONSTRAINT)) {
+            add(email);
+        }
+    }
+
+    /**
+     * Check whether an email is already registered, querying only when the filter cannot rule it out
+     */
+    public static boolean isRegistered(String email) throws SQLException {
+        if (email == null) return false;
+        AtomicLongArray current = bits;
+        if (current != null && !mightContain(current, bitMask, email)) {
+            definitelyNew.increment();
+            return false;
+        }
+        Connection conn = null;
+        try {
+            conn = DatabaseConfig.getConnection();
+            PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM users WHERE email = ?");
+            ps.setString(1, email);
+            ResultSet rs = ps.executeQuery();
+            boolean exists = rs.next();
+            rs.close();
+            ps.close();
+            if (exists) {
+                confirmedDuplicates.increment();
+            } else {
+                falsePositives.increment();
+            }
+            return exists;
+        } finally {
+            DatabaseConfig.releaseConnection(conn);
+        }
+    }
+
+    public static long getDefinitelyNewCount() {
+        return definitelyNew.sum();
+    }
+
+    public static long getConfirmedDuplicateCount() {
+        return confirmedDuplicates.sum();
+    }
+
+    public static long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    private static void set(AtomicLongArray array, int mask, String email) {
+        long hash = hash64(email);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mask;
+            int word = bit >>> 6;
+            long flag = 1L << (bit & 63);
+            long prev;
+            do {
+                prev = array.get(word);
+                if ((prev & flag) != 0) break;
+            } while (!array.compareAndSet(word, prev, prev | flag));
+        }
+    }
+
+    private static boolean mightContain(AtomicLongArray array, int mask, String email) {
+        long hash = hash64(email);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((array.get(bit >>> 6) & (1L << (bit & 63))) == 0) return false;
+        }
+        return true;
+    }
+
+    private static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -3,41 +3,47 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+/**
+ * Maps a session's user id to its student or teacher profile id. A profile's id never
+ * changes once created, so found ids are kept in memory and later requests, including
+ * reads answered from FallbackCache while the database is down, resolve without a query.
+ */
 public class EntityResolver {
+    public static final int NOT_FOUND = -1;
+    public static final int UNAVAILABLE = -2;
+    private static final Map<Integer, Integer> STUDENT_IDS = new ConcurrentHashMap<>();
+    private static final Map<Integer, Integer> TEACHER_IDS = new ConcurrentHashMap<>();
+    /**
+     * Returns the student id, NOT_FOUND, or UNAVAILABLE if the database could not be asked
+     */
     public static int resolveStudentId(int userId) {
-        Connection conn = null;
-        try {
-            conn = DatabaseConfig.getConnection();
-            PreparedStatement ps = conn.prepareStatement(
-                    "SELECT student_id FROM students WHERE user_id = ?");
-            ps.setInt(1, userId);
-            ResultSet rs = ps.executeQuery();
-            int result = rs.next() ? rs.getInt("student_id") : -1;
-            rs.close();
-            ps.close();
-            return result;
-        } catch (SQLException e) {
-            System.err.println("[EntityResolver] resolveStudentId error: " + e.getMessage());
-            return -1;
-        } finally {
-            DatabaseConfig.releaseConnection(conn);
-        }
+        return resolve(STUDENT_IDS, userId, "SELECT student_id FROM students WHERE user_id = ?", "resolveStudentId");
     }
+    /**
+     * Returns the teacher id, NOT_FOUND, or UNAVAILABLE if the database could not be asked
+     */
     public static int resolveTeacherId(int userId) {
+        return resolve(TEACHER_IDS, userId, "SELECT teacher_id FROM teachers WHERE user_id = ?", "resolveTeacherId");
+    }
+    private static int resolve(Map<Integer, Integer> cache, int userId, String sql, String operation) {
+        Integer cached = cache.get(userId);
+        if (cached != null) return cached;
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
-            PreparedStatement ps = conn.prepareStatement(
-                    "SELECT teacher_id FROM teachers WHERE user_id = ?");
+            PreparedStatement ps = conn.prepareStatement(sql);
             ps.setInt(1, userId);
             ResultSet rs = ps.executeQuery();
-            int result = rs.next() ? rs.getInt("teacher_id") : -1;
+            int result = rs.next() ? rs.getInt(1) : NOT_FOUND;
             rs.close();
             ps.close();
+            if (result != NOT_FOUND) cache.put(userId, result);
             return result;
         } catch (SQLException e) {
-            System.err.println("[EntityResolver] resolveTeacherId error: " + e.getMessage());
-            return -1;
+            Log.error("EntityResolver", operation + " error", "error", e.getMessage());
+            return UNAVAILABLE;
         } finally {
             DatabaseConfig.releaseConnection(conn);
         }
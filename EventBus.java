@@ -0,0 +1,340 @@
+package com.acadify;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process event bus behind the Server-Sent Events streams at /student/events and
+ * /teacher/events. A stream subscribes to one topic, a student's or a teacher's, and
+ * write paths publish to a topic after their statement has committed. An open stream
+ * holds no thread and runs no query: the request thread returns once the headers are
+ * sent, and events are written by a small pool (events.writer.threads) from a bounded
+ * per-subscriber buffer (events.buffer.events). A subscriber whose buffer fills, or
+ * whose write stays blocked past events.write.timeout.ms, is dropped; interrupting the
+ * blocked writer closes the socket, so a stalled client cannot hold a writer thread.
+ * Open streams are capped in total (events.max.subscribers) and per topic
+ * (events.max.per.topic), so one user opening stream after stream cannot take the
+ * whole allowance; a stream over the topic's cap is refused with 429. A comment line
+ * is sent to streams idle for events.heartbeat.seconds, which keeps proxies from
+ * timing them out and finds clients that went away. Each event's id is the
+ * ChangeFeed cursor just after the change, and the first event on a stream, ready,
+ * carries the current cursor: events missed while disconnected are fetched from
+ * /changes?since= with the last id seen. Streams are not compressed, since events are
+ * small and a stream would pin a Deflater for as long as it stays open.
+ */
+public class EventBus {
+
+    public static final String STUDENT_PATH = "/student/events";
+    public static final String TEACHER_PATH = "/teacher/events";
+
+    private static final AppConfig.Setting<Integer> MAX_SUBSCRIBERS =
+            AppConfig.intSetting("events.max.subscribers", 10_000, 0, 1_000_000, true);
+    private static final AppConfig.Setting<Integer> MAX_PER_TOPIC =
+            AppConfig.intSetting("events.max.per.topic", 8, 1, 10_000, true);
+    private static final AppConfig.Setting<Integer> BUFFER_EVENTS =
+            AppConfig.intSetting("events.buffer.events", 32, 1, 10_000, true);
+    private static final AppConfig.Setting<Integer> HEARTBEAT_SECONDS =
+            AppConfig.intSetting("events.heartbeat.seconds", 15, 1, 3600, true);
+    private static final AppConfig.Setting<Integer> WRITE_TIMEOUT_MS =
+            AppConfig.intSetting("events.write.timeout.ms", 10_000, 100, 600_000, true);
+    private static final AppConfig.Setting<Integer> RETRY_MS =
+            AppConfig.intSetting("events.retry.ms", 5_000, 0, 600_000, true);
+    private static final AppConfig.Setting<Integer> WRITER_THREADS =
+            AppConfig.intSetting("events.writer.threads", 4, 1, 256, false);
+
+    private static final long SWEEP_INTERVAL_MS = 1000;
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final ConcurrentHashMap<String, Set<Subscriber>> TOPICS = new ConcurrentHashMap<>();
+    // Streams held or being opened per topic, reserved before the headers are sent
+    private static final ConcurrentHashMap<String, Integer> STREAMS_PER_TOPIC = new ConcurrentHashMap<>();
+    private static final AtomicInteger subscribers = new AtomicInteger();
+    private static final LongAdder published = new LongAdder();
+    private static final LongAdder delivered = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+    private static final LongAdder rejectedPerTopic = new LongAdder();
+    private static final LongAdder bufferFull = new LongAdder();
+    private static final LongAdder writeTimeout = new LongAdder();
+    private static final LongAdder disconnected = new LongAdder();
+    private static final LongAdder shutdown = new LongAdder();
+
+    private static final ExecutorService WRITERS = Executors.newFixedThreadPool(WRITER_THREADS.get(), r -> {
+        Thread t = new Thread(r, "acadify-events-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        Metrics.gauge("acadify_events_subscribers", "", subscribers::get);
+        Metrics.counter("acadify_events_published_total", "", published::sum);
+        Metrics.counter("acadify_events_delivered_total", "", delivered::sum);
+        Metrics.counter("acadify_events_rejected_total", Metrics.labels("reason", "max_subscribers"), rejected::sum);
+        Metrics.counter("acadify_events_rejected_total", Metrics.labels("reason", "max_per_topic"), rejectedPerTopic::sum);
+        Metrics.counter("acadify_events_dropped_total", Metrics.labels("reason", "buffer_full"), bufferFull::sum);
+        Metrics.counter("acadify_events_dropped_total", Metrics.labels("reason", "write_timeout"), writeTimeout::sum);
+        Metrics.counter("acadify_events_dropped_total", Metrics.labels("reason", "disconnected"), disconnected::sum);
+        Metrics.counter("acadify_events_dropped_total", Metrics.labels("reason", "shutdown"), shutdown::sum);
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "acadify-events-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(EventBus::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static String student(int studentId) {
+        return "student:" + studentId;
+    }
+
+    public static String teacher(int teacherId) {
+        return "teacher:" + teacherId;
+    }
+
+    /**
+     * Answer GET on an events path by opening a stream subscribed to the topic. Returns
+     * as soon as the stream is open; the exchange stays open until the subscriber is dropped.
+     */
+    public static void subscribe(HttpExchange exchange, String topic) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            ResponseUtil.sendMethodNotAllowed(exchange);
+            return;
+        }
+        if (exchange instanceof LocalExchange) {
+            ResponseUtil.sendBadRequest(exchange, "Event streams cannot be requested in a batch");
+            return;
+        }
+        if (subscribers.incrementAndGet() > MAX_SUBSCRIBERS.get()) {
+            subscribers.decrementAndGet();
+            rejected.increment();
+            ResponseUtil.sendServiceUnavailable(exchange, "Too many open event streams, please retry",
+                    Math.max(1, RETRY_MS.get() / 1000));
+            return;
+        }
+        if (!reserve(topic)) {
+            subscribers.decrementAndGet();
+            rejectedPerTopic.increment();
+            ResponseUtil.sendTooManyRequests(exchange, "Too many open event streams for this account",
+                    Math.max(1, RETRY_MS.get() / 1000));
+            return;
+        }
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "text/event-stream; charset=utf-8");
+        headers.set("Cache-Control", "no-cache, no-store");
+        headers.set("X-Accel-Buffering", "no");
+        Subscriber subscriber;
+        try {
+            exchange.sendResponseHeaders(200, 0);
+            subscriber = new Subscriber(topic, exchange, exchange.getResponseBody());
+        } catch (IOException e) {
+            release(topic);
+            subscribers.decrementAndGet();
+            throw e;
+        }
+        TOPICS.compute(topic, (key, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+        String cursor = ChangeFeed.cursor();
+        String ready = "retry: " + RETRY_MS.get() + "\n"
+                + frame("ready", cursor, JsonBuilder.object().add("cursor", cursor).build());
+        subscriber.offer(ready.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send an event to every stream subscribed to the topic. Never blocks on a client.
+     */
+    public static void publish(String topic, String event, String id, String data) {
+        published.increment();
+        Set<Subscriber> set = TOPICS.get(topic);
+        if (set == null) return;
+        byte[] frame = frame(event, id, data).getBytes(StandardCharsets.UTF_8);
+        for (Subscriber subscriber : set) subscriber.offer(frame);
+    }
+
+    /**
+     * End every open stream, for shutdown: clients reconnect, to another instance if
+     * this one has left the load balancer's rotation
+     */
+    public static void closeAll() {
+        for (Set<Subscriber> set : TOPICS.values()) {
+            for (Subscriber subscriber : set) subscriber.close(shutdown);
+        }
+    }
+
+    private static String frame(String event, String id, String data) {
+        StringBuilder frame = new StringBuilder(data.length() + 64);
+        if (id != null) frame.append("id: ").append(id).append('\n');
+        frame.append("event: ").append(event).append('\n');
+        frame.append("data: ").append(data).append("\n\n");
+        return frame.toString();
+    }
+
+    private static void sweep() {
+        try {
+            long now = System.nanoTime();
+            long timeout = TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT_MS.get());
+            long heartbeat = TimeUnit.SECONDS.toNanos(HEARTBEAT_SECONDS.get());
+            for (Set<Subscriber> set : TOPICS.values()) {
+                for (Subscriber subscriber : set) subscriber.check(now, timeout, heartbeat);
+            }
+        } catch (RuntimeException e) {
+            Log.error("EventBus", "Sweep failed", "error", e.getMessage());
+        }
+    }
+
+    /**
+     * Take one of the topic's stream slots; returns false if it has none left
+     */
+    private static boolean reserve(String topic) {
+        boolean[] reserved = new boolean[1];
+        STREAMS_PER_TOPIC.compute(topic, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= MAX_PER_TOPIC.get()) return count;
+            reserved[0] = true;
+            return current + 1;
+        });
+        return reserved[0];
+    }
+
+    private static void release(String topic) {
+        STREAMS_PER_TOPIC.computeIfPresent(topic, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    private static void unregister(Subscriber subscriber) {
+        TOPICS.computeIfPresent(subscriber.topic, (key, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+        release(subscriber.topic);
+        subscribers.decrementAndGet();
+    }
+
+    /**
+     * One open stream. Frames are queued under the subscriber's monitor and written by
+     * at most one writer thread at a time; once closing, the queue is discarded, further
+     * frames are ignored, and the writer ends the exchange and unsubscribes.
+     */
+    private static final class Subscriber {
+        final String topic;
+        final HttpExchange exchange;
+        final OutputStream out;
+        // Guarded by this
+        private final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean closing;
+        private Thread writer;
+        private long writeStarted;
+        private volatile long lastWrite = System.nanoTime();
+
+        Subscriber(String topic, HttpExchange exchange, OutputStream out) {
+            this.topic = topic;
+            this.exchange = exchange;
+            this.out = out;
+        }
+
+        void offer(byte[] frame) {
+            boolean overflow;
+            synchronized (this) {
+                if (closing) return;
+                overflow = pending.size() >= BUFFER_EVENTS.get();
+                if (!overflow) {
+                    pending.add(frame);
+                    if (scheduled) return;
+                    scheduled = true;
+                }
+            }
+            if (overflow) {
+                Log.warn("EventBus", "Dropped slow event stream", "topic", topic, "reason", "buffer_full");
+                close(bufferFull);
+                return;
+            }
+            WRITERS.execute(this::drain);
+        }
+
+        void close(LongAdder reason) {
+            synchronized (this) {
+                if (closing) return;
+                closing = true;
+                pending.clear();
+                reason.increment();
+                if (!scheduled) {
+                    scheduled = true;
+                    WRITERS.execute(this::drain);
+                }
+            }
+        }
+
+        /**
+         * Interrupt a write blocked past the timeout, including the final one of a closing
+         * stream, or queue a heartbeat on an idle stream
+         */
+        void check(long now, long timeout, long heartbeat) {
+            boolean idle;
+            synchronized (this) {
+                idle = writer == null;
+                if (idle ? closing || now - lastWrite <= heartbeat : now - writeStarted <= timeout) return;
+                if (!idle) {
+                    writer.interrupt();
+                    if (closing) return;
+                }
+            }
+            if (idle) {
+                offer(HEARTBEAT);
+                return;
+            }
+            Log.warn("EventBus", "Dropped slow event stream", "topic", topic, "reason", "write_timeout");
+            close(writeTimeout);
+        }
+
+        private void drain() {
+            while (true) {
+                byte[] frame;
+                synchronized (this) {
+                    frame = pending.poll();
+                    if (frame == null && !closing) {
+                        scheduled = false;
+                        return;
+                    }
+                    writer = Thread.currentThread();
+                    writeStarted = System.nanoTime();
+                }
+                try {
+                    if (frame == null) {
+                        // Stays subscribed until here, so the sweep can interrupt a blocked close
+                        try {
+                            exchange.close();
+                        } finally {
+                            unregister(this);
+                        }
+                        return;
+                    }
+                    out.write(frame);
+                    out.flush();
+                    lastWrite = System.nanoTime();
+                    if (frame != HEARTBEAT) delivered.increment();
+                } catch (IOException e) {
+                    close(disconnected);
+                } finally {
+                    synchronized (this) {
+                        writer = null;
+                        // Clear an interrupt from check() that raced with the write completing
+                        Thread.interrupted();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.acadify;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Last-known-good responses for authenticated reads, used while the database circuit
+ * breaker is not closed. Every successful GET other than a /changes poll is captured
+ * and kept per user and route, within a byte budget (fallback.max.bytes, least recently
+ * used first out). While the breaker is open, reads are answered from here with Degraded: true and an Age header
+ * instead of reaching the database, and writes fail fast with 503. A read that fails
+ * with a server error while the breaker is half-open or open is answered the same way.
+ */
+public class FallbackCache {
+
+    public static final String DEGRADED_HEADER = "Degraded";
+
+    private static final AppConfig.Setting<Long> MAX_BYTES =
+            AppConfig.longSetting("fallback.max.bytes", 64L * 1024 * 1024, 0, 16L * 1024 * 1024 * 1024, true);
+    private static final AppConfig.Setting<Integer> MAX_BODY_BYTES =
+            AppConfig.intSetting("fallback.max.body.bytes", 1024 * 1024, 0, 256 * 1024 * 1024, true);
+    private static final AppConfig.Setting<Integer> MAX_AGE_SECONDS =
+            AppConfig.intSetting("fallback.max.age.seconds", 3600, 1, 7 * 86_400, true);
+
+    // Access-ordered, guarded by its own monitor
+    private static final LinkedHashMap<String, Entry> ENTRIES = new LinkedHashMap<>(256, 0.75f, true);
+    private static long totalBytes;
+    private static final LongAdder served = new LongAdder();
+    private static final LongAdder missing = new LongAdder();
+    private static final LongAdder writesRejected = new LongAdder();
+
+    static {
+        Metrics.counter("acadify_fallback_requests_total", Metrics.labels("result", "served"), served::sum);
+        Metrics.counter("acadify_fallback_requests_total", Metrics.labels("result", "missing"), missing::sum);
+        Metrics.counter("acadify_fallback_requests_total", Metrics.labels("result", "write_rejected"), writesRejected::sum);
+        Metrics.gauge("acadify_fallback_bytes", "", () -> {
+            synchronized (ENTRIES) {
+                return totalBytes;
+            }
+        });
+    }
+
+    private static final class Entry {
+        final CapturedResponse response;
+        final long storedAt;
+
+        Entry(CapturedResponse response, long storedAt) {
+            this.response = response;
+            this.storedAt = storedAt;
+        }
+    }
+
+    /**
+     * Run the handler for a user's request, keeping successful reads and falling back to
+     * them when the database is unavailable
+     */
+    public static void handle(HttpExchange exchange, int userId, HttpHandler handler) throws IOException {
+        CircuitBreaker breaker = DatabaseConfig.breaker();
+        boolean read = exchange.getRequestMethod().equals("GET");
+        if (!read) {
+            if (breaker.isOpen()) {
+                writesRejected.increment();
+                ResponseUtil.sendServiceUnavailable(exchange, "Database temporarily unavailable, please retry",
+                        breaker.getRetryAfterSeconds());
+                return;
+            }
+            handler.handle(exchange);
+            return;
+        }
+
+        if (ChangeFeed.isFeedPath(exchange.getRequestURI().getPath())) {
+            // Every poll carries a new cursor, so a kept response would never be asked for again
+            handler.handle(exchange);
+            return;
+        }
+        String key = userId + ":" + SingleFlight.key(exchange);
+        if (breaker.isOpen()) {
+            serveFallback(exchange, key, null);
+            return;
+        }
+        LocalExchange local = new LocalExchange(exchange, "GET", SingleFlight.pathAndQuery(exchange), null);
+        handler.handle(local);
+        CapturedResponse response = new CapturedResponse(local);
+        if (response.getStatus() == 200) {
+            store(key, response);
+        } else if (response.getStatus() >= 500 && breaker.getState() != CircuitBreaker.State.CLOSED) {
+            serveFallback(exchange, key, response);
+            return;
+        }
+        response.writeTo(exchange, false);
+    }
+
+    /**
+     * Answer from the last good response, or with the failed response if given, or
+     * with 503 when there is nothing to fall back to
+     */
+    private static void serveFallback(HttpExchange exchange, String key, CapturedResponse failed) throws IOException {
+        Entry entry;
+        synchronized (ENTRIES) {
+            entry = ENTRIES.get(key);
+        }
+        long age = entry == null ? 0 : System.nanoTime() - entry.storedAt;
+        if (entry == null || age > TimeUnit.SECONDS.toNanos(MAX_AGE_SECONDS.get())) {
+            missing.increment();
+            if (failed != null) {
+                failed.writeTo(exchange, false);
+            } else {
+                ResponseUtil.sendServiceUnavailable(exchange, "Database temporarily unavailable, please retry",
+                        DatabaseConfig.breaker().getRetryAfterSeconds());
+            }
+            return;
+        }
+        served.increment();
+        exchange.getResponseHeaders().set(DEGRADED_HEADER, "true");
+        exchange.getResponseHeaders().set("Age", String.valueOf(TimeUnit.NANOSECONDS.toSeconds(age)));
+        entry.response.writeTo(exchange, true);
+    }
+
+    private static void store(String key, CapturedResponse response) {
+        int size = response.getBodyLength() + key.length();
+        if (response.getBodyLength() > MAX_BODY_BYTES.get()) return;
+        long budget = MAX_BYTES.get();
+        synchronized (ENTRIES) {
+            Entry previous = ENTRIES.put(key, new Entry(response, System.nanoTime()));
+            if (previous != null) totalBytes -= previous.response.getBodyLength() + key.length();
+            totalBytes += size;
+            Iterator<Map.Entry<String, Entry>> eldest = ENTRIES.entrySet().iterator();
+            while (totalBytes > budget && eldest.hasNext()) {
+                Map.Entry<String, Entry> evicted = eldest.next();
+                totalBytes -= evicted.getValue().response.getBodyLength() + evicted.getKey().length();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Build a JSON snapshot of the store and its counters
+     */
+    public static String toJson() {
+        int entries;
+        long bytes;
+        synchronized (ENTRIES) {
+            entries = ENTRIES.size();
+            bytes = totalBytes;
+        }
+        return JsonBuilder.object()
+                .add("entries", entries)
+                .add("bytes", bytes)
+                .add("max_bytes", MAX_BYTES.get())
+                .add("served", served.sum())
+                .add("missing", missing.sum())
+                .add("writes_rejected", writesRejected.sum())
+                .build();
+    }
+}
@@ -0,0 +1,56 @@
+package com.acadify;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+
+/**
+ * Load balancer probes, served outside the limiters and bulkheads and without touching
+ * the database. /health/live only says the process is serving HTTP; /health/ready says
+ * it should receive traffic, which is withheld until the startup warm-up has finished
+ * and withdrawn again as soon as shutdown begins.
+ */
+public class HealthController {
+    private static volatile boolean ready;
+    private static volatile boolean draining;
+
+    static {
+        Metrics.gauge("acadify_ready", "", () -> ready ? 1 : 0);
+    }
+
+    public static void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (!exchange.getRequestMethod().equals("GET")) {
+            ResponseUtil.sendMethodNotAllowed(exchange);
+            return;
+        }
+        switch (path) {
+            case "/health/live":
+                ResponseUtil.sendSuccess(exchange, "Live", JsonBuilder.object().add("status", "LIVE").build());
+                break;
+            case "/health/ready":
+                if (ready) {
+                    ResponseUtil.sendSuccess(exchange, "Ready", JsonBuilder.object().add("status", "READY").build());
+                } else {
+                    ResponseUtil.sendServiceUnavailable(exchange, draining ? "Shutting down" : "Warming up", 5);
+                }
+                break;
+            default:
+                ResponseUtil.sendNotFound(exchange, "Endpoint not found");
+        }
+    }
+
+    public static void markReady() {
+        if (draining) return;
+        ready = true;
+        Log.info("HealthController", "Ready for traffic");
+    }
+
+    public static void markDraining() {
+        draining = true;
+        ready = false;
+        Log.info("HealthController", "Draining, no longer ready");
+    }
+
+    public static boolean isReady() {
+        return ready;
+    }
+}
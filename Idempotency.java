@@ -0,0 +1,217 @@
+package com.acadify;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Idempotency-Key support for authenticated writes. The first request with a given key
+ * runs the handler against a LocalExchange and its response is kept in memory; a retry
+ * with the same key replays that response without touching the database, and a retry
+ * that arrives while the first is still running waits for its result instead of
+ * executing again. Keys are scoped to the session's user, and reusing a key for a
+ * different request is rejected. Server errors are not kept, so the client's next retry
+ * executes again. The store is bounded by idempotency.max.keys and entries expire
+ * idempotency.ttl.seconds after they complete. A /batch request's key covers its write
+ * sub-requests: each is run under a key derived from the batch's key and its position,
+ * so a retried batch replays the writes it already made and runs only the rest.
+ */
+public class Idempotency {
+
+    public static final String HEADER = "Idempotency-Key";
+    static final int MAX_KEY_LENGTH = 255;
+
+    private static final AppConfig.Setting<Integer> TTL_SECONDS =
+            AppConfig.intSetting("idempotency.ttl.seconds", 3600, 1, 7 * 86_400, true);
+    private static final AppConfig.Setting<Integer> MAX_KEYS =
+            AppConfig.intSetting("idempotency.max.keys", 50_000, 1, 10_000_000, true);
+    private static final AppConfig.Setting<Integer> WAIT_MS =
+            AppConfig.intSetting("idempotency.wait.ms", 10_000, 0, 300_000, true);
+
+    private static final ConcurrentHashMap<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static final AtomicBoolean evicting = new AtomicBoolean();
+    private static final LongAdder executed = new LongAdder();
+    private static final LongAdder replayed = new LongAdder();
+    private static final LongAdder inProgress = new LongAdder();
+    private static final LongAdder mismatched = new LongAdder();
+    private static final LongAdder bypassed = new LongAdder();
+
+    static {
+        Metrics.counter("acadify_idempotency_requests_total", Metrics.labels("result", "executed"), executed::sum);
+        Metrics.counter("acadify_idempotency_requests_total", Metrics.labels("result", "replayed"), replayed::sum);
+        Metrics.counter("acadify_idempotency_requests_total", Metrics.labels("result", "in_progress"), inProgress::sum);
+        Metrics.counter("acadify_idempotency_requests_total", Metrics.labels("result", "mismatch"), mismatched::sum);
+        Metrics.counter("acadify_idempotency_requests_total", Metrics.labels("result", "bypassed"), bypassed::sum);
+        Metrics.gauge("acadify_idempotency_keys", "", ENTRIES::size);
+    }
+
+    private static final class Entry {
+        final String fingerprint;
+        final CompletableFuture<CapturedResponse> result = new CompletableFuture<>();
+        volatile long completedAt;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        boolean isExpired(long now) {
+            long done = completedAt;
+            return done != 0 && now - done > TimeUnit.SECONDS.toNanos(TTL_SECONDS.get());
+        }
+    }
+
+    /**
+     * Run the handler once per (user, Idempotency-Key). Requests without the header, and
+     * reads, go straight to the handler.
+     */
+    public static void handle(HttpExchange exchange, int userId, HttpHandler handler) throws IOException {
+        String key = exchange.getRequestHeaders().getFirst(HEADER);
+        String method = exchange.getRequestMethod();
+        if (key == null || method.equals("GET") || method.equals("HEAD")) {
+            handler.handle(exchange);
+            return;
+        }
+        if (!isValidKey(key)) {
+            ResponseUtil.sendBadRequest(exchange, HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        byte[] body;
+        try (InputStream is = exchange.getRequestBody()) {
+            body = is.readAllBytes();
+        }
+        String uri = exchange.getRequestURI().getRawPath()
+                + (exchange.getRequestURI().getRawQuery() == null ? "" : "?" + exchange.getRequestURI().getRawQuery());
+        String scopedKey = userId + ":" + key;
+        Entry mine = new Entry(fingerprint(method, uri, body));
+
+        Entry existing = claim(scopedKey, mine);
+        if (existing == null) {
+            execute(exchange, scopedKey, mine, uri, body, handler);
+            return;
+        }
+        if (!existing.fingerprint.equals(mine.fingerprint)) {
+            mismatched.increment();
+            ResponseUtil.sendUnprocessableEntity(exchange, HEADER + " was already used for a different request");
+            return;
+        }
+        CapturedResponse response;
+        try {
+            response = existing.result.get(WAIT_MS.get(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            inProgress.increment();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            ResponseUtil.sendConflict(exchange, "A request with this " + HEADER + " is still in progress");
+            return;
+        } catch (ExecutionException e) {
+            ResponseUtil.sendServerError(exchange, "The original request with this " + HEADER + " failed, please retry");
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ResponseUtil.sendServiceUnavailable(exchange, "Server is shutting down, please retry", 1);
+            return;
+        }
+        replayed.increment();
+        exchange.getResponseHeaders().set("Idempotent-Replayed", "true");
+        response.writeTo(exchange, true);
+    }
+
+    static boolean isValidKey(String key) {
+        return !key.isBlank() && key.length() <= MAX_KEY_LENGTH;
+    }
+
+    /**
+     * Key for the write at the given position of a batch sent with batchKey; within the
+     * length limit whatever the batch key's length, and never equal to a client's own key
+     */
+    static String subRequestKey(String batchKey, int index) {
+        return "batch-" + index + "-" + sha256Hex(batchKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Install the entry and return null, or return the live entry already holding the key.
+     * When the store is full even after dropping expired entries, returns null without
+     * storing, so the request runs without deduplication rather than being refused.
+     */
+    private static Entry claim(String scopedKey, Entry mine) {
+        long now = System.nanoTime();
+        while (true) {
+            Entry existing = ENTRIES.get(scopedKey);
+            if (existing != null) {
+                if (!existing.isExpired(now)) return existing;
+                ENTRIES.remove(scopedKey, existing);
+                continue;
+            }
+            if (ENTRIES.size() >= MAX_KEYS.get()) {
+                evictExpired(now);
+                if (ENTRIES.size() >= MAX_KEYS.get()) {
+                    bypassed.increment();
+                    return null;
+                }
+            }
+            existing = ENTRIES.putIfAbsent(scopedKey, mine);
+            if (existing == null) return null;
+        }
+    }
+
+    private static void execute(HttpExchange exchange, String scopedKey, Entry entry, String uri, byte[] body,
+                                HttpHandler handler) throws IOException {
+        LocalExchange local = new LocalExchange(exchange, exchange.getRequestMethod(), uri, body);
+        CapturedResponse response;
+        try {
+            handler.handle(local);
+            response = new CapturedResponse(local);
+        } catch (IOException | RuntimeException e) {
+            ENTRIES.remove(scopedKey, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+        executed.increment();
+        if (response.getStatus() >= 500 || response.getStatus() == 429) {
+            ENTRIES.remove(scopedKey, entry);
+        } else {
+            entry.completedAt = System.nanoTime();
+        }
+        entry.result.complete(response);
+        response.writeTo(exchange, false);
+    }
+
+    private static void evictExpired(long now) {
+        if (!evicting.compareAndSet(false, true)) return;
+        try {
+            ENTRIES.values().removeIf(entry -> entry.isExpired(now));
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static String fingerprint(String method, String uri, byte[] body) {
+        return sha256Hex(method.getBytes(StandardCharsets.UTF_8), new byte[]{' '},
+                uri.getBytes(StandardCharsets.UTF_8), new byte[]{'\n'}, body);
+    }
+
+    private static String sha256Hex(byte[]... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] part : parts) digest.update(part);
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -114,7 +114,7 @@ public class InputValidator {
         };
         for (String keyword : sqlKeywords) {
             if (input.contains(keyword)) {
-                System.err.println("[SECURITY] Potential SQL injection detected: " + keyword);
+                Log.warn("InputValidator", "Potential SQL injection detected", "keyword", keyword);
                 return true;
             }
         }
@@ -0,0 +1,121 @@
+package com.acadify;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JDBC decorator applied to every pooled connection by DatabaseConfig.
+ * Statements handed out by a wrapped connection are themselves wrapped, and each
+ * execute call is timed into the DB phase of the current request and reported to
+ * SlowQueryLog together with its SQL and bound parameters. New statements get the
+ * query timeout for the calling route, and every execution's outcome and latency feed
+ * the database circuit breaker. Controllers keep using plain java.sql interfaces.
+ */
+public final class InstrumentedConnection {
+
+    private InstrumentedConnection() {
+    }
+
+    /**
+     * Wrap a physical connection
+     */
+    public static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = invokeTarget(target, method, args);
+            if (result instanceof Statement) {
+                Statement statement = (Statement) result;
+                statement.setQueryTimeout(SlowQueryLog.timeoutSecondsForCurrentRoute());
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return wrapStatement(statement, sql);
+            }
+            return result;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String preparedSql;
+        private final Map<Integer, Object> params = new TreeMap<>();
+
+        StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    params.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                } else if (name.equals("clearParameters")) {
+                    params.clear();
+                }
+                return invokeTarget(target, method, args);
+            }
+            JfrEvents.StatementExecution event = new JfrEvents.StatementExecution();
+            event.begin();
+            long start = System.nanoTime();
+            try {
+                Object result = invokeTarget(target, method, args);
+                DatabaseConfig.breaker().recordSuccess(System.nanoTime() - start);
+                return result;
+            } catch (SQLException e) {
+                // Errors the database returned for this statement say nothing about its health
+                if (CircuitBreaker.isUnavailable(e)) {
+                    DatabaseConfig.breaker().recordFailure();
+                } else {
+                    DatabaseConfig.breaker().recordSuccess(System.nanoTime() - start);
+                }
+                throw e;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                RequestContext.record(RequestContext.Phase.DB, elapsed);
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+                SlowQueryLog.record(sql, params, elapsed);
+                if (event.shouldCommit()) {
+                    event.sql = sql;
+                    event.route = JfrEvents.route();
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    private static Statement wrapStatement(Statement statement, String sql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[]{type}, new StatementHandler(statement, sql));
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.acadify;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom Java Flight Recorder events for the database pool, statement execution,
+ * password hashing, sessions and response serialization, plus control over one
+ * bounded on-demand recording. Events cost a disabled-check when no recording is
+ * running, so call sites create them unconditionally.
+ */
+public final class JfrEvents {
+
+    private static final AppConfig.Setting<String> DUMP_DIR =
+            AppConfig.stringSetting("jfr.dump.dir", System.getProperty("java.io.tmpdir"), true);
+    private static final long MAX_RECORDING_BYTES = 256L * 1024 * 1024;
+    private static final Duration MAX_RECORDING_DURATION = Duration.ofMinutes(30);
+    private static Recording recording;
+
+    private JfrEvents() {
+    }
+
+    @Name("com.acadify.ConnectionBorrow")
+    @Label("Connection Borrow")
+    @Category({"Acadify", "Database"})
+    public static final class ConnectionBorrow extends Event {
+        @Label("Bulkhead")
+        public String bulkhead;
+        @Label("Route")
+        public String route;
+    }
+
+    @Name("com.acadify.ConnectionReturn")
+    @Label("Connection Return")
+    @Category({"Acadify", "Database"})
+    public static final class ConnectionReturn extends Event {
+        @Label("Held")
+        @Timespan(Timespan.NANOSECONDS)
+        public long heldNanos;
+        @Label("Route")
+        public String route;
+    }
+
+    @Name("com.acadify.StatementExecution")
+    @Label("Statement Execution")
+    @Category({"Acadify", "Database"})
+    public static final class StatementExecution extends Event {
+        @Label("SQL")
+        public String sql;
+        @Label("Route")
+        public String route;
+    }
+
+    @Name("com.acadify.PasswordHash")
+    @Label("PBKDF2 Hash")
+    @Category({"Acadify", "Security"})
+    public static final class PasswordHash extends Event {
+        @Label("Operation")
+        public String operation;
+        @Label("Iterations")
+        public int iterations;
+        @Label("Route")
+        public String route;
+    }
+
+    @Name("com.acadify.SessionCreated")
+    @Label("Session Created")
+    @Category({"Acadify", "Session"})
+    public static final class SessionCreated extends Event {
+        @Label("User Id")
+        public String userId;
+        @Label("Role")
+        public String role;
+        @Label("Route")
+        public String route;
+    }
+
+    @Name("com.acadify.SessionExpired")
+    @Label("Session Expired")
+    @Category({"Acadify", "Session"})
+    public static final class SessionExpired extends Event {
+        @Label("User Id")
+        public String userId;
+        @Label("Reason")
+        public String reason;
+        @Label("Route")
+        public String route;
+    }
+
+    @Name("com.acadify.ResponseSerialization")
+    @Label("Response Serialization")
+    @Category({"Acadify", "HTTP"})
+    public static final class ResponseSerialization extends Event {
+        @Label("Status")
+        public int status;
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+        @Label("Route")
+        public String route;
+    }
+
+    /**
+     * Route label for events raised on the calling thread
+     */
+    public static String route() {
+        RequestContext context = RequestContext.current();
+        return context == null ? null : context.getMethod() + " " + context.getPath();
+    }
+
+    /**
+     * Start a recording bounded by time and size, using the JDK "profile" settings plus all
+     * Acadify events. Returns false if one is already running.
+     */
+    public static synchronized boolean startRecording(Duration duration) throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            return false;
+        }
+        closeRecording();
+        Duration bounded = duration.compareTo(MAX_RECORDING_DURATION) > 0 ? MAX_RECORDING_DURATION : duration;
+        Recording started = new Recording(Configuration.getConfiguration("profile"));
+        started.setName("acadify-on-demand");
+        started.setToDisk(true);
+        started.setMaxSize(MAX_RECORDING_BYTES);
+        started.setDuration(bounded);
+        for (Class<? extends Event> type : eventTypes()) {
+            started.enable(type);
+        }
+        started.start();
+        recording = started;
+        Log.info("JfrEvents", "Recording started", "max_seconds", bounded.getSeconds());
+        return true;
+    }
+
+    /**
+     * Stop the current recording (if still running) and dump it to jfr.dump.dir.
+     * Returns the dump path, or null if no recording was started.
+     */
+    public static synchronized Path stopRecording() throws IOException {
+        if (recording == null) {
+            return null;
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        Path dir = Paths.get(DUMP_DIR.get());
+        Files.createDirectories(dir);
+        Path file = dir.resolve("acadify-" + System.currentTimeMillis() + ".jfr");
+        recording.dump(file);
+        closeRecording();
+        Log.info("JfrEvents", "Recording dumped", "file", file);
+        return file;
+    }
+
+    /**
+     * Whether an on-demand recording is currently running
+     */
+    public static synchronized boolean isRecording() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+
+    private static void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private static List<Class<? extends Event>> eventTypes() {
+        return List.of(ConnectionBorrow.class, ConnectionReturn.class, StatementExecution.class,
+                PasswordHash.class, SessionCreated.class, SessionExpired.class, ResponseSerialization.class);
+    }
+}
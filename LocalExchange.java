@@ -0,0 +1,168 @@
+package com.acadify;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process HttpExchange that runs a controller handler without a socket.
+ * The request is supplied up front and the response is captured in memory,
+ * so the existing handlers can serve sub-requests dispatched by the server itself.
+ */
+public class LocalExchange extends HttpExchange {
+
+    private static final InetSocketAddress LOOPBACK = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    private final HttpExchange parent;
+    private final String method;
+    private final URI uri;
+    private final Headers requestHeaders = new Headers();
+    private final Headers responseHeaders = new Headers();
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private InputStream requestBody;
+    private OutputStream responseBody;
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    private int responseCode = -1;
+
+    /**
+     * Create a local exchange that inherits headers and addresses from the parent exchange.
+     * Accept-Encoding is not inherited: the captured body stays unencoded, so it can be
+     * handed to any client and encoded for that client when written.
+     */
+    public LocalExchange(HttpExchange parent, String method, String pathAndQuery, byte[] body) {
+        this.parent = parent;
+        this.method = method;
+        this.uri = URI.create(pathAndQuery);
+        this.requestHeaders.putAll(parent.getRequestHeaders());
+        this.requestHeaders.remove("Content-Length");
+        this.requestHeaders.remove("Accept-Encoding");
+        this.requestBody = new ByteArrayInputStream(body == null ? new byte[0] : body);
+        this.responseBody = captured;
+    }
+
+    /**
+     * Create a standalone local exchange for requests the server issues to itself,
+     * such as warm-up traffic, with no client connection behind it
+     */
+    public LocalExchange(String method, String pathAndQuery, byte[] body) {
+        this.parent = null;
+        this.method = method;
+        this.uri = URI.create(pathAndQuery);
+        this.requestBody = new ByteArrayInputStream(body == null ? new byte[0] : body);
+        this.responseBody = captured;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return parent == null ? null : parent.getHttpContext();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) {
+        this.responseCode = rCode;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return parent == null ? LOOPBACK : parent.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return parent == null ? LOOPBACK : parent.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return parent == null ? "HTTP/1.1" : parent.getProtocol();
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) this.requestBody = i;
+        if (o != null) this.responseBody = o;
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return parent == null ? null : parent.getPrincipal();
+    }
+
+    /**
+     * Get the captured response body
+     */
+    public byte[] getCapturedBody() {
+        return captured.toByteArray();
+    }
+
+    /**
+     * Get the captured response body as a UTF-8 string
+     */
+    public String getCapturedBodyAsString() {
+        return captured.toString(StandardCharsets.UTF_8);
+    }
+}
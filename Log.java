@@ -0,0 +1,242 @@
+package com.acadify;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous structured logger. Request threads claim a slot in a preallocated ring
+ * with one CAS and return; a single writer thread formats entries as logfmt lines
+ * and writes them to stdout through a buffer, flushing whenever the ring drains.
+ * When the ring is filling up, DEBUG/INFO entries are sampled, and when it is full
+ * every entry is dropped and counted rather than blocking the caller.
+ * <p>
+ * Usage: {@code Log.info("SessionUtil", "Session created", "user_id", userId, "role", role)}
+ */
+public final class Log {
+
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final int CAPACITY = 8192;
+    private static final int MASK = CAPACITY - 1;
+    private static final int HIGH_WATER = CAPACITY * 3 / 4;
+    private static final int SAMPLE_ONE_IN = 16;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final Slot[] RING = new Slot[CAPACITY];
+    private static final AtomicLong claimed = new AtomicLong();
+    private static volatile long consumed = 0;
+    private static volatile long flushedThrough = 0;
+    private static volatile Level minLevel = parseLevel(System.getenv("LOG_LEVEL"));
+
+    private static final LongAdder[] dropped = new LongAdder[Level.values().length];
+    private static final LongAdder sampledOut = new LongAdder();
+
+    private static final class Slot {
+        volatile long published = -1;
+        long timestamp;
+        Level level;
+        String component;
+        String message;
+        String thread;
+        Object[] fields;
+    }
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            RING[i] = new Slot();
+        }
+        for (Level level : Level.values()) {
+            LongAdder counter = new LongAdder();
+            dropped[level.ordinal()] = counter;
+            Metrics.counter("acadify_log_dropped_total", Metrics.labels("level", level.name()), counter::sum);
+        }
+        Metrics.counter("acadify_log_sampled_out_total", "", sampledOut::sum);
+        Metrics.gauge("acadify_log_queue_depth", "", () -> claimed.get() - consumed);
+        Thread writer = new Thread(Log::drain, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private Log() {
+    }
+
+    public static void debug(String component, String message, Object... fields) {
+        enqueue(Level.DEBUG, component, message, fields);
+    }
+
+    public static void info(String component, String message, Object... fields) {
+        enqueue(Level.INFO, component, message, fields);
+    }
+
+    public static void warn(String component, String message, Object... fields) {
+        enqueue(Level.WARN, component, message, fields);
+    }
+
+    public static void error(String component, String message, Object... fields) {
+        enqueue(Level.ERROR, component, message, fields);
+    }
+
+    /**
+     * Whether entries at this level are currently written; lets callers skip building expensive fields
+     */
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= minLevel.ordinal();
+    }
+
+    /**
+     * Change the minimum level at runtime
+     */
+    public static void setLevel(Level level) {
+        minLevel = level;
+    }
+
+    public static Level getLevel() {
+        return minLevel;
+    }
+
+    /**
+     * Wait until everything logged before this call has been written and flushed, or the timeout passes
+     */
+    public static boolean flush(long timeoutMs) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (flushedThrough < target) {
+            if (System.nanoTime() - deadline >= 0) return false;
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return true;
+    }
+
+    private static void enqueue(Level level, String component, String message, Object[] fields) {
+        if (level.ordinal() < minLevel.ordinal()) return;
+        long sequence;
+        do {
+            sequence = claimed.get();
+            long used = sequence - consumed;
+            if (used >= CAPACITY) {
+                dropped[level.ordinal()].increment();
+                return;
+            }
+            if (used >= HIGH_WATER && level.ordinal() <= Level.INFO.ordinal()
+                    && ThreadLocalRandom.current().nextInt(SAMPLE_ONE_IN) != 0) {
+                sampledOut.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = RING[(int) (sequence & MASK)];
+        slot.timestamp = System.currentTimeMillis();
+        slot.level = level;
+        slot.component = component;
+        slot.message = message;
+        slot.thread = Thread.currentThread().getName();
+        slot.fields = fields;
+        slot.published = sequence;
+    }
+
+    private static void drain() {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 64 * 1024);
+        StringBuilder line = new StringBuilder(256);
+        long next = 0;
+        boolean dirty = false;
+        while (true) {
+            Slot slot = RING[(int) (next & MASK)];
+            if (slot.published != next) {
+                if (claimed.get() > next) {
+                    // claimed but not yet published: the producer is mid-write
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (dirty) {
+                    try {
+                        out.flush();
+                    } catch (IOException ignored) {
+                        // stdout is gone; keep draining so producers never stall
+                    }
+                    dirty = false;
+                    flushedThrough = next;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            line.setLength(0);
+            format(slot, line);
+            slot.component = null;
+            slot.message = null;
+            slot.fields = null;
+            consumed = ++next;
+            try {
+                out.write(line.toString());
+            } catch (IOException ignored) {
+                // see above
+            }
+            dirty = true;
+        }
+    }
+
+    private static void format(Slot slot, StringBuilder sb) {
+        sb.append("ts=").append(Instant.ofEpochMilli(slot.timestamp));
+        sb.append(" level=").append(slot.level.name());
+        sb.append(" component=");
+        appendValue(sb, slot.component);
+        sb.append(" msg=");
+        appendValue(sb, slot.message);
+        Object[] fields = slot.fields;
+        if (fields != null) {
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                sb.append(' ').append(fields[i]).append('=');
+                appendValue(sb, fields[i + 1]);
+            }
+        }
+        sb.append(" thread=");
+        appendValue(sb, slot.thread);
+        sb.append('\n');
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        String text = String.valueOf(value);
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c <= ' ' || c == '"' || c == '=';
+        }
+        if (!quote) {
+            sb.append(text);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default: sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static Level parseLevel(String value) {
+        if (value == null || value.isBlank()) return Level.INFO;
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+}
@@ -1,90 +1,326 @@
 package com.acadify;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 public class MainApplication {
-    private static final int PORT = 8080;
+    private static final AppConfig.Setting<Integer> PORT = AppConfig.intSetting("server.port", 8080, 1, 65535, false);
+    private static final AppConfig.Setting<Integer> SERVER_THREADS = AppConfig.intSetting("server.threads", 2, 1, 256, true);
+    private static final AppConfig.Setting<Integer> SHUTDOWN_READY_DELAY_SECONDS =
+            AppConfig.intSetting("shutdown.ready.delay.seconds", 5, 0, 300, true);
+    private static final AppConfig.Setting<Integer> SHUTDOWN_DRAIN_SECONDS =
+            AppConfig.intSetting("shutdown.drain.seconds", 20, 0, 3600, true);
+    private static final AppConfig.Setting<String> LOG_LEVEL = AppConfig.stringSetting("log.level", Log.getLevel().name(), true)
+            .onChange(MainApplication::applyLogLevel);
+    private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+    private static volatile boolean accepting = true;
+    private static final ConcurrencyLimiter AUTH_LIMITER = new ConcurrencyLimiter("auth", 16, 4, 64, 1500, 1);
+    private static final ConcurrencyLimiter STUDENT_LIMITER = new ConcurrencyLimiter("student", 32, 8, 256, 500, 1);
+    private static final ConcurrencyLimiter TEACHER_LIMITER = new ConcurrencyLimiter("teacher", 16, 4, 128, 750, 1);
+    private static final ConcurrencyLimiter ADMIN_LIMITER = new ConcurrencyLimiter("admin", 8, 2, 64, 1000, 2);
+    private static final ConcurrencyLimiter ADMIN_AGGREGATE_LIMITER = new ConcurrencyLimiter("admin-aggregate", 4, 1, 16, 3000, 5);
+    private static final ConcurrencyLimiter BATCH_LIMITER = new ConcurrencyLimiter("batch", 8, 2, 32, 5000, 2);
+    private static final Bulkhead AUTH_BULKHEAD = Bulkhead.fromConfig("auth", 8, 100);
+    private static final Bulkhead STUDENT_BULKHEAD = Bulkhead.fromConfig("student", 16, 500);
+    private static final Bulkhead TEACHER_BULKHEAD = Bulkhead.fromConfig("teacher", 8, 200);
+    private static final Bulkhead ADMIN_BULKHEAD = Bulkhead.fromConfig("admin", 4, 50);
+    private static final Bulkhead BATCH_BULKHEAD = Bulkhead.fromConfig("batch", 4, 100);
     public static void main(String[] args) {
         try {
+            applyLogLevel(LOG_LEVEL.get());
             DatabaseConfig.initialize();
-            HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
-            server.setExecutor(Executors.newFixedThreadPool(16));
-            server.createContext("/auth/", MainApplication::routeAuth);
-            server.createContext("/student/", MainApplication::routeStudent);
-            server.createContext("/teacher/", MainApplication::routeTeacher);
-            server.createContext("/admin/", MainApplication::routeAdmin);
+            DatabaseConfig.registerQuota("auth", 4);
+            DatabaseConfig.registerQuota("student", 8);
+            DatabaseConfig.registerQuota("teacher", 4);
+            DatabaseConfig.registerQuota("admin", 4);
+            EmailIndex.load();
+            SessionUtil.restore();
+            Metrics.registerRoutes(AuthController.ROUTES);
+            Metrics.registerRoutes(StudentController.ROUTES);
+            Metrics.registerRoutes(TeacherController.ROUTES);
+            Metrics.registerRoutes(AdminController.ROUTES);
+            Metrics.registerRoutes(Set.of(BatchController.PATH));
+            HttpServer server = HttpServer.create(new InetSocketAddress(PORT.get()), 0);
+            ThreadPoolExecutor serverExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(SERVER_THREADS.get());
+            SERVER_THREADS.onChange(threads -> Bulkhead.resize(serverExecutor, threads));
+            server.setExecutor(serverExecutor);
+            server.createContext("/auth/", exchange -> dispatch(exchange, AUTH_LIMITER, AUTH_BULKHEAD, MainApplication::routeAuth));
+            server.createContext("/student/", exchange -> dispatch(exchange, STUDENT_LIMITER, STUDENT_BULKHEAD, MainApplication::routeStudent));
+            server.createContext("/teacher/", exchange -> dispatch(exchange, TEACHER_LIMITER, TEACHER_BULKHEAD, MainApplication::routeTeacher));
+            server.createContext("/admin/", MainApplication::dispatchAdmin);
+            server.createContext("/health/", HealthController::handle);
+            server.createContext(BatchController.PATH, exchange -> dispatch(exchange, BATCH_LIMITER, BATCH_BULKHEAD, MainApplication::routeBatch));
             server.start();
-            System.out.println("[Acadify] Server running on port " + PORT);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(server), "acadify-shutdown"));
+            AppConfig.startWatching();
+            Log.info("Acadify", "Server running", "port", PORT.get());
+            Warmup.run();
+            HealthController.markReady();
         } catch (IOException e) {
-            System.err.println("[Acadify] FATAL: Failed to start server – " + e.getMessage());
+            Log.error("Acadify", "FATAL: Failed to start server", "error", e.getMessage());
+            Log.flush(2000);
             System.exit(1);
         }
     }
-    private static void routeAuth(HttpExchange exchange) {
+    /**
+     * Coordinated shutdown, run from the JVM shutdown hook: leave the load balancer's
+     * rotation, stop taking requests, let in-flight ones and the work they handed to
+     * batch pools and cache refreshes finish until the drain deadline, then persist
+     * sessions, close the pool and flush the log.
+     */
+    private static void shutdown(HttpServer server) {
+        long start = System.nanoTime();
+        Log.info("Acadify", "Shutdown started", "in_flight", IN_FLIGHT.get());
+        HealthController.markDraining();
         try {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(SHUTDOWN_READY_DELAY_SECONDS.get()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        accepting = false;
+        EventBus.closeAll();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_DRAIN_SECONDS.get());
+        while (IN_FLIGHT.get() > 0 && System.nanoTime() - deadline < 0) {
+            try {
+                Thread.sleep(25);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int abandoned = IN_FLIGHT.get();
+        // HttpServer.stop(n) always waits n seconds on JDK 17, so drain is tracked above and stop is immediate
+        server.stop(0);
+        // Drained in stages so nothing is stopped while work still in flight submits to it:
+        // request bulkheads first, as a batch request hands sub-requests to the batch pools
+        // and a request may wait on an aggregate refresh's load; then the batch pools; then
+        // the refresh bulkheads, whose sweeps stop now so no refresh is queued from here on
+        AggregateCache.stopRefreshing();
+        Collection<Bulkhead> subRequests = BatchController.subRequestPools();
+        List<Bulkhead> refreshers = AggregateCache.refreshers();
+        List<Bulkhead> requests = new ArrayList<>(Bulkhead.all());
+        requests.removeAll(subRequests);
+        requests.removeAll(refreshers);
+        boolean drained = Bulkhead.shutdown(requests, deadline);
+        drained &= Bulkhead.shutdown(subRequests, deadline);
+        drained &= Bulkhead.shutdown(refreshers, deadline);
+        drained &= abandoned == 0;
+        try {
+            if (JfrEvents.isRecording()) JfrEvents.stopRecording();
+        } catch (IOException e) {
+            Log.warn("Acadify", "Failed to dump JFR recording", "error", e.getMessage());
+        }
+        try {
+            SessionUtil.persist();
+        } catch (IOException e) {
+            Log.warn("Acadify", "Failed to persist sessions", "error", e.getMessage());
+        }
+        DatabaseConfig.shutdown();
+        Log.info("Acadify", "Shutdown complete", "drained", drained, "abandoned", abandoned,
+                "elapsed_ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        Log.flush(2000);
+    }
+    private static void dispatch(HttpExchange exchange, ConcurrencyLimiter limiter, Bulkhead bulkhead, HttpHandler handler) throws IOException {
+        long start = System.nanoTime();
+        IN_FLIGHT.incrementAndGet();
+        if (!accepting) {
+            IN_FLIGHT.decrementAndGet();
+            exchange.getResponseHeaders().set("Connection", "close");
+            ResponseUtil.sendServiceUnavailable(exchange, "Server is shutting down, please retry", 1);
+            recordRequest(exchange, start);
+            return;
+        }
+        if (!limiter.tryAcquire()) {
+            ResponseUtil.sendServiceUnavailable(exchange, "Server is busy, please retry shortly", limiter.getRetryAfterSeconds());
+            recordRequest(exchange, start);
+            IN_FLIGHT.decrementAndGet();
+            return;
+        }
+        boolean queued = bulkhead.submit(() -> {
+            RequestContext.begin(exchange, start);
+            try {
+                handler.handle(exchange);
+            } catch (IOException e) {
+                Log.error("MainApplication", "Failed to write response", "error", e.getMessage());
+            } finally {
+                limiter.release(System.nanoTime() - start);
+                recordRequest(exchange, start);
+                RequestContext.end();
+                IN_FLIGHT.decrementAndGet();
+            }
+        });
+        if (!queued) {
+            limiter.abandon();
+            ResponseUtil.sendServiceUnavailable(exchange, "Server is busy, please retry shortly", 1);
+            recordRequest(exchange, start);
+            IN_FLIGHT.decrementAndGet();
+        }
+    }
+    private static void recordRequest(HttpExchange exchange, long start) {
+        long elapsed = System.nanoTime() - start;
+        Metrics.RouteMetrics metrics = Metrics.route(exchange.getRequestMethod(), exchange.getRequestURI().getPath());
+        metrics.record(exchange.getResponseCode(), elapsed);
+        RequestContext context = RequestContext.current();
+        if (context != null) {
+            metrics.recordPhases(context);
+            SlowRequestLog.offer(context, exchange.getResponseCode(), elapsed);
+        }
+    }
+    /**
+     * Aggregates go through their own tight limiter, except requests answered from the
+     * aggregate cache or by an identical aggregate already executing: they cost no
+     * database work, so they are admitted like ordinary admin reads instead of being shed.
+     * That is only a prediction made at dispatch; a request that has waited in the admin
+     * bulkhead may find the cached response expired or the execution finished, so if it
+     * ends up running the aggregate itself it takes an aggregate slot then, or is shed.
+     */
+    private static void dispatchAdmin(HttpExchange exchange) throws IOException {
+        if (!AdminController.isAggregate(exchange.getRequestURI().getPath())) {
+            dispatch(exchange, ADMIN_LIMITER, ADMIN_BULKHEAD, MainApplication::routeAdmin);
+        } else if (AdminController.isServedWithoutQuery(exchange)) {
+            dispatch(exchange, ADMIN_LIMITER, ADMIN_BULKHEAD, ex ->
+                    SingleFlight.handleWithLeaderLimiter(ex, MainApplication::routeAdmin, ADMIN_AGGREGATE_LIMITER));
+        } else {
+            dispatch(exchange, ADMIN_AGGREGATE_LIMITER, ADMIN_BULKHEAD, MainApplication::routeAdmin);
+        }
+    }
+    /**
+     * The bulkhead whose connection quota a role's work is charged to
+     */
+    static Bulkhead roleBulkhead(String role) {
+        switch (role) {
+            case "STUDENT": return STUDENT_BULKHEAD;
+            case "TEACHER": return TEACHER_BULKHEAD;
+            case "ADMIN": return ADMIN_BULKHEAD;
+            default: return AUTH_BULKHEAD;
+        }
+    }
+    private static void routeAuth(HttpExchange exchange) throws IOException {
+        try {
+            CircuitBreaker breaker = DatabaseConfig.breaker();
+            if (breaker.isOpen()) {
+                ResponseUtil.sendServiceUnavailable(exchange, "Database temporarily unavailable, please retry",
+                        breaker.getRetryAfterSeconds());
+                return;
+            }
             AuthController.handle(exchange);
         } catch (Exception e) {
-            System.err.println("[MainApplication] Auth error: " + e.getMessage());
+            Log.error("MainApplication", "Auth error", "error", e.getMessage());
             ResponseUtil.sendError(exchange, 500, "Internal server error");
         }
     }
-    private static void routeStudent(HttpExchange exchange) {
+    private static void routeStudent(HttpExchange exchange) throws IOException {
         try {
             int[] session = validateSession(exchange, "STUDENT");
             if (session == null) return;
             int userId = session[0];
+            long resolveStart = System.nanoTime();
             int studentId = EntityResolver.resolveStudentId(userId);
-            if (studentId == -1) {
+            RequestContext.record(RequestContext.Phase.RESOLVE, System.nanoTime() - resolveStart);
+            if (studentId == EntityResolver.UNAVAILABLE) {
+                ResponseUtil.sendServiceUnavailable(exchange, "Database temporarily unavailable, please retry",
+                        DatabaseConfig.breaker().getRetryAfterSeconds());
+                return;
+            }
+            if (studentId == EntityResolver.NOT_FOUND) {
                 ResponseUtil.sendError(exchange, 404, "Student profile not found");
                 return;
             }
-            StudentController.handle(exchange, userId, studentId);
+            if (exchange.getRequestURI().getPath().equals(EventBus.STUDENT_PATH)) {
+                EventBus.subscribe(exchange, EventBus.student(studentId));
+                return;
+            }
+            serveUser(exchange, userId, ex -> StudentController.handle(ex, userId, studentId));
         } catch (Exception e) {
-            System.err.println("[MainApplication] Student route error: " + e.getMessage());
+            Log.error("MainApplication", "Student route error", "error", e.getMessage());
             ResponseUtil.sendError(exchange, 500, "Internal server error");
         }
     }
-    private static void routeTeacher(HttpExchange exchange) {
+    private static void routeTeacher(HttpExchange exchange) throws IOException {
         try {
             int[] session = validateSession(exchange, "TEACHER");
             if (session == null) return;
             int userId = session[0];
+            long resolveStart = System.nanoTime();
             int teacherId = EntityResolver.resolveTeacherId(userId);
-            if (teacherId == -1) {
+            RequestContext.record(RequestContext.Phase.RESOLVE, System.nanoTime() - resolveStart);
+            if (teacherId == EntityResolver.UNAVAILABLE) {
+                ResponseUtil.sendServiceUnavailable(exchange, "Database temporarily unavailable, please retry",
+                        DatabaseConfig.breaker().getRetryAfterSeconds());
+                return;
+            }
+            if (teacherId == EntityResolver.NOT_FOUND) {
                 ResponseUtil.sendError(exchange, 404, "Teacher profile not found");
                 return;
             }
-            TeacherController.handle(exchange, userId, teacherId);
+            if (exchange.getRequestURI().getPath().equals(EventBus.TEACHER_PATH)) {
+                EventBus.subscribe(exchange, EventBus.teacher(teacherId));
+                return;
+            }
+            serveUser(exchange, userId, ex -> TeacherController.handle(ex, userId, teacherId));
         } catch (Exception e) {
-            System.err.println("[MainApplication] Teacher route error: " + e.getMessage());
+            Log.error("MainApplication", "Teacher route error", "error", e.getMessage());
             ResponseUtil.sendError(exchange, 500, "Internal server error");
         }
     }
-    private static void routeAdmin(HttpExchange exchange) {
+    private static void routeAdmin(HttpExchange exchange) throws IOException {
         try {
             int[] session = validateSession(exchange, "ADMIN");
             if (session == null) return;
-            AdminController.handle(exchange, session[0]);
+            int userId = session[0];
+            serveUser(exchange, userId, ex -> AdminController.handle(ex, userId));
         } catch (Exception e) {
-            System.err.println("[MainApplication] Admin route error: " + e.getMessage());
+            Log.error("MainApplication", "Admin route error", "error", e.getMessage());
             ResponseUtil.sendError(exchange, 500, "Internal server error");
         }
     }
+    private static void routeBatch(HttpExchange exchange) throws IOException {
+        try {
+            BatchController.handle(exchange);
+        } catch (Exception e) {
+            Log.error("MainApplication", "Batch route error", "error", e.getMessage());
+            ResponseUtil.sendServerError(exchange, "Internal server error");
+        }
+    }
+    /**
+     * Run a controller for an authenticated user: writes are deduplicated by
+     * Idempotency-Key, and reads fall back to their last good response while the
+     * database is unavailable. Event streams are opened before this, as capturing a
+     * read for the fallback would hold the stream back.
+     */
+    static void serveUser(HttpExchange exchange, int userId, HttpHandler controller) throws IOException {
+        Idempotency.handle(exchange, userId, ex -> FallbackCache.handle(ex, userId, controller));
+    }
     private static int[] validateSession(HttpExchange exchange, String requiredRole) throws IOException {
+        long sessionStart = System.nanoTime();
         String[] session = SessionUtil.extractAndValidate(exchange);
+        RequestContext.record(RequestContext.Phase.SESSION, System.nanoTime() - sessionStart);
         if (session == null) {
             ResponseUtil.sendError(exchange, 401, "Unauthorized: Invalid or expired session");
             return null;
         }
         String userRole = session[1];
         if (!requiredRole.equalsIgnoreCase(userRole)) {
-            System.err.println("[SECURITY] Unauthorized access attempt: User with role '" +
-                             userRole + "' tried to access '" + requiredRole + "' endpoint");
+            Log.warn("SECURITY", "Unauthorized access attempt", "role", userRole, "required_role", requiredRole);
             ResponseUtil.sendError(exchange, 403, "Forbidden: Insufficient privileges");
             return null;
         }
         return new int[]{Integer.parseInt(session[0])};
     }
+    private static void applyLogLevel(String level) {
+        try {
+            Log.setLevel(Log.Level.valueOf(level.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            Log.warn("Acadify", "Ignoring invalid setting", "key", "log.level", "value", level);
+        }
+    }
 }
@@ -0,0 +1,216 @@
+package com.acadify;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide metrics registry rendered in Prometheus text format at /admin/metrics.
+ * Counters are LongAdders and latencies are lock-free Histograms, so recording on the
+ * request path costs a map lookup and a few atomic increments. Hot callers should hold
+ * on to the returned counter or histogram instead of looking it up per event.
+ */
+public class Metrics {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final Set<String> knownRoutes = ConcurrentHashMap.newKeySet();
+    private static final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, LongAdder>> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, Map<String, Histogram>> histograms = new ConcurrentSkipListMap<>();
+    private static final Map<String, Map<String, Supplier<Number>>> counterFunctions = new ConcurrentSkipListMap<>();
+    private static final Map<String, Map<String, Supplier<Number>>> gauges = new ConcurrentSkipListMap<>();
+
+    /**
+     * Request count, status codes and latency for one method + route
+     */
+    public static final class RouteMetrics {
+        private final String labels;
+        private final Histogram latency = new Histogram();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final Histogram[] phases = new Histogram[RequestContext.Phase.values().length];
+        private final LongAdder bodyBytes;
+        private final LongAdder sentBytes;
+
+        private RouteMetrics(String method, String route) {
+            this.labels = labels("method", method, "route", route);
+            for (RequestContext.Phase phase : RequestContext.Phase.values()) {
+                phases[phase.ordinal()] = histogram("acadify_request_phase_seconds",
+                        labels("method", method, "route", route, "phase", phase.label));
+            }
+            this.bodyBytes = counter("acadify_http_response_body_bytes_total", labels);
+            this.sentBytes = counter("acadify_http_response_sent_bytes_total", labels);
+            gauge("acadify_http_response_compression_ratio", labels, () -> {
+                long sent = sentBytes.sum();
+                return sent == 0 ? 1.0 : (double) bodyBytes.sum() / sent;
+            });
+        }
+
+        /**
+         * Record one completed request
+         */
+        public void record(int status, long nanos) {
+            latency.record(nanos);
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+
+        /**
+         * Record one response body's size before and after content encoding
+         */
+        public void recordBytes(long body, long sent) {
+            bodyBytes.add(body);
+            sentBytes.add(sent);
+        }
+
+        /**
+         * Record the per-phase breakdown of one completed request; phases it never entered are skipped
+         */
+        public void recordPhases(RequestContext context) {
+            for (RequestContext.Phase phase : RequestContext.Phase.values()) {
+                long nanos = context.getPhaseNanos(phase);
+                if (nanos > 0) phases[phase.ordinal()].record(nanos);
+            }
+        }
+
+        public Histogram getLatency() {
+            return latency;
+        }
+    }
+
+    /**
+     * Declare the paths the server handles. Only these get series of their own, so the
+     * number of series is fixed by the route table, not by the paths clients send.
+     */
+    public static void registerRoutes(Collection<String> paths) {
+        knownRoutes.addAll(paths);
+    }
+
+    /**
+     * Get the metrics for a route; paths not in the route table share one "unmatched" entry
+     */
+    public static RouteMetrics route(String method, String path) {
+        String normalizedMethod = normalizeMethod(method);
+        String route = knownRoutes.contains(path) ? path : "unmatched";
+        String key = normalizedMethod + ' ' + route;
+        RouteMetrics metrics = routes.get(key);
+        if (metrics != null) return metrics;
+        return routes.computeIfAbsent(key, k -> new RouteMetrics(normalizedMethod, route));
+    }
+
+    /**
+     * Get or create a counter
+     */
+    public static LongAdder counter(String name, String labels) {
+        return counters.computeIfAbsent(name, n -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(labels, l -> new LongAdder());
+    }
+
+    /**
+     * Get or create a duration histogram, exported in seconds
+     */
+    public static Histogram histogram(String name, String labels) {
+        return histograms.computeIfAbsent(name, n -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(labels, l -> new Histogram());
+    }
+
+    /**
+     * Export a monotonically increasing value owned by another component
+     */
+    public static void counter(String name, String labels, Supplier<Number> value) {
+        counterFunctions.computeIfAbsent(name, n -> new ConcurrentSkipListMap<>()).put(labels, value);
+    }
+
+    /**
+     * Export a point-in-time value owned by another component
+     */
+    public static void gauge(String name, String labels, Supplier<Number> value) {
+        gauges.computeIfAbsent(name, n -> new ConcurrentSkipListMap<>()).put(labels, value);
+    }
+
+    /**
+     * Build a Prometheus label set from alternating names and values
+     */
+    public static String labels(String... namesAndValues) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i + 1 < namesAndValues.length; i += 2) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(namesAndValues[i]).append("=\"")
+              .append(namesAndValues[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+              .append('"');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Render every registered metric in Prometheus text exposition format
+     */
+    public static String renderPrometheus() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+
+        out.append("# TYPE acadify_http_requests_total counter\n");
+        for (RouteMetrics route : routes.values()) {
+            for (Map.Entry<Integer, LongAdder> status : route.statuses.entrySet()) {
+                sample(out, "acadify_http_requests_total",
+                        route.labels + ",status=\"" + status.getKey() + "\"", status.getValue().sum());
+            }
+        }
+        out.append("# TYPE acadify_http_request_duration_seconds summary\n");
+        for (RouteMetrics route : routes.values()) {
+            summary(out, "acadify_http_request_duration_seconds", route.labels, route.latency);
+        }
+
+        for (Map.Entry<String, Map<String, LongAdder>> family : counters.entrySet()) {
+            out.append("# TYPE ").append(family.getKey()).append(" counter\n");
+            for (Map.Entry<String, LongAdder> series : family.getValue().entrySet()) {
+                sample(out, family.getKey(), series.getKey(), series.getValue().sum());
+            }
+        }
+        for (Map.Entry<String, Map<String, Supplier<Number>>> family : counterFunctions.entrySet()) {
+            out.append("# TYPE ").append(family.getKey()).append(" counter\n");
+            for (Map.Entry<String, Supplier<Number>> series : family.getValue().entrySet()) {
+                sample(out, family.getKey(), series.getKey(), series.getValue().get());
+            }
+        }
+        for (Map.Entry<String, Map<String, Supplier<Number>>> family : gauges.entrySet()) {
+            out.append("# TYPE ").append(family.getKey()).append(" gauge\n");
+            for (Map.Entry<String, Supplier<Number>> series : family.getValue().entrySet()) {
+                sample(out, family.getKey(), series.getKey(), series.getValue().get());
+            }
+        }
+        for (Map.Entry<String, Map<String, Histogram>> family : histograms.entrySet()) {
+            out.append("# TYPE ").append(family.getKey()).append(" summary\n");
+            for (Map.Entry<String, Histogram> series : family.getValue().entrySet()) {
+                summary(out, family.getKey(), series.getKey(), series.getValue());
+            }
+        }
+        return out.toString();
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, Histogram histogram) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for (double q : QUANTILES) {
+            sample(out, name, prefix + "quantile=\"" + q + "\"", histogram.valueAtQuantile(q) / 1e9);
+        }
+        sample(out, name + "_sum", labels, histogram.getSumNanos() / 1e9);
+        sample(out, name + "_count", labels, histogram.getCount());
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, Number value) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String normalizeMethod(String method) {
+        switch (method) {
+            case "GET": case "POST": case "PUT": case "DELETE": case "PATCH": case "HEAD": case "OPTIONS":
+                return method;
+            default:
+                return "OTHER";
+        }
+    }
+}
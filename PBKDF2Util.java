@@ -4,19 +4,28 @@ import java.util.Base64;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import java.security.spec.KeySpec;
+import java.util.concurrent.atomic.AtomicInteger;
 public class PBKDF2Util {
-    private static final int ITERATIONS = 10000;
+    // Stored hashes record their own iteration count, so a change applies to new hashes only
+    private static final AppConfig.Setting<Integer> ITERATIONS = AppConfig.intSetting("pbkdf2.iterations", 10000, 1000, 10_000_000, true);
     private static final int KEY_LENGTH = 256;
     private static final int SALT_LENGTH = 16;
     private static final SecureRandom RANDOM = new SecureRandom();
+    private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+    private static final Histogram HASH_TIME = Metrics.histogram("acadify_pbkdf2_duration_seconds", Metrics.labels("op", "hash"));
+    private static final Histogram VERIFY_TIME = Metrics.histogram("acadify_pbkdf2_duration_seconds", Metrics.labels("op", "verify"));
+    static {
+        Metrics.gauge("acadify_pbkdf2_in_flight", "", IN_FLIGHT::get);
+    }
     public static String hashPassword(String password) {
         try {
             byte[] salt = new byte[SALT_LENGTH];
             RANDOM.nextBytes(salt);
-            byte[] hash = pbkdf2(password.toCharArray(), salt, ITERATIONS, KEY_LENGTH);
+            int iterations = ITERATIONS.get();
+            byte[] hash = timedPbkdf2(password.toCharArray(), salt, iterations, KEY_LENGTH, HASH_TIME);
             String saltB64 = Base64.getEncoder().encodeToString(salt);
             String hashB64 = Base64.getEncoder().encodeToString(hash);
-            return "$pbkdf2$" + ITERATIONS + "$" + saltB64 + "$" + hashB64;
+            return "$pbkdf2$" + iterations + "$" + saltB64 + "$" + hashB64;
         } catch (Exception e) {
             throw new RuntimeException("Password hashing failed", e);
         }
@@ -24,7 +33,7 @@ public class PBKDF2Util {
     public static boolean verifyPassword(String password, String storedHash) {
         try {
             if (storedHash.length() == 64 && !storedHash.contains("$")) {
-                System.err.println("[SECURITY WARNING] Legacy SHA-256 hash detected. User should reset password.");
+                Log.warn("SECURITY", "Legacy SHA-256 hash detected. User should reset password.");
                 return false;
             }
             String[] parts = storedHash.split("\\$");
@@ -34,13 +43,32 @@ public class PBKDF2Util {
             int iterations = Integer.parseInt(parts[2]);
             byte[] salt = Base64.getDecoder().decode(parts[3]);
             byte[] expectedHash = Base64.getDecoder().decode(parts[4]);
-            byte[] actualHash = pbkdf2(password.toCharArray(), salt, iterations, KEY_LENGTH);
+            byte[] actualHash = timedPbkdf2(password.toCharArray(), salt, iterations, KEY_LENGTH, VERIFY_TIME);
             return constantTimeEquals(expectedHash, actualHash);
         } catch (Exception e) {
-            System.err.println("[PBKDF2Util] Password verification error: " + e.getMessage());
+            Log.error("PBKDF2Util", "Password verification error", "error", e.getMessage());
             return false;
         }
     }
+    private static byte[] timedPbkdf2(char[] password, byte[] salt, int iterations, int keyLength, Histogram timer)
+            throws Exception {
+        JfrEvents.PasswordHash event = new JfrEvents.PasswordHash();
+        event.begin();
+        IN_FLIGHT.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            return pbkdf2(password, salt, iterations, keyLength);
+        } finally {
+            timer.record(System.nanoTime() - start);
+            IN_FLIGHT.decrementAndGet();
+            if (event.shouldCommit()) {
+                event.operation = timer == HASH_TIME ? "hash" : "verify";
+                event.iterations = iterations;
+                event.route = JfrEvents.route();
+                event.commit();
+            }
+        }
+    }
     private static byte[] pbkdf2(char[] password, byte[] salt, int iterations, int keyLength)
             throws Exception {
         KeySpec spec = new PBEKeySpec(password, salt, iterations, keyLength);
@@ -0,0 +1,148 @@
+package com.acadify;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Field selection for list endpoints through a ?fields=a,b,c query parameter. Each
+ * endpoint declares its row shape as a Schema, fields named after the result columns
+ * they are read from. A Projection then serializes only the requested fields of each
+ * row, in schema order, and names only their columns for the SELECT list, so columns
+ * nobody asked for are neither sent by the database nor serialized. Without the
+ * parameter every field is included, as before. An unknown field is rejected with 400.
+ * Parsed projections are kept per schema and fields value, so a client polling with
+ * the same parameter parses it once.
+ */
+public final class Projection {
+
+    public static final String PARAM = "fields";
+    private static final int MAX_CACHED_PER_SCHEMA = 64;
+
+    public enum Type { INT, STRING, NULLABLE_STRING, DECIMAL, TIMESTAMP }
+
+    /**
+     * The fields an endpoint can return, in the order they are serialized
+     */
+    public static final class Schema {
+        private final Map<String, Type> fields = new LinkedHashMap<>();
+        private final ConcurrentHashMap<String, Projection> parsed = new ConcurrentHashMap<>();
+        private Projection all;
+
+        public Schema field(String name, Type type) {
+            fields.put(name, type);
+            all = null;
+            return this;
+        }
+
+        private Projection all() {
+            Projection projection = all;
+            if (projection == null) all = projection = new Projection(new ArrayList<>(fields.keySet()), this);
+            return projection;
+        }
+    }
+
+    private final String[] names;
+    private final Type[] types;
+    private final String columns;
+
+    private Projection(List<String> names, Schema schema) {
+        this.names = names.toArray(new String[0]);
+        this.types = new Type[this.names.length];
+        for (int i = 0; i < this.names.length; i++) types[i] = schema.fields.get(this.names[i]);
+        this.columns = String.join(", ", this.names);
+    }
+
+    public static Schema schema() {
+        return new Schema();
+    }
+
+    /**
+     * The projection of every field in the schema, for rows not shaped by a request
+     */
+    public static Projection all(Schema schema) {
+        return schema.all();
+    }
+
+    /**
+     * The projection requested by the exchange, or null after answering 400 because the
+     * parameter names a field the schema does not have
+     */
+    public static Projection parse(HttpExchange exchange, Schema schema) throws IOException {
+        String raw = RequestUtil.extractQueryParam(exchange.getRequestURI().getRawQuery(), PARAM);
+        if (raw == null) return schema.all();
+        Projection cached = schema.parsed.get(raw);
+        if (cached != null) return cached;
+
+        List<String> requested = new ArrayList<>();
+        for (String name : URLDecoder.decode(raw, StandardCharsets.UTF_8).split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) continue;
+            if (!schema.fields.containsKey(name)) {
+                ResponseUtil.sendBadRequest(exchange, "Unknown field '" + name + "' in " + PARAM
+                        + "; allowed: " + String.join(", ", schema.fields.keySet()));
+                return null;
+            }
+            requested.add(name);
+        }
+        if (requested.isEmpty()) {
+            ResponseUtil.sendBadRequest(exchange, PARAM + " must name at least one field");
+            return null;
+        }
+        List<String> ordered = new ArrayList<>();
+        for (String name : schema.fields.keySet()) {
+            if (requested.contains(name)) ordered.add(name);
+        }
+        Projection projection = ordered.size() == schema.fields.size()
+                ? schema.all()
+                : new Projection(ordered, schema);
+        if (schema.parsed.size() < MAX_CACHED_PER_SCHEMA) schema.parsed.putIfAbsent(raw, projection);
+        return projection;
+    }
+
+    /**
+     * The SELECT list for the included fields; names come from the schema, never the request
+     */
+    public String columns() {
+        return columns;
+    }
+
+    /**
+     * Serialize the included fields of the current row, timed as the SERIALIZE phase
+     */
+    public String row(ResultSet rs) throws SQLException {
+        long start = System.nanoTime();
+        JsonBuilder json = JsonBuilder.object();
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            switch (types[i]) {
+                case INT:
+                    json.add(name, rs.getInt(name));
+                    break;
+                case STRING:
+                    json.add(name, rs.getString(name));
+                    break;
+                case NULLABLE_STRING:
+                    json.addNullable(name, rs.getString(name));
+                    break;
+                case DECIMAL:
+                    json.add(name, rs.getBigDecimal(name));
+                    break;
+                case TIMESTAMP:
+                    json.add(name, rs.getTimestamp(name));
+                    break;
+            }
+        }
+        String row = json.build();
+        RequestContext.record(RequestContext.Phase.SERIALIZE, System.nanoTime() - start);
+        return row;
+    }
+}
@@ -0,0 +1,154 @@
+package com.acadify;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keyed token-bucket rate limiter with lock-free buckets.
+ * Each bucket is a single AtomicLong holding the time at which it will be full again,
+ * so taking a token is one CAS and needs no refill thread. The key map is bounded:
+ * idle (fully refilled) buckets are evicted when it fills up, and keys that still do
+ * not fit share one overflow bucket instead of escaping the limit. Capacity, refill
+ * interval and key bound come from ratelimit.<name>.* settings and follow config reloads.
+ */
+public class RateLimiter {
+
+    private static final List<RateLimiter> REGISTRY = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private volatile Params params;
+    private volatile int maxKeys;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflowBucket = new AtomicLong(System.nanoTime());
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * Refill interval and burst window, swapped together so a reload is never seen half applied
+     */
+    private static final class Params {
+        final int capacity;
+        final long refillIntervalNanos;
+        final long burstWindowNanos;
+
+        Params(int capacity, long refillIntervalMs) {
+            this.capacity = capacity;
+            this.refillIntervalNanos = refillIntervalMs * 1_000_000L;
+            this.burstWindowNanos = refillIntervalNanos * capacity;
+        }
+    }
+
+    /**
+     * @param capacity         burst size in tokens
+     * @param refillIntervalMs time to regain one token
+     * @param maxKeys          upper bound on tracked keys
+     */
+    public RateLimiter(String name, int capacity, long refillIntervalMs, int maxKeys) {
+        this.name = name;
+        String prefix = "ratelimit." + name + ".";
+        AppConfig.Setting<Integer> burst = AppConfig.intSetting(prefix + "capacity", capacity, 1, 1_000_000, true);
+        AppConfig.Setting<Long> refill = AppConfig.longSetting(prefix + "refill.ms", refillIntervalMs, 1, 86_400_000L, true);
+        AppConfig.Setting<Integer> keys = AppConfig.intSetting(prefix + "max.keys", maxKeys, 1, 100_000_000, true);
+        this.params = new Params(burst.get(), refill.get());
+        this.maxKeys = keys.get();
+        burst.onChange(v -> params = new Params(v, refill.get()));
+        refill.onChange(v -> params = new Params(burst.get(), v));
+        keys.onChange(v -> this.maxKeys = v);
+        REGISTRY.add(this);
+        String labels = Metrics.labels("limiter", name);
+        Metrics.counter("acadify_rate_limit_throttled_total", labels, throttled::sum);
+        Metrics.counter("acadify_rate_limit_allowed_total", labels, allowed::sum);
+        Metrics.gauge("acadify_rate_limit_tracked_keys", labels, buckets::size);
+    }
+
+    /**
+     * Get every rate limiter created in this process
+     */
+    public static List<RateLimiter> all() {
+        return REGISTRY;
+    }
+
+    /**
+     * Take one token for the key; returns 0 if allowed, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        Params p = params;
+        AtomicLong bucket = bucketFor(key, now);
+        while (true) {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + p.refillIntervalNanos;
+            long wait = next - now - p.burstWindowNanos;
+            if (wait > 0) {
+                throttled.increment();
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong bucketFor(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) return bucket;
+        if (buckets.size() >= maxKeys) {
+            evictIdle(now);
+            if (buckets.size() >= maxKeys) return overflowBucket;
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    private void evictIdle(long now) {
+        if (!evicting.compareAndSet(false, true)) return;
+        try {
+            buckets.values().removeIf(bucket -> bucket.get() <= now);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+
+    public int getTrackedKeys() {
+        return buckets.size();
+    }
+
+    /**
+     * Convert a wait returned by tryAcquire into a Retry-After value
+     */
+    public static int toRetryAfterSeconds(long waitNanos) {
+        return (int) Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    /**
+     * Build a JSON snapshot of this limiter's state
+     */
+    public String toJson() {
+        return JsonBuilder.object()
+                .add("name", name)
+                .add("capacity", params.capacity)
+                .add("refill_interval_ms", params.refillIntervalNanos / 1_000_000L)
+                .add("tracked_keys", buckets.size())
+                .add("max_keys", maxKeys)
+                .add("allowed", allowed.sum())
+                .add("throttled", throttled.sum())
+                .build();
+    }
+}
@@ -0,0 +1,145 @@
+package com.acadify;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-request state carried on the worker thread for the duration of one exchange.
+ * Layers below the controllers (session lookup, entity resolution, pool borrow,
+ * statement execution, response serialization and write) add their elapsed time
+ * to a phase slot here, without any of them needing the exchange passed in. Work done
+ * on other threads for the request, such as batch sub-requests, attaches the same
+ * context, so slots are atomic and a phase sums the time spent in it on every thread.
+ */
+public final class RequestContext {
+
+    public enum Phase {
+        SESSION, RESOLVE, POOL, DB, SERIALIZE, WRITE;
+
+        final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+    private static final AppConfig.Setting<Boolean> SERVER_TIMING_ENABLED =
+            AppConfig.booleanSetting("server.timing.enabled", false, true);
+
+    private final String method;
+    private final String path;
+    private final long startNanos;
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+
+    private RequestContext(String method, String path, long startNanos) {
+        this.method = method;
+        this.path = path;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Bind a new context to the calling thread
+     */
+    public static RequestContext begin(HttpExchange exchange, long startNanos) {
+        RequestContext context = new RequestContext(exchange.getRequestMethod(),
+                exchange.getRequestURI().getPath(), startNanos);
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * Bind an existing context to the calling thread, for work done there on the
+     * request's behalf; returns the context it replaces, to be restored the same way
+     */
+    public static RequestContext attach(RequestContext context) {
+        RequestContext previous = CURRENT.get();
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+        return previous;
+    }
+
+    /**
+     * Unbind the calling thread's context
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Get the calling thread's context, or null outside a request
+     */
+    public static RequestContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Add time to a phase of the current request; a no-op outside a request
+     */
+    public static void record(Phase phase, long nanos) {
+        RequestContext context = CURRENT.get();
+        if (context != null) {
+            context.phaseNanos.addAndGet(phase.ordinal(), nanos);
+        }
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos.get(phase.ordinal());
+    }
+
+    /**
+     * Whether responses should carry a Server-Timing header
+     */
+    public static boolean isServerTimingEnabled() {
+        return SERVER_TIMING_ENABLED.get();
+    }
+
+    /**
+     * Format the phases recorded so far as a Server-Timing header value (milliseconds)
+     */
+    public String toServerTiming() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            long nanos = phaseNanos.get(phase.ordinal());
+            if (nanos == 0) continue;
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(phase.label).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+        }
+        if (sb.length() > 0) sb.append(", ");
+        sb.append("total;dur=").append(String.format(Locale.ROOT, "%.3f", (System.nanoTime() - startNanos) / 1e6));
+        return sb.toString();
+    }
+
+    /**
+     * Build a JSON breakdown of this request
+     */
+    public String toJson(int status, long totalNanos) {
+        JsonBuilder phases = JsonBuilder.object();
+        long accounted = 0;
+        for (Phase phase : Phase.values()) {
+            long nanos = phaseNanos.get(phase.ordinal());
+            accounted += nanos;
+            phases.add(phase.label + "_ms", nanos / 1e6);
+        }
+        phases.add("other_ms", Math.max(0, totalNanos - accounted) / 1e6);
+        return JsonBuilder.object()
+                .add("method", method)
+                .add("path", path)
+                .add("status", status)
+                .add("total_ms", totalNanos / 1e6)
+                .addRaw("phases", phases.build())
+                .build();
+    }
+}
@@ -3,6 +3,8 @@ import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 public class RequestUtil {
     public static String readBody(HttpExchange exchange) throws IOException {
         InputStream is = exchange.getRequestBody();
@@ -10,6 +12,13 @@ public class RequestUtil {
         is.close();
         return new String(bytes, StandardCharsets.UTF_8);
     }
+    public static String readBody(HttpExchange exchange, int maxBytes) throws IOException {
+        InputStream is = exchange.getRequestBody();
+        byte[] bytes = is.readNBytes(maxBytes + 1);
+        is.close();
+        if (bytes.length > maxBytes) return null;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
     public static String[] parseJson(String json, String... keys) {
         String[] values = new String[keys.length];
         if (json == null || json.isBlank()) return values;
@@ -29,6 +38,72 @@ public class RequestUtil {
         String value = query.substring(valueStart, valueEnd);
         return value.isBlank() ? null : value;
     }
+    public static String extractRawValue(String json, String key) {
+        if (json == null || json.isBlank()) return null;
+        String searchKey = "\"" + key + "\"";
+        int keyIndex = json.indexOf(searchKey);
+        if (keyIndex == -1) return null;
+        int colonIndex = json.indexOf(':', keyIndex + searchKey.length());
+        if (colonIndex == -1) return null;
+        int valueStart = skipWhitespace(json, colonIndex + 1);
+        int valueEnd = findValueEnd(json, valueStart);
+        if (valueEnd == -1) return null;
+        return json.substring(valueStart, valueEnd);
+    }
+    public static List<String> splitJsonArray(String array) {
+        List<String> elements = new ArrayList<>();
+        if (array == null) return elements;
+        int i = skipWhitespace(array, 0);
+        if (i >= array.length() || array.charAt(i) != '[') return null;
+        i = skipWhitespace(array, i + 1);
+        if (i < array.length() && array.charAt(i) == ']') return elements;
+        while (i < array.length()) {
+            int end = findValueEnd(array, i);
+            if (end == -1) return null;
+            elements.add(array.substring(i, end));
+            i = skipWhitespace(array, end);
+            if (i >= array.length()) return null;
+            if (array.charAt(i) == ']') return elements;
+            if (array.charAt(i) != ',') return null;
+            i = skipWhitespace(array, i + 1);
+        }
+        return null;
+    }
+    private static int skipWhitespace(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) i++;
+        return i;
+    }
+    private static int findValueEnd(String json, int start) {
+        if (start >= json.length()) return -1;
+        char first = json.charAt(start);
+        if (first == '"') {
+            int close = findClosingQuote(json, start + 1);
+            return close == -1 ? -1 : close + 1;
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            for (int i = start; i < json.length(); i++) {
+                char c = json.charAt(i);
+                if (c == '"') {
+                    i = findClosingQuote(json, i + 1);
+                    if (i == -1) return -1;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                    if (depth == 0) return i + 1;
+                }
+            }
+            return -1;
+        }
+        int end = start;
+        while (end < json.length()) {
+            char c = json.charAt(end);
+            if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) break;
+            end++;
+        }
+        return end == start ? -1 : end;
+    }
     private static String extractValue(String json, String key) {
         String searchKey = "\"" + key + "\"";
         int keyIndex = json.indexOf(searchKey);
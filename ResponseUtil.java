@@ -2,7 +2,6 @@ package com.acadify;
 
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -15,7 +14,9 @@ import java.nio.charset.StandardCharsets;
  * }
  */
 public class ResponseUtil {
-    
+
+    private static final String REVALIDATE = "private, no-cache";
+
     /**
      * Send a successful response with data (200 OK)
      */
@@ -41,6 +42,17 @@ public class ResponseUtil {
         sendResponse(exchange, 201, json);
     }
 
+    /**
+     * Send a not modified response (304 Not Modified) for a conditional GET; no body
+     */
+    public static void sendNotModified(HttpExchange exchange, String etag) throws IOException {
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Cache-Control", REVALIDATE);
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        exchange.sendResponseHeaders(304, -1);
+        exchange.getResponseBody().close();
+    }
+
     /**
      * Send a bad request error (400 Bad Request)
      */
@@ -89,6 +101,31 @@ public class ResponseUtil {
         sendResponse(exchange, 409, json);
     }
 
+    /**
+     * Send a payload too large error (413 Payload Too Large)
+     */
+    public static void sendPayloadTooLarge(HttpExchange exchange, String message) throws IOException {
+        String json = buildResponse(false, message, "null");
+        sendResponse(exchange, 413, json);
+    }
+
+    /**
+     * Send an unprocessable entity error (422 Unprocessable Entity)
+     */
+    public static void sendUnprocessableEntity(HttpExchange exchange, String message) throws IOException {
+        String json = buildResponse(false, message, "null");
+        sendResponse(exchange, 422, json);
+    }
+
+    /**
+     * Send a too many requests error (429 Too Many Requests) with a Retry-After hint
+     */
+    public static void sendTooManyRequests(HttpExchange exchange, String message, int retryAfterSeconds) throws IOException {
+        String json = buildResponse(false, message, "null");
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+        sendResponse(exchange, 429, json);
+    }
+
     /**
      * Send an internal server error (500 Internal Server Error)
      */
@@ -97,6 +134,25 @@ public class ResponseUtil {
         sendResponse(exchange, 500, json);
     }
 
+    /**
+     * Send a service unavailable error (503 Service Unavailable) with a Retry-After hint
+     */
+    public static void sendServiceUnavailable(HttpExchange exchange, String message, int retryAfterSeconds) throws IOException {
+        String json = buildResponse(false, message, "null");
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+        sendResponse(exchange, 503, json);
+    }
+
+    /**
+     * Send a plain (non-JSON) body with an explicit content type, e.g. Prometheus metrics
+     */
+    public static void sendText(HttpExchange exchange, int statusCode, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache, no-store, must-revalidate");
+        Compression.send(exchange, statusCode, bytes);
+    }
+
     /**
      * DEPRECATED: Use specific methods instead (sendBadRequest, sendServerError, etc.)
      * Kept for backward compatibility during migration
@@ -128,24 +184,41 @@ public class ResponseUtil {
      * Build the standard JSON response structure
      */
     private static String buildResponse(boolean success, String message, String data) {
-        return "{" +
+        long start = System.nanoTime();
+        String json = "{" +
                 "\"success\":" + success + "," +
                 "\"message\":\"" + escapeJson(message) + "\"," +
                 "\"data\":" + data +
                 "}";
+        RequestContext.record(RequestContext.Phase.SERIALIZE, System.nanoTime() - start);
+        return json;
     }
 
     /**
-     * Send the HTTP response
+     * Send the HTTP response, compressed if the client accepts it
      */
     private static void sendResponse(HttpExchange exchange, int statusCode, String jsonBody) throws IOException {
+        JfrEvents.ResponseSerialization event = new JfrEvents.ResponseSerialization();
+        event.begin();
+        long start = System.nanoTime();
         byte[] bytes = jsonBody.getBytes(StandardCharsets.UTF_8);
+        RequestContext.record(RequestContext.Phase.SERIALIZE, System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.status = statusCode;
+            event.bytes = bytes.length;
+            event.route = JfrEvents.route();
+            event.commit();
+        }
         exchange.getResponseHeaders().set("Content-Type", "application/json");
-        exchange.getResponseHeaders().set("Cache-Control", "no-cache, no-store, must-revalidate");
-        exchange.sendResponseHeaders(statusCode, bytes.length);
-        OutputStream os = exchange.getResponseBody();
-        os.write(bytes);
-        os.close();
+        // A body with a version tag may be kept by the client and revalidated; anything else may not
+        if (statusCode != 200) exchange.getResponseHeaders().remove("ETag");
+        exchange.getResponseHeaders().set("Cache-Control",
+                exchange.getResponseHeaders().containsKey("ETag") ? REVALIDATE : "no-cache, no-store, must-revalidate");
+        RequestContext context = RequestContext.current();
+        if (context != null && RequestContext.isServerTimingEnabled()) {
+            exchange.getResponseHeaders().set("Server-Timing", context.toServerTiming());
+        }
+        Compression.send(exchange, statusCode, bytes);
     }
 
     /**
@@ -1,17 +1,36 @@
 package com.acadify;
 
 import com.sun.net.httpserver.HttpExchange;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class SessionUtil {
     private static final ConcurrentHashMap<String, SessionData> sessions = new ConcurrentHashMap<>();
     private static final SecureRandom SECURE_RANDOM = new SecureRandom();
-    private static final long SESSION_TIMEOUT_MS = 30 * 60 * 1000;
-    private static final long MAX_SESSION_LIFETIME_MS = 24 * 60 * 60 * 1000;
-    private static final long CLEANUP_INTERVAL_MS = 60 * 60 * 1000;
+    private static final AppConfig.Setting<Long> SESSION_TIMEOUT_MS =
+            AppConfig.longSetting("session.timeout.ms", 30 * 60 * 1000L, 60_000, Long.MAX_VALUE, true);
+    private static final AppConfig.Setting<Long> MAX_SESSION_LIFETIME_MS =
+            AppConfig.longSetting("session.max.lifetime.ms", 24 * 60 * 60 * 1000L, 60_000, Long.MAX_VALUE, true);
+    private static final AppConfig.Setting<Long> CLEANUP_INTERVAL_MS =
+            AppConfig.longSetting("session.cleanup.interval.ms", 60 * 60 * 1000L, 1000, Long.MAX_VALUE, true);
     private static long lastCleanup = System.currentTimeMillis();
+    private static final AppConfig.Setting<String> STORE_FILE = AppConfig.stringSetting("session.store.file", "", true);
+    private static final String STORE_HEADER = "# acadify sessions v1";
+
+    static {
+        Metrics.gauge("acadify_active_sessions", "", sessions::size);
+    }
 
     private static class SessionData {
         final String userId;
@@ -21,16 +40,20 @@ public class SessionUtil {
         final long absoluteExpiresAt;
 
         SessionData(String userId, String role) {
+            this(userId, role, System.currentTimeMillis(), System.currentTimeMillis());
+        }
+
+        SessionData(String userId, String role, long createdAt, long lastAccessedAt) {
             this.userId = userId;
             this.role = role;
-            this.createdAt = System.currentTimeMillis();
-            this.lastAccessedAt = this.createdAt;
-            this.absoluteExpiresAt = this.createdAt + MAX_SESSION_LIFETIME_MS;
+            this.createdAt = createdAt;
+            this.lastAccessedAt = lastAccessedAt;
+            this.absoluteExpiresAt = createdAt + MAX_SESSION_LIFETIME_MS.get();
         }
 
         boolean isExpired() {
             long now = System.currentTimeMillis();
-            boolean inactivityExpired = (now - lastAccessedAt) > SESSION_TIMEOUT_MS;
+            boolean inactivityExpired = (now - lastAccessedAt) > SESSION_TIMEOUT_MS.get();
             boolean lifetimeExpired = now > absoluteExpiresAt;
             return inactivityExpired || lifetimeExpired;
         }
@@ -42,18 +65,25 @@ public class SessionUtil {
         long getRemainingInactivityTime() {
             long now = System.currentTimeMillis();
             long timeSinceLastAccess = now - lastAccessedAt;
-            long remaining = SESSION_TIMEOUT_MS - timeSinceLastAccess;
+            long remaining = SESSION_TIMEOUT_MS.get() - timeSinceLastAccess;
             return Math.max(0, remaining / 1000);
         }
     }
 
     public static String createSession(String userId, String role) {
+        JfrEvents.SessionCreated event = new JfrEvents.SessionCreated();
+        event.begin();
         String token = generateSecureToken();
         sessions.put(token, new SessionData(userId, role));
+        if (event.shouldCommit()) {
+            event.userId = userId;
+            event.role = role;
+            event.route = JfrEvents.route();
+            event.commit();
+        }
         cleanupExpiredSessions();
-        System.out.println("[SessionUtil] Session created for user " + userId + 
-                         " (Role: " + role + ") - Inactivity timeout: " + 
-                         (SESSION_TIMEOUT_MS / 60000) + " minutes");
+        Log.info("SessionUtil", "Session created", "user_id", userId, "role", role,
+                "inactivity_timeout_min", SESSION_TIMEOUT_MS.get() / 60000);
         return token;
     }
 
@@ -72,10 +102,9 @@ public class SessionUtil {
 
         if (session.isExpired()) {
             sessions.remove(token);
-            System.out.println("[SessionUtil] Session expired and removed for user " + 
-                             session.userId + " (inactive for " + 
-                             ((System.currentTimeMillis() - session.lastAccessedAt) / 60000) + 
-                             " minutes)");
+            emitExpired(session);
+            Log.info("SessionUtil", "Session expired and removed", "user_id", session.userId,
+                    "inactive_min", (System.currentTimeMillis() - session.lastAccessedAt) / 60000);
             return null;
         }
 
@@ -88,11 +117,21 @@ public class SessionUtil {
         if (token != null) {
             SessionData removed = sessions.remove(token);
             if (removed != null) {
-                System.out.println("[SessionUtil] Session invalidated for user " + removed.userId);
+                Log.info("SessionUtil", "Session invalidated", "user_id", removed.userId);
             }
         }
     }
 
+    private static void emitExpired(SessionData session) {
+        JfrEvents.SessionExpired event = new JfrEvents.SessionExpired();
+        if (event.shouldCommit()) {
+            event.userId = session.userId;
+            event.reason = System.currentTimeMillis() > session.absoluteExpiresAt ? "lifetime" : "inactivity";
+            event.route = JfrEvents.route();
+            event.commit();
+        }
+    }
+
     private static String generateSecureToken() {
         byte[] tokenBytes = new byte[32];
         SECURE_RANDOM.nextBytes(tokenBytes);
@@ -101,19 +140,22 @@ public class SessionUtil {
 
     private static void cleanupExpiredSessions() {
         long now = System.currentTimeMillis();
-        if (now - lastCleanup < CLEANUP_INTERVAL_MS) {
+        if (now - lastCleanup < CLEANUP_INTERVAL_MS.get()) {
             return;
         }
         lastCleanup = now;
         
         int beforeCount = sessions.size();
-        sessions.entrySet().removeIf(entry -> entry.getValue().isExpired());
+        sessions.entrySet().removeIf(entry -> {
+            if (!entry.getValue().isExpired()) return false;
+            emitExpired(entry.getValue());
+            return true;
+        });
         int afterCount = sessions.size();
         int removed = beforeCount - afterCount;
         
         if (removed > 0) {
-            System.out.println("[SessionUtil] Cleaned up " + removed + 
-                             " expired sessions. Active sessions: " + afterCount);
+            Log.info("SessionUtil", "Cleaned up expired sessions", "removed", removed, "active", afterCount);
         }
     }
 
@@ -131,7 +173,7 @@ public class SessionUtil {
         String newToken = createSession(oldSession.userId, oldSession.role);
         sessions.remove(oldToken);
         
-        System.out.println("[SessionUtil] Session rotated for user " + oldSession.userId);
+        Log.info("SessionUtil", "Session rotated", "user_id", oldSession.userId);
         return newToken;
     }
 
@@ -153,12 +195,15 @@ public class SessionUtil {
 
     public static int forceCleanup() {
         int beforeCount = sessions.size();
-        sessions.entrySet().removeIf(entry -> entry.getValue().isExpired());
+        sessions.entrySet().removeIf(entry -> {
+            if (!entry.getValue().isExpired()) return false;
+            emitExpired(entry.getValue());
+            return true;
+        });
         int afterCount = sessions.size();
         int removed = beforeCount - afterCount;
         
-        System.out.println("[SessionUtil] Force cleanup removed " + removed + 
-                         " expired sessions. Active sessions: " + afterCount);
+        Log.info("SessionUtil", "Force cleanup removed expired sessions", "removed", removed, "active", afterCount);
         return removed;
     }
 
@@ -166,4 +211,73 @@ public class SessionUtil {
         SessionData session = sessions.get(token);
         return session != null && !session.isExpired();
     }
+
+    /**
+     * Write live sessions to session.store.file so the next start can restore them.
+     * The file holds bearer tokens, so it is created owner-only and replaced atomically.
+     * Returns the number saved, or -1 when persistence is not configured.
+     */
+    public static int persist() throws IOException {
+        if (STORE_FILE.get().isBlank()) return -1;
+        Path file = Paths.get(STORE_FILE.get());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        try {
+            Files.createFile(tmp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createFile(tmp);
+        }
+        int saved = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(STORE_HEADER);
+            writer.newLine();
+            for (Map.Entry<String, SessionData> entry : sessions.entrySet()) {
+                SessionData session = entry.getValue();
+                if (session.isExpired()) continue;
+                writer.write(entry.getKey() + "\t" + session.userId + "\t" + session.role + "\t"
+                        + session.createdAt + "\t" + session.lastAccessedAt);
+                writer.newLine();
+                saved++;
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Log.info("SessionUtil", "Sessions persisted", "count", saved, "file", file);
+        return saved;
+    }
+
+    /**
+     * Restore sessions written by persist() and delete the file, so tokens are not left at rest.
+     * Expired and malformed entries are skipped. Returns the number restored.
+     */
+    public static int restore() {
+        if (STORE_FILE.get().isBlank()) return 0;
+        Path file = Paths.get(STORE_FILE.get());
+        if (!Files.exists(file)) return 0;
+        int restored = 0;
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals(STORE_HEADER)) {
+                Log.warn("SessionUtil", "Ignoring session store with unknown format", "file", file);
+            } else {
+                for (String line : lines.subList(1, lines.size())) {
+                    String[] parts = line.split("\t");
+                    if (parts.length != 5) continue;
+                    try {
+                        SessionData session = new SessionData(parts[1], parts[2],
+                                Long.parseLong(parts[3]), Long.parseLong(parts[4]));
+                        if (session.isExpired()) continue;
+                        sessions.put(parts[0], session);
+                        restored++;
+                    } catch (NumberFormatException e) {
+                        // skip malformed entry
+                    }
+                }
+            }
+            Files.delete(file);
+            Log.info("SessionUtil", "Sessions restored", "count", restored, "file", file);
+        } catch (IOException e) {
+            Log.warn("SessionUtil", "Failed to restore sessions", "file", file, "error", e.getMessage());
+        }
+        return restored;
+    }
 }
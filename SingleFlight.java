@@ -0,0 +1,170 @@
+package com.acadify;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request coalescing for expensive reads whose response does not depend on the caller.
+ * The first request for a route and parameter set becomes the leader and runs the
+ * handler against a LocalExchange; requests for the same key that arrive while it is
+ * running wait for it and are sent the leader's captured bytes, so N concurrent
+ * identical requests cost one database execution and one serialization. Nothing is
+ * kept once the leader finishes: a request arriving afterwards leads a new flight.
+ * Routes opt in by being passed through a SingleFlight group by their controller.
+ * A request admitted on the expectation that it would only wait can be handled with a
+ * leader limiter: should it end up leading, it takes a slot there first or is shed.
+ */
+public class SingleFlight {
+
+    private static final ThreadLocal<ConcurrencyLimiter> LEADER_LIMITER = new ThreadLocal<>();
+
+    private final String name;
+    private final ConcurrentHashMap<String, CompletableFuture<CapturedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    public SingleFlight(String name) {
+        this.name = name;
+        Metrics.counter("acadify_singleflight_requests_total", Metrics.labels("group", name, "result", "leader"), leaders::sum);
+        Metrics.counter("acadify_singleflight_requests_total", Metrics.labels("group", name, "result", "coalesced"), coalesced::sum);
+        Metrics.counter("acadify_singleflight_requests_total", Metrics.labels("group", name, "result", "shed"), shed::sum);
+        Metrics.gauge("acadify_singleflight_in_flight", Metrics.labels("group", name), inFlight::size);
+    }
+
+    /**
+     * Serve the exchange from the in-flight execution for its route and parameters,
+     * starting one if there is none
+     */
+    public void execute(HttpExchange exchange, HttpHandler handler) throws IOException {
+        Flight flight = join(exchange, handler);
+        flight.response.writeTo(exchange, !flight.leader);
+    }
+
+    /**
+     * Like execute, but return the captured response instead of writing it, for callers
+     * that keep it
+     */
+    public CapturedResponse load(HttpExchange exchange, HttpHandler handler) throws IOException {
+        Flight flight = join(exchange, handler);
+        return flight.response;
+    }
+
+    /**
+     * Handle the exchange on the calling thread, taking a slot from the limiter for any
+     * flight it leads. For requests admitted without one because an identical execution
+     * or a cached response was going to answer them: whether that still holds is only
+     * known once the request runs. Loads run elsewhere, e.g. cache refreshes, are not limited.
+     */
+    public static void handleWithLeaderLimiter(HttpExchange exchange, HttpHandler handler,
+                                               ConcurrencyLimiter limiter) throws IOException {
+        LEADER_LIMITER.set(limiter);
+        try {
+            handler.handle(exchange);
+        } finally {
+            LEADER_LIMITER.remove();
+        }
+    }
+
+    private static final class Flight {
+        final CapturedResponse response;
+        final boolean leader;
+
+        Flight(CapturedResponse response, boolean leader) {
+            this.response = response;
+            this.leader = leader;
+        }
+    }
+
+    private Flight join(HttpExchange exchange, HttpHandler handler) throws IOException {
+        String key = key(exchange);
+        CompletableFuture<CapturedResponse> mine = new CompletableFuture<>();
+        CompletableFuture<CapturedResponse> leader = inFlight.putIfAbsent(key, mine);
+        if (leader == null) {
+            ConcurrencyLimiter limiter = LEADER_LIMITER.get();
+            if (limiter == null) return new Flight(lead(exchange, key, mine, handler), true);
+            if (!limiter.tryAcquire()) {
+                inFlight.remove(key, mine);
+                mine.completeExceptionally(new IllegalStateException("Leader shed"));
+                shed.increment();
+                return new Flight(capture(exchange, ex -> ResponseUtil.sendServiceUnavailable(ex,
+                        "Server is busy, please retry shortly", limiter.getRetryAfterSeconds())), true);
+            }
+            long start = System.nanoTime();
+            try {
+                return new Flight(lead(exchange, key, mine, handler), true);
+            } finally {
+                limiter.release(System.nanoTime() - start);
+            }
+        }
+        try {
+            CapturedResponse response = leader.get();
+            coalesced.increment();
+            return new Flight(response, false);
+        } catch (ExecutionException e) {
+            // The leader failed or was shed without producing a response; try again, leading if no one else is
+            return join(exchange, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an identical request", e);
+        }
+    }
+
+    private CapturedResponse lead(HttpExchange exchange, String key, CompletableFuture<CapturedResponse> flight,
+                                  HttpHandler handler) throws IOException {
+        leaders.increment();
+        try {
+            CapturedResponse response = capture(exchange, handler);
+            flight.complete(response);
+            return response;
+        } finally {
+            inFlight.remove(key, flight);
+            if (!flight.isDone()) flight.completeExceptionally(new IllegalStateException("Leader failed"));
+        }
+    }
+
+    private static CapturedResponse capture(HttpExchange exchange, HttpHandler handler) throws IOException {
+        LocalExchange local = new LocalExchange(exchange, exchange.getRequestMethod(), pathAndQuery(exchange), null);
+        handler.handle(local);
+        return new CapturedResponse(local);
+    }
+
+    /**
+     * True if a request for the exchange's route and parameters is currently executing,
+     * so this one would wait for it rather than do work of its own
+     */
+    public boolean isInFlight(HttpExchange exchange) {
+        return inFlight.containsKey(key(exchange));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Route plus query parameters in sorted order, so parameter order does not split flights
+     */
+    static String key(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        String path = exchange.getRequestURI().getRawPath();
+        if (query == null || query.isEmpty()) return path;
+        String[] params = query.split("&");
+        Arrays.sort(params);
+        return path + "?" + String.join("&", params);
+    }
+
+    static String pathAndQuery(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        return exchange.getRequestURI().getRawPath() + (query == null ? "" : "?" + query);
+    }
+}
@@ -0,0 +1,166 @@
+package com.acadify;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statement-level timing policy for InstrumentedConnection: logs executions slower
+ * than slow.query.ms with their SQL, bound parameters and calling route, samples a
+ * fraction of them for EXPLAIN (ANALYZE, BUFFERS) on a background thread, and picks
+ * the query timeout applied to each new statement. Bound values are redacted: numbers
+ * are logged as they are, anything else only by type, since text parameters carry
+ * emails, password hashes and free text. Statements that touch a password column log
+ * only types. A plan can echo its parameters, so only statements whose values are all
+ * loggable are explained.
+ */
+public class SlowQueryLog {
+
+    private static final AppConfig.Setting<Long> THRESHOLD_MS =
+            AppConfig.longSetting("slow.query.ms", 500, 0, Long.MAX_VALUE, true);
+    private static final AppConfig.Setting<Double> EXPLAIN_SAMPLE_RATE =
+            AppConfig.doubleSetting("slow.query.explain.sample", 0.05, 0, 1, true);
+    private static final AppConfig.Setting<Integer> DEFAULT_TIMEOUT_SECONDS =
+            AppConfig.intSetting("query.timeout.seconds", 10, 0, 3600, true);
+    private static final AppConfig.Setting<Integer> AGGREGATE_TIMEOUT_SECONDS =
+            AppConfig.intSetting("query.timeout.aggregate.seconds", 30, 0, 3600, true);
+    private static final int MAX_LOGGED_SQL_CHARS = 1000;
+    private static final String EXPLAIN_PREFIX = "EXPLAIN (ANALYZE, BUFFERS) ";
+
+    private static final LongAdder slowQueries = new LongAdder();
+    private static final LongAdder explainsDropped = new LongAdder();
+
+    // One explain at a time with a short queue: plan capture must never compete with live traffic for the pool
+    private static final ThreadPoolExecutor EXPLAIN_EXECUTOR = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(4), r -> {
+                Thread t = new Thread(r, "slow-query-explain");
+                t.setDaemon(true);
+                return t;
+            }, (r, executor) -> explainsDropped.increment());
+
+    static {
+        Metrics.counter("acadify_slow_queries_total", "", slowQueries::sum);
+        Metrics.counter("acadify_slow_query_explains_dropped_total", "", explainsDropped::sum);
+    }
+
+    /**
+     * Query timeout for a statement created on the calling thread: aggregate admin routes
+     * get a longer budget than ordinary requests
+     */
+    public static int timeoutSecondsForCurrentRoute() {
+        RequestContext context = RequestContext.current();
+        if (context != null && AdminController.isAggregate(context.getPath())) {
+            return AGGREGATE_TIMEOUT_SECONDS.get();
+        }
+        return DEFAULT_TIMEOUT_SECONDS.get();
+    }
+
+    /**
+     * Report one finished execution; only those over the threshold are logged
+     */
+    public static void record(String sql, Map<Integer, Object> params, long nanos) {
+        if (nanos < TimeUnit.MILLISECONDS.toNanos(THRESHOLD_MS.get()) || sql == null || sql.startsWith(EXPLAIN_PREFIX)) return;
+        slowQueries.increment();
+        RequestContext context = RequestContext.current();
+        String route = context == null ? "-" : context.getMethod() + " " + context.getPath();
+        Log.warn("SlowQueryLog", "Slow query", "duration_ms", String.format(Locale.ROOT, "%.1f", nanos / 1e6),
+                "route", route, "params", describeParams(sql, params), "sql", truncate(sql));
+
+        double sampleRate = EXPLAIN_SAMPLE_RATE.get();
+        if (sampleRate > 0 && isExplainable(sql) && isFullyLoggable(sql, params)
+                && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            Object[] bound = params.values().toArray();
+            EXPLAIN_EXECUTOR.execute(() -> explain(sql, bound, route));
+        }
+    }
+
+    /**
+     * Run EXPLAIN (ANALYZE, BUFFERS) inside a transaction that is always rolled back,
+     * since ANALYZE executes the statement and stored functions may write
+     */
+    private static void explain(String sql, Object[] params, String route) {
+        Connection conn = null;
+        try {
+            conn = DatabaseConfig.getConnection();
+            conn.setAutoCommit(false);
+            PreparedStatement ps = conn.prepareStatement(EXPLAIN_PREFIX + sql);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            ResultSet rs = ps.executeQuery();
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append('\n').append("    ").append(rs.getString(1));
+            }
+            rs.close();
+            ps.close();
+            Log.warn("SlowQueryLog", "Slow query plan", "route", route, "sql", truncate(sql), "plan", plan.toString());
+        } catch (SQLException e) {
+            Log.error("SlowQueryLog", "EXPLAIN failed", "error", e.getMessage());
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException e) {
+                    Log.error("SlowQueryLog", "Rollback after EXPLAIN failed", "error", e.getMessage());
+                }
+            }
+            DatabaseConfig.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * The bound values as logged, e.g. {1=42, 2=<String>}
+     */
+    static String describeParams(String sql, Map<Integer, Object> params) {
+        boolean typesOnly = touchesPassword(sql);
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<Integer, Object> param : params.entrySet()) {
+            if (sb.length() > 1) sb.append(", ");
+            Object value = param.getValue();
+            sb.append(param.getKey()).append('=');
+            if (value == null) {
+                sb.append("null");
+            } else if (!typesOnly && isLoggable(value)) {
+                sb.append(value);
+            } else {
+                sb.append('<').append(value.getClass().getSimpleName()).append('>');
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private static boolean isFullyLoggable(String sql, Map<Integer, Object> params) {
+        if (touchesPassword(sql)) return false;
+        for (Object value : params.values()) {
+            if (value != null && !isLoggable(value)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isLoggable(Object value) {
+        return value instanceof Number || value instanceof Boolean;
+    }
+
+    private static boolean touchesPassword(String sql) {
+        return sql.toLowerCase(Locale.ROOT).contains("password");
+    }
+
+    private static boolean isExplainable(String sql) {
+        String head = sql.stripLeading().toUpperCase(Locale.ROOT);
+        return head.startsWith("SELECT") || head.startsWith("WITH");
+    }
+
+    private static String truncate(String sql) {
+        String flat = sql.replaceAll("\\s+", " ").trim();
+        return flat.length() <= MAX_LOGGED_SQL_CHARS ? flat : flat.substring(0, MAX_LOGGED_SQL_CHARS) + "...";
+    }
+}
@@ -0,0 +1,69 @@
+package com.acadify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps full phase breakdowns for the N slowest requests seen since startup.
+ * Requests faster than the current N-th slowest are rejected with a single volatile
+ * read, so the common case never takes the lock.
+ */
+public class SlowRequestLog {
+
+    private static final int CAPACITY = 20;
+    private static final PriorityQueue<Entry> slowest = new PriorityQueue<>();
+    private static volatile long admissionThresholdNanos = 0;
+
+    private static final class Entry implements Comparable<Entry> {
+        final long totalNanos;
+        final long recordedAt;
+        final String json;
+
+        Entry(long totalNanos, String json) {
+            this.totalNanos = totalNanos;
+            this.recordedAt = System.currentTimeMillis();
+            this.json = json;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Long.compare(totalNanos, other.totalNanos);
+        }
+    }
+
+    /**
+     * Offer a finished request; kept only if it is among the slowest seen
+     */
+    public static void offer(RequestContext context, int status, long totalNanos) {
+        if (totalNanos <= admissionThresholdNanos) return;
+        String json = context.toJson(status, totalNanos);
+        synchronized (slowest) {
+            slowest.add(new Entry(totalNanos, json));
+            if (slowest.size() > CAPACITY) {
+                slowest.poll();
+            }
+            if (slowest.size() == CAPACITY) {
+                admissionThresholdNanos = slowest.peek().totalNanos;
+            }
+        }
+    }
+
+    /**
+     * Build a JSON array of the retained requests, slowest first
+     */
+    public static String toJson() {
+        List<Entry> entries;
+        synchronized (slowest) {
+            entries = new ArrayList<>(slowest);
+        }
+        entries.sort((a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+        JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
+        for (Entry entry : entries) {
+            array.add(JsonBuilder.object()
+                    .add("recorded_at_epoch_ms", entry.recordedAt)
+                    .addRaw("request", entry.json));
+        }
+        return array.build();
+    }
+}
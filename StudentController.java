@@ -2,11 +2,55 @@ package com.acadify;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
 import java.sql.*;
+import java.util.Set;
 
 public class StudentController {
+
+    // Paths handled below; the route table for per-route metrics
+    static final Set<String> ROUTES = Set.of(
+            "/student/report", "/student/semester-performance", "/student/marks-trend",
+            "/student/weak-subjects", "/student/doubt", "/student/doubts", EventBus.STUDENT_PATH,
+            "/student/changes", "/student/activity");
+    // Reads whose result depends only on the student's own marks and doubts
+    private static final Set<String> VERSIONED_READS = Set.of(
+            "/student/report", "/student/semester-performance", "/student/marks-trend",
+            "/student/weak-subjects", "/student/doubts");
+
+    // Row shapes of the list endpoints, selectable with ?fields=
+    static final Projection.Schema SEMESTER_PERFORMANCE_FIELDS = Projection.schema()
+            .field("semester", Projection.Type.INT)
+            .field("total_subjects", Projection.Type.INT)
+            .field("average_marks", Projection.Type.DECIMAL)
+            .field("semester_gpa", Projection.Type.DECIMAL)
+            .field("backlogs", Projection.Type.INT);
+    static final Projection.Schema MARKS_TREND_FIELDS = Projection.schema()
+            .field("subject_id", Projection.Type.INT)
+            .field("subject_name", Projection.Type.STRING)
+            .field("semester", Projection.Type.INT)
+            .field("marks_obtained", Projection.Type.DECIMAL);
+    static final Projection.Schema WEAK_SUBJECT_FIELDS = Projection.schema()
+            .field("subject_id", Projection.Type.INT)
+            .field("subject_name", Projection.Type.STRING)
+            .field("average_marks", Projection.Type.DECIMAL)
+            .field("times_below_threshold", Projection.Type.INT)
+            .field("latest_semester", Projection.Type.INT)
+            .field("latest_marks", Projection.Type.DECIMAL);
+    static final Projection.Schema DOUBT_FIELDS = Projection.schema()
+            .field("doubt_id", Projection.Type.INT)
+            .field("teacher_id", Projection.Type.INT)
+            .field("question", Projection.Type.STRING)
+            .field("answer", Projection.Type.NULLABLE_STRING)
+            .field("status", Projection.Type.STRING)
+            .field("created_at", Projection.Type.TIMESTAMP);
+
     public static void handle(HttpExchange exchange, int userId, int studentId) throws IOException {
         String path = exchange.getRequestURI().getPath();
         String method = exchange.getRequestMethod();
+
+        if (method.equals("GET") && VERSIONED_READS.contains(path)
+                && DataVersions.isNotModified(exchange, DataVersions.studentTag(studentId))) {
+            return;
+        }
         
         switch (path) {
             case "/student/report":
@@ -33,6 +77,13 @@ public class StudentController {
                 if (method.equals("GET")) handleGetDoubts(exchange, studentId);
                 else ResponseUtil.sendMethodNotAllowed(exchange);
                 break;
+            case EventBus.STUDENT_PATH:
+                // Opened before the controller, so only reachable from a batch
+                EventBus.subscribe(exchange, EventBus.student(studentId));
+                break;
+            case "/student/changes":
+                ChangeFeed.handle(exchange, ChangeFeed.Reader.student(userId, studentId));
+                break;
             case "/student/activity":
                 if (method.equals("GET")) handleGetActivity(exchange, userId);
                 else ResponseUtil.sendMethodNotAllowed(exchange);
@@ -73,7 +124,7 @@ public class StudentController {
                 ResponseUtil.sendNotFound(exchange, "No performance data found");
             }
         } catch (SQLException e) {
-            System.err.println("[StudentController] PerformanceReport error: " + e.getMessage());
+            Log.error("StudentController", "PerformanceReport error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve report");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -81,31 +132,27 @@ public class StudentController {
     }
 
     private static void handleSemesterPerformance(HttpExchange exchange, int studentId) throws IOException {
+        Projection projection = Projection.parse(exchange, SEMESTER_PERFORMANCE_FIELDS);
+        if (projection == null) return;
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
             PreparedStatement ps = conn.prepareStatement(
-                    "SELECT * FROM get_semester_performance(?)");
+                    "SELECT " + projection.columns() + " FROM get_semester_performance(?)");
             ps.setInt(1, studentId);
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String semester = JsonBuilder.object()
-                        .add("semester", rs.getInt("semester"))
-                        .add("total_subjects", rs.getInt("total_subjects"))
-                        .add("average_marks", rs.getBigDecimal("average_marks"))
-                        .add("semester_gpa", rs.getBigDecimal("semester_gpa"))
-                        .add("backlogs", rs.getInt("backlogs"))
-                        .build();
-                array.add(semester);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Semester performance retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[StudentController] SemesterPerformance error: " + e.getMessage());
+            Log.error("StudentController", "SemesterPerformance error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve semester performance");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -113,30 +160,27 @@ public class StudentController {
     }
 
     private static void handleSubjectMarksTrend(HttpExchange exchange, int studentId) throws IOException {
+        Projection projection = Projection.parse(exchange, MARKS_TREND_FIELDS);
+        if (projection == null) return;
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
             PreparedStatement ps = conn.prepareStatement(
-                    "SELECT * FROM get_subject_marks_trend(?)");
+                    "SELECT " + projection.columns() + " FROM get_subject_marks_trend(?)");
             ps.setInt(1, studentId);
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String trend = JsonBuilder.object()
-                        .add("subject_id", rs.getInt("subject_id"))
-                        .add("subject_name", rs.getString("subject_name"))
-                        .add("semester", rs.getInt("semester"))
-                        .add("marks_obtained", rs.getBigDecimal("marks_obtained"))
-                        .build();
-                array.add(trend);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Marks trend retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[StudentController] MarksTrend error: " + e.getMessage());
+            Log.error("StudentController", "MarksTrend error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve marks trend");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -144,6 +188,9 @@ public class StudentController {
     }
 
     private static void handleWeakSubjects(HttpExchange exchange, String query, int studentId) throws IOException {
+        Projection projection = Projection.parse(exchange, WEAK_SUBJECT_FIELDS);
+        if (projection == null) return;
+
         double threshold = 50.0;
         if (query != null && query.contains("threshold=")) {
             try {
@@ -160,29 +207,21 @@ public class StudentController {
         try {
             conn = DatabaseConfig.getConnection();
             PreparedStatement ps = conn.prepareStatement(
-                    "SELECT * FROM get_weak_subjects(?, ?)");
+                    "SELECT " + projection.columns() + " FROM get_weak_subjects(?, ?)");
             ps.setInt(1, studentId);
             ps.setDouble(2, threshold);
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String subject = JsonBuilder.object()
-                        .add("subject_id", rs.getInt("subject_id"))
-                        .add("subject_name", rs.getString("subject_name"))
-                        .add("average_marks", rs.getBigDecimal("average_marks"))
-                        .add("times_below_threshold", rs.getInt("times_below_threshold"))
-                        .add("latest_semester", rs.getInt("latest_semester"))
-                        .add("latest_marks", rs.getBigDecimal("latest_marks"))
-                        .build();
-                array.add(subject);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Weak subjects retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[StudentController] WeakSubjects error: " + e.getMessage());
+            Log.error("StudentController", "WeakSubjects error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve weak subjects");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -204,28 +243,40 @@ public class StudentController {
         try {
             conn = DatabaseConfig.getConnection();
             PreparedStatement ps;
+            int teacherId = 0;
             
             if (teacherIdStr != null && !teacherIdStr.isBlank()) {
-                int teacherId = Integer.parseInt(teacherIdStr);
+                teacherId = Integer.parseInt(teacherIdStr);
                 ps = conn.prepareStatement(
-                        "INSERT INTO doubts (student_id, teacher_id, question) VALUES (?, ?, ?) RETURNING doubt_id");
+                        "INSERT INTO doubts (student_id, teacher_id, question) VALUES (?, ?, ?) RETURNING doubt_id, created_at");
                 ps.setInt(1, studentId);
                 ps.setInt(2, teacherId);
                 ps.setString(3, question);
             } else {
                 ps = conn.prepareStatement(
-                        "INSERT INTO doubts (student_id, question) VALUES (?, ?) RETURNING doubt_id");
+                        "INSERT INTO doubts (student_id, question) VALUES (?, ?) RETURNING doubt_id, created_at");
                 ps.setInt(1, studentId);
                 ps.setString(2, question);
             }
             
-            ps.executeUpdate();
-            ResultSet keys = ps.getGeneratedKeys();
-            int doubtId = keys.next() ? keys.getInt("doubt_id") : -1;
+            ResultSet keys = ps.executeQuery();
+            keys.next();
+            int doubtId = keys.getInt("doubt_id");
+            Timestamp createdAt = keys.getTimestamp("created_at");
             keys.close();
             ps.close();
 
             AuthController.logActivity(conn, userId, "DOUBT_CREATED", "doubts", doubtId);
+            DataVersions.studentChanged(studentId);
+            String cursor = ChangeFeed.doubtChanged(doubtId, studentId, teacherId);
+            if (teacherId > 0) {
+                EventBus.publish(EventBus.teacher(teacherId), "doubt_raised", cursor, JsonBuilder.object()
+                        .add("doubt_id", doubtId)
+                        .add("student_id", studentId)
+                        .add("question", question)
+                        .add("created_at", createdAt)
+                        .build());
+            }
 
             String data = JsonBuilder.object()
                     .add("doubt_id", doubtId)
@@ -233,7 +284,7 @@ public class StudentController {
             
             ResponseUtil.sendCreated(exchange, "Doubt raised successfully", data);
         } catch (SQLException e) {
-            System.err.println("[StudentController] RaiseDoubt error: " + e.getMessage());
+            Log.error("StudentController", "RaiseDoubt error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to raise doubt");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -241,33 +292,28 @@ public class StudentController {
     }
 
     private static void handleGetDoubts(HttpExchange exchange, int studentId) throws IOException {
+        Projection projection = Projection.parse(exchange, DOUBT_FIELDS);
+        if (projection == null) return;
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
             PreparedStatement ps = conn.prepareStatement(
-                    "SELECT doubt_id, teacher_id, question, answer, status, created_at " +
+                    "SELECT " + projection.columns() + " " +
                     "FROM doubts WHERE student_id = ? ORDER BY created_at DESC");
             ps.setInt(1, studentId);
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String doubt = JsonBuilder.object()
-                        .add("doubt_id", rs.getInt("doubt_id"))
-                        .add("teacher_id", rs.getInt("teacher_id"))
-                        .add("question", rs.getString("question"))
-                        .addNullable("answer", rs.getString("answer"))
-                        .add("status", rs.getString("status"))
-                        .add("created_at", rs.getTimestamp("created_at"))
-                        .build();
-                array.add(doubt);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Doubts retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[StudentController] GetDoubts error: " + e.getMessage());
+            Log.error("StudentController", "GetDoubts error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve doubts");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -275,31 +321,27 @@ public class StudentController {
     }
 
     private static void handleGetActivity(HttpExchange exchange, int userId) throws IOException {
+        Projection projection = Projection.parse(exchange, AuthController.ACTIVITY_FIELDS);
+        if (projection == null) return;
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
             PreparedStatement ps = conn.prepareStatement(
-                    "SELECT * FROM get_user_activity(?)");
+                    "SELECT " + projection.columns() + " FROM get_user_activity(?)");
             ps.setInt(1, userId);
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String activity = JsonBuilder.object()
-                        .add("log_id", rs.getInt("log_id"))
-                        .add("action", rs.getString("action"))
-                        .add("entity_type", rs.getString("entity_type"))
-                        .add("entity_id", rs.getInt("entity_id"))
-                        .add("created_at", rs.getTimestamp("created_at"))
-                        .build();
-                array.add(activity);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Activity log retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[StudentController] GetActivity error: " + e.getMessage());
+            Log.error("StudentController", "GetActivity error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve activity");
         } finally {
             DatabaseConfig.releaseConnection(conn);
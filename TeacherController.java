@@ -2,8 +2,95 @@ package com.acadify;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
 import java.sql.*;
+import java.util.Set;
 
 public class TeacherController {
+
+    // Paths handled below; the route table for per-route metrics
+    static final Set<String> ROUTES = Set.of(
+            "/teacher/doubts", "/teacher/doubt/answer", "/teacher/marks", "/teacher/class-performance",
+            EventBus.TEACHER_PATH, "/teacher/changes", "/teacher/activity");
+
+    /*
+     * The write paths below authorize, mutate and audit in a single statement, one round
+     * trip each. The audit row is inserted directly rather than through log_activity,
+     * because a procedure cannot be called inside a data-modifying CTE. The final SELECT
+     * reports whether the target row exists and whether this teacher may change it, so
+     * not-found and forbidden can still be told apart; the mutation only runs when both hold.
+     */
+    private static final String ANSWER_DOUBT_SQL =
+            "WITH target AS ("
+                    + " SELECT doubt_id, COALESCE(teacher_id = ?, false) AS allowed"
+                    + " FROM doubts WHERE doubt_id = ? AND status = 'PENDING'"
+                    + "), updated AS ("
+                    + " UPDATE doubts SET answer = ?, status = 'ANSWERED'"
+                    + " WHERE doubt_id = (SELECT doubt_id FROM target WHERE allowed) AND status = 'PENDING'"
+                    + " RETURNING doubt_id, student_id"
+                    + "), logged AS ("
+                    + " INSERT INTO activity_logs (user_id, action, entity_type, entity_id)"
+                    + " SELECT ?, 'DOUBT_ANSWERED', 'doubts', doubt_id FROM updated"
+                    + ") SELECT t.allowed, EXISTS (SELECT 1 FROM updated) AS written,"
+                    + " (SELECT student_id FROM updated) AS student_id FROM target t";
+
+    private static final String ADD_MARKS_SQL =
+            "WITH allowed AS ("
+                    + " SELECT 1 FROM subjects WHERE subject_id = ? AND teacher_id = ?"
+                    + "), inserted AS ("
+                    + " INSERT INTO marks (student_id, subject_id, marks_obtained, semester)"
+                    + " SELECT ?, ?, ?, ? FROM allowed"
+                    + " RETURNING mark_id"
+                    + "), logged AS ("
+                    + " INSERT INTO activity_logs (user_id, action, entity_type, entity_id)"
+                    + " SELECT ?, 'MARKS_ADDED', 'marks', mark_id FROM inserted"
+                    + ") SELECT mark_id FROM inserted";
+
+    private static final String UPDATE_MARKS_SQL =
+            "WITH target AS ("
+                    + " SELECT m.mark_id, COALESCE(s.teacher_id = ?, false) AS allowed"
+                    + " FROM marks m JOIN subjects s ON s.subject_id = m.subject_id WHERE m.mark_id = ?"
+                    + "), updated AS ("
+                    + " UPDATE marks SET marks_obtained = ?"
+                    + " WHERE mark_id = (SELECT mark_id FROM target WHERE allowed)"
+                    + " RETURNING mark_id, student_id, subject_id"
+                    + "), logged AS ("
+                    + " INSERT INTO activity_logs (user_id, action, entity_type, entity_id)"
+                    + " SELECT ?, 'MARKS_UPDATED', 'marks', mark_id FROM updated"
+                    + ") SELECT t.allowed, EXISTS (SELECT 1 FROM updated) AS written,"
+                    + " (SELECT student_id FROM updated) AS student_id,"
+                    + " (SELECT subject_id FROM updated) AS subject_id FROM target t";
+
+    // Row shapes of the list endpoints, selectable with ?fields=
+    static final Projection.Schema PENDING_DOUBT_FIELDS = Projection.schema()
+            .field("doubt_id", Projection.Type.INT)
+            .field("student_name", Projection.Type.STRING)
+            .field("roll_number", Projection.Type.STRING)
+            .field("question", Projection.Type.STRING)
+            .field("created_at", Projection.Type.TIMESTAMP);
+    static final Projection.Schema CLASS_PERFORMANCE_FIELDS = Projection.schema()
+            .field("subject_id", Projection.Type.INT)
+            .field("subject_name", Projection.Type.STRING)
+            .field("semester", Projection.Type.INT)
+            .field("total_students", Projection.Type.INT)
+            .field("average_marks", Projection.Type.DECIMAL)
+            .field("highest_marks", Projection.Type.DECIMAL)
+            .field("lowest_marks", Projection.Type.DECIMAL)
+            .field("pass_count", Projection.Type.INT)
+            .field("fail_count", Projection.Type.INT);
+
+    private enum WriteOutcome {
+        WRITTEN, FORBIDDEN, NOT_FOUND;
+
+        /**
+         * Read the single (allowed, written) row; a row that was allowed but not written
+         * changed concurrently between the snapshot and the update, and is reported as gone
+         */
+        static WriteOutcome of(ResultSet rs) throws SQLException {
+            if (!rs.next()) return NOT_FOUND;
+            if (!rs.getBoolean("allowed")) return FORBIDDEN;
+            return rs.getBoolean("written") ? WRITTEN : NOT_FOUND;
+        }
+    }
+
     public static void handle(HttpExchange exchange, int userId, int teacherId) throws IOException {
         String path = exchange.getRequestURI().getPath();
         String method = exchange.getRequestMethod();
@@ -26,6 +113,13 @@ public class TeacherController {
                 if (method.equals("GET")) handleClassPerformance(exchange, teacherId);
                 else ResponseUtil.sendMethodNotAllowed(exchange);
                 break;
+            case EventBus.TEACHER_PATH:
+                // Opened before the controller, so only reachable from a batch
+                EventBus.subscribe(exchange, EventBus.teacher(teacherId));
+                break;
+            case "/teacher/changes":
+                ChangeFeed.handle(exchange, ChangeFeed.Reader.teacher(userId, teacherId));
+                break;
             case "/teacher/activity":
                 if (method.equals("GET")) handleGetActivity(exchange, userId);
                 else ResponseUtil.sendMethodNotAllowed(exchange);
@@ -36,31 +130,27 @@ public class TeacherController {
     }
 
     private static void handleGetPendingDoubts(HttpExchange exchange, int teacherId) throws IOException {
+        Projection projection = Projection.parse(exchange, PENDING_DOUBT_FIELDS);
+        if (projection == null) return;
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
             PreparedStatement ps = conn.prepareStatement(
-                    "SELECT * FROM get_pending_doubts_by_teacher(?)");
+                    "SELECT " + projection.columns() + " FROM get_pending_doubts_by_teacher(?)");
             ps.setInt(1, teacherId);
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String doubt = JsonBuilder.object()
-                        .add("doubt_id", rs.getInt("doubt_id"))
-                        .add("student_name", rs.getString("student_name"))
-                        .add("roll_number", rs.getString("roll_number"))
-                        .add("question", rs.getString("question"))
-                        .add("created_at", rs.getTimestamp("created_at"))
-                        .build();
-                array.add(doubt);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Pending doubts retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[TeacherController] GetPendingDoubts error: " + e.getMessage());
+            Log.error("TeacherController", "GetPendingDoubts error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve doubts");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -89,38 +179,38 @@ public class TeacherController {
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
-            PreparedStatement check = conn.prepareStatement(
-                    "SELECT teacher_id FROM doubts WHERE doubt_id = ? AND status = 'PENDING'");
-            check.setInt(1, doubtId);
-            ResultSet checkRs = check.executeQuery();
-
-            if (!checkRs.next()) {
-                checkRs.close();
-                check.close();
+            PreparedStatement ps = conn.prepareStatement(ANSWER_DOUBT_SQL);
+            ps.setInt(1, teacherId);
+            ps.setInt(2, doubtId);
+            ps.setString(3, answer);
+            ps.setInt(4, userId);
+            ResultSet rs = ps.executeQuery();
+            WriteOutcome outcome = WriteOutcome.of(rs);
+            if (outcome == WriteOutcome.WRITTEN) {
+                int studentId = rs.getInt("student_id");
+                DataVersions.studentChanged(studentId);
+                String cursor = ChangeFeed.doubtChanged(doubtId, studentId, teacherId);
+                EventBus.publish(EventBus.student(studentId), "doubt_answered", cursor, JsonBuilder.object()
+                        .add("doubt_id", doubtId)
+                        .add("teacher_id", teacherId)
+                        .add("answer", answer)
+                        .add("status", "ANSWERED")
+                        .build());
+            }
+            rs.close();
+            ps.close();
+
+            if (outcome == WriteOutcome.NOT_FOUND) {
                 ResponseUtil.sendNotFound(exchange, "Doubt not found or already answered");
                 return;
             }
-
-            int assignedTeacherId = checkRs.getInt("teacher_id");
-            checkRs.close();
-            check.close();
-
-            if (assignedTeacherId != teacherId) {
+            if (outcome == WriteOutcome.FORBIDDEN) {
                 ResponseUtil.sendForbidden(exchange, "This doubt is not assigned to you");
                 return;
             }
-
-            PreparedStatement ps = conn.prepareStatement(
-                    "UPDATE doubts SET answer = ?, status = 'ANSWERED' WHERE doubt_id = ?");
-            ps.setString(1, answer);
-            ps.setInt(2, doubtId);
-            ps.executeUpdate();
-            ps.close();
-
-            AuthController.logActivity(conn, userId, "DOUBT_ANSWERED", "doubts", doubtId);
             ResponseUtil.sendSuccess(exchange, "Doubt answered successfully");
         } catch (SQLException e) {
-            System.err.println("[TeacherController] AnswerDoubt error: " + e.getMessage());
+            Log.error("TeacherController", "AnswerDoubt error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to answer doubt");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -165,26 +255,28 @@ public class TeacherController {
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
-            
-            if (!isTeacherAssigned(conn, teacherId, subjectId)) {
+            PreparedStatement ps = conn.prepareStatement(ADD_MARKS_SQL);
+            ps.setInt(1, subjectId);
+            ps.setInt(2, teacherId);
+            ps.setInt(3, studentId);
+            ps.setInt(4, subjectId);
+            ps.setDouble(5, marksObtained);
+            ps.setInt(6, semester);
+            ps.setInt(7, userId);
+            ResultSet rs = ps.executeQuery();
+            boolean inserted = rs.next();
+            int markId = inserted ? rs.getInt("mark_id") : -1;
+            rs.close();
+            ps.close();
+
+            // Nothing is inserted unless the subject is assigned to this teacher
+            if (!inserted) {
                 ResponseUtil.sendForbidden(exchange, "You are not assigned to this subject");
                 return;
             }
-
-            PreparedStatement ps = conn.prepareStatement(
-                    "INSERT INTO marks (student_id, subject_id, marks_obtained, semester) VALUES (?, ?, ?, ?) RETURNING mark_id");
-            ps.setInt(1, studentId);
-            ps.setInt(2, subjectId);
-            ps.setDouble(3, marksObtained);
-            ps.setInt(4, semester);
-            ps.executeUpdate();
-            
-            ResultSet keys = ps.getGeneratedKeys();
-            int markId = keys.next() ? keys.getInt("mark_id") : -1;
-            keys.close();
-            ps.close();
-
-            AuthController.logActivity(conn, userId, "MARKS_ADDED", "marks", markId);
+            DataVersions.studentChanged(studentId);
+            DataVersions.subjectChanged(subjectId);
+            ChangeFeed.markChanged(markId, studentId, teacherId);
 
             String data = JsonBuilder.object()
                     .add("mark_id", markId)
@@ -192,7 +284,7 @@ public class TeacherController {
             
             ResponseUtil.sendCreated(exchange, "Marks added successfully", data);
         } catch (SQLException e) {
-            System.err.println("[TeacherController] AddMarks error: " + e.getMessage());
+            Log.error("TeacherController", "AddMarks error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to add marks");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -228,39 +320,32 @@ public class TeacherController {
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
-            
-            PreparedStatement check = conn.prepareStatement(
-                    "SELECT m.subject_id FROM marks m WHERE m.mark_id = ?");
-            check.setInt(1, markId);
-            ResultSet checkRs = check.executeQuery();
-            
-            if (!checkRs.next()) {
-                checkRs.close();
-                check.close();
+            PreparedStatement ps = conn.prepareStatement(UPDATE_MARKS_SQL);
+            ps.setInt(1, teacherId);
+            ps.setInt(2, markId);
+            ps.setDouble(3, marksObtained);
+            ps.setInt(4, userId);
+            ResultSet rs = ps.executeQuery();
+            WriteOutcome outcome = WriteOutcome.of(rs);
+            if (outcome == WriteOutcome.WRITTEN) {
+                DataVersions.studentChanged(rs.getInt("student_id"));
+                DataVersions.subjectChanged(rs.getInt("subject_id"));
+                ChangeFeed.markChanged(markId, rs.getInt("student_id"), teacherId);
+            }
+            rs.close();
+            ps.close();
+
+            if (outcome == WriteOutcome.NOT_FOUND) {
                 ResponseUtil.sendNotFound(exchange, "Mark record not found");
                 return;
             }
-            
-            int subjectId = checkRs.getInt("subject_id");
-            checkRs.close();
-            check.close();
-
-            if (!isTeacherAssigned(conn, teacherId, subjectId)) {
+            if (outcome == WriteOutcome.FORBIDDEN) {
                 ResponseUtil.sendForbidden(exchange, "You are not assigned to this subject");
                 return;
             }
-
-            PreparedStatement ps = conn.prepareStatement(
-                    "UPDATE marks SET marks_obtained = ? WHERE mark_id = ?");
-            ps.setDouble(1, marksObtained);
-            ps.setInt(2, markId);
-            ps.executeUpdate();
-            ps.close();
-
-            AuthController.logActivity(conn, userId, "MARKS_UPDATED", "marks", markId);
             ResponseUtil.sendSuccess(exchange, "Marks updated successfully");
         } catch (SQLException e) {
-            System.err.println("[TeacherController] UpdateMarks error: " + e.getMessage());
+            Log.error("TeacherController", "UpdateMarks error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to update marks");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -268,6 +353,9 @@ public class TeacherController {
     }
 
     private static void handleClassPerformance(HttpExchange exchange, int teacherId) throws IOException {
+        Projection projection = Projection.parse(exchange, CLASS_PERFORMANCE_FIELDS);
+        if (projection == null) return;
+
         String query = exchange.getRequestURI().getQuery();
         String subjectIdStr = RequestUtil.extractQueryParam(query, "subject_id");
         String semesterStr = RequestUtil.extractQueryParam(query, "semester");
@@ -285,6 +373,8 @@ public class TeacherController {
             return;
         }
 
+        if (DataVersions.isNotModified(exchange, DataVersions.subjectTag(subjectId, teacherId))) return;
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
@@ -296,11 +386,11 @@ public class TeacherController {
 
             PreparedStatement ps;
             if (semesterStr != null) {
-                ps = conn.prepareStatement("SELECT * FROM get_class_performance_by_subject(?, ?)");
+                ps = conn.prepareStatement("SELECT " + projection.columns() + " FROM get_class_performance_by_subject(?, ?)");
                 ps.setInt(1, subjectId);
                 ps.setInt(2, Integer.parseInt(semesterStr));
             } else {
-                ps = conn.prepareStatement("SELECT * FROM get_class_performance_by_subject(?)");
+                ps = conn.prepareStatement("SELECT " + projection.columns() + " FROM get_class_performance_by_subject(?)");
                 ps.setInt(1, subjectId);
             }
             
@@ -308,25 +398,14 @@ public class TeacherController {
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String performance = JsonBuilder.object()
-                        .add("subject_id", rs.getInt("subject_id"))
-                        .add("subject_name", rs.getString("subject_name"))
-                        .add("semester", rs.getInt("semester"))
-                        .add("total_students", rs.getInt("total_students"))
-                        .add("average_marks", rs.getBigDecimal("average_marks"))
-                        .add("highest_marks", rs.getBigDecimal("highest_marks"))
-                        .add("lowest_marks", rs.getBigDecimal("lowest_marks"))
-                        .add("pass_count", rs.getInt("pass_count"))
-                        .add("fail_count", rs.getInt("fail_count"))
-                        .build();
-                array.add(performance);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Class performance retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[TeacherController] ClassPerformance error: " + e.getMessage());
+            Log.error("TeacherController", "ClassPerformance error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve class performance");
         } finally {
             DatabaseConfig.releaseConnection(conn);
@@ -334,30 +413,26 @@ public class TeacherController {
     }
 
     private static void handleGetActivity(HttpExchange exchange, int userId) throws IOException {
+        Projection projection = Projection.parse(exchange, AuthController.ACTIVITY_FIELDS);
+        if (projection == null) return;
+
         Connection conn = null;
         try {
             conn = DatabaseConfig.getConnection();
-            PreparedStatement ps = conn.prepareStatement("SELECT * FROM get_user_activity(?)");
+            PreparedStatement ps = conn.prepareStatement("SELECT " + projection.columns() + " FROM get_user_activity(?)");
             ps.setInt(1, userId);
             ResultSet rs = ps.executeQuery();
 
             JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
             while (rs.next()) {
-                String activity = JsonBuilder.object()
-                        .add("log_id", rs.getInt("log_id"))
-                        .add("action", rs.getString("action"))
-                        .add("entity_type", rs.getString("entity_type"))
-                        .add("entity_id", rs.getInt("entity_id"))
-                        .add("created_at", rs.getTimestamp("created_at"))
-                        .build();
-                array.add(activity);
+                array.add(projection.row(rs));
             }
             
             rs.close();
             ps.close();
             ResponseUtil.sendSuccess(exchange, "Activity log retrieved successfully", array.build());
         } catch (SQLException e) {
-            System.err.println("[TeacherController] GetActivity error: " + e.getMessage());
+            Log.error("TeacherController", "GetActivity error", "error", e.getMessage());
             ResponseUtil.sendServerError(exchange, "Failed to retrieve activity");
         } finally {
             DatabaseConfig.releaseConnection(conn);
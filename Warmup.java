@@ -0,0 +1,218 @@
+package com.acadify;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup warm-up, run after the listener is up but before the node reports ready.
+ * Every pooled connection first executes the hot read statements until the driver has
+ * server-side prepared them, which also caches the plans inside the stored functions
+ * for that session. The read handlers are then driven with synthetic requests through
+ * LocalExchange, so the JIT sees the real routing, JDBC and serialization paths. Only
+ * GET routes are exercised, so warm-up never writes to the database.
+ */
+public class Warmup {
+
+    private static final AppConfig.Setting<Integer> ROUNDS = AppConfig.intSetting("warmup.rounds", 200, 0, 100_000, false);
+    private static final AppConfig.Setting<Integer> MAX_SECONDS = AppConfig.intSetting("warmup.max.seconds", 60, 0, 3600, false);
+
+    /**
+     * Real ids for the synthetic requests, so handlers take their success paths;
+     * zero where the database has no such row
+     */
+    private static final class Fixture {
+        String studentEmail = "warmup@acadify.invalid";
+        int studentUserId;
+        int studentId;
+        int teacherUserId;
+        int teacherId;
+        int subjectId;
+        int semester = 1;
+        int adminUserId;
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement ps, Fixture f) throws SQLException;
+    }
+
+    private static final class HotStatement {
+        final String sql;
+        final Binder binder;
+
+        HotStatement(String sql, Binder binder) {
+            this.sql = sql;
+            this.binder = binder;
+        }
+    }
+
+    // SQL text must match the controllers exactly: the driver caches prepared statements per connection by text.
+    // Projected reads are warmed with every field, the text a request without ?fields= prepares
+    private static final List<HotStatement> HOT_STATEMENTS = List.of(
+            new HotStatement("SELECT user_id, role, password FROM users WHERE email = ?",
+                    (ps, f) -> ps.setString(1, f.studentEmail)),
+            new HotStatement("SELECT 1 FROM users WHERE email = ?",
+                    (ps, f) -> ps.setString(1, f.studentEmail)),
+            new HotStatement("SELECT student_id FROM students WHERE user_id = ?",
+                    (ps, f) -> ps.setInt(1, f.studentUserId)),
+            new HotStatement("SELECT teacher_id FROM teachers WHERE user_id = ?",
+                    (ps, f) -> ps.setInt(1, f.teacherUserId)),
+            new HotStatement("SELECT * FROM get_student_performance_report(?)",
+                    (ps, f) -> ps.setInt(1, f.studentId)),
+            new HotStatement(select(StudentController.SEMESTER_PERFORMANCE_FIELDS, "get_semester_performance(?)"),
+                    (ps, f) -> ps.setInt(1, f.studentId)),
+            new HotStatement(select(StudentController.MARKS_TREND_FIELDS, "get_subject_marks_trend(?)"),
+                    (ps, f) -> ps.setInt(1, f.studentId)),
+            new HotStatement(select(StudentController.WEAK_SUBJECT_FIELDS, "get_weak_subjects(?, ?)"),
+                    (ps, f) -> {
+                        ps.setInt(1, f.studentId);
+                        ps.setDouble(2, 50.0);
+                    }),
+            new HotStatement(select(StudentController.DOUBT_FIELDS, "doubts WHERE student_id = ? ORDER BY created_at DESC"),
+                    (ps, f) -> ps.setInt(1, f.studentId)),
+            new HotStatement(select(AuthController.ACTIVITY_FIELDS, "get_user_activity(?)"),
+                    (ps, f) -> ps.setInt(1, f.studentUserId)),
+            new HotStatement(select(TeacherController.PENDING_DOUBT_FIELDS, "get_pending_doubts_by_teacher(?)"),
+                    (ps, f) -> ps.setInt(1, f.teacherId)),
+            new HotStatement("SELECT 1 FROM subjects WHERE subject_id = ? AND teacher_id = ?",
+                    (ps, f) -> {
+                        ps.setInt(1, f.subjectId);
+                        ps.setInt(2, f.teacherId);
+                    }),
+            new HotStatement(select(TeacherController.CLASS_PERFORMANCE_FIELDS, "get_class_performance_by_subject(?, ?)"),
+                    (ps, f) -> {
+                        ps.setInt(1, f.subjectId);
+                        ps.setInt(2, f.semester);
+                    }));
+
+    /**
+     * The statement a projected read prepares when all of its schema's fields are selected
+     */
+    private static String select(Projection.Schema schema, String from) {
+        return "SELECT " + Projection.all(schema).columns() + " FROM " + from;
+    }
+
+    /**
+     * Run the warm-up; failures are logged and never prevent startup
+     */
+    public static void run() {
+        long start = System.nanoTime();
+        try {
+            Fixture fixture = loadFixture();
+            int prepared = DatabaseConfig.forEachPooledConnection(conn -> prepareHotStatements(conn, fixture));
+            int requests = driveHandlers(fixture, start);
+            Log.info("Warmup", "Warm-up complete", "connections_prepared", prepared,
+                    "statements", HOT_STATEMENTS.size(), "requests", requests,
+                    "elapsed_ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (SQLException | RuntimeException e) {
+            Log.warn("Warmup", "Warm-up aborted", "error", e.getMessage(),
+                    "elapsed_ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private static Fixture loadFixture() throws SQLException {
+        Fixture f = new Fixture();
+        Connection conn = null;
+        try {
+            conn = DatabaseConfig.getConnection();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT u.email, s.user_id, s.student_id FROM students s JOIN users u ON u.user_id = s.user_id LIMIT 1");
+                 ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    f.studentEmail = rs.getString(1);
+                    f.studentUserId = rs.getInt(2);
+                    f.studentId = rs.getInt(3);
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT t.user_id, t.teacher_id, sub.subject_id, sub.semester FROM teachers t "
+                            + "JOIN subjects sub ON sub.teacher_id = t.teacher_id LIMIT 1");
+                 ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    f.teacherUserId = rs.getInt(1);
+                    f.teacherId = rs.getInt(2);
+                    f.subjectId = rs.getInt(3);
+                    f.semester = rs.getInt(4);
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement("SELECT user_id FROM admins LIMIT 1");
+                 ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) f.adminUserId = rs.getInt(1);
+            }
+        } finally {
+            DatabaseConfig.releaseConnection(conn);
+        }
+        return f;
+    }
+
+    private static void prepareHotStatements(Connection conn, Fixture fixture) {
+        int executions = Math.max(1, DatabaseConfig.getPrepareThreshold());
+        for (HotStatement statement : HOT_STATEMENTS) {
+            try {
+                for (int i = 0; i < executions; i++) {
+                    try (PreparedStatement ps = conn.prepareStatement(statement.sql)) {
+                        statement.binder.bind(ps, fixture);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                // drain so the full result path runs
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                Log.debug("Warmup", "Statement warm-up failed", "sql", statement.sql, "error", e.getMessage());
+            }
+        }
+    }
+
+    private static int driveHandlers(Fixture f, long start) {
+        String token = f.studentUserId == 0 ? null : SessionUtil.createSession(String.valueOf(f.studentUserId), "STUDENT");
+        String classPerformance = "/teacher/class-performance?subject_id=" + f.subjectId + "&semester=" + f.semester;
+        int requests = 0;
+        try {
+            // Whole-table aggregates are expensive; one pass is enough to load their code and plans
+            for (String path : new String[]{"/admin/backlogs", "/admin/high-risk", "/admin/stream-performance"}) {
+                requests += send(path, ex -> AdminController.handle(ex, f.adminUserId));
+            }
+            long maxNanos = TimeUnit.SECONDS.toNanos(MAX_SECONDS.get());
+            for (int round = 0; round < ROUNDS.get() && System.nanoTime() - start < maxNanos; round++) {
+                if (token != null) {
+                    LocalExchange probe = new LocalExchange("GET", "/student/report", null);
+                    probe.getRequestHeaders().set("Authorization", "Bearer " + token);
+                    SessionUtil.extractAndValidate(probe);
+                }
+                requests += send("/student/report", ex -> StudentController.handle(ex, f.studentUserId, f.studentId));
+                requests += send("/student/semester-performance", ex -> StudentController.handle(ex, f.studentUserId, f.studentId));
+                requests += send("/student/marks-trend", ex -> StudentController.handle(ex, f.studentUserId, f.studentId));
+                requests += send("/student/weak-subjects", ex -> StudentController.handle(ex, f.studentUserId, f.studentId));
+                requests += send("/student/doubts", ex -> StudentController.handle(ex, f.studentUserId, f.studentId));
+                requests += send("/student/activity", ex -> StudentController.handle(ex, f.studentUserId, f.studentId));
+                requests += send("/teacher/doubts", ex -> TeacherController.handle(ex, f.teacherUserId, f.teacherId));
+                requests += send(classPerformance, ex -> TeacherController.handle(ex, f.teacherUserId, f.teacherId));
+                requests += send("/teacher/activity", ex -> TeacherController.handle(ex, f.teacherUserId, f.teacherId));
+                requests += send("/admin/top-performers?limit=10", ex -> AdminController.handle(ex, f.adminUserId));
+                requests += send("/admin/lowest-performers?limit=10", ex -> AdminController.handle(ex, f.adminUserId));
+                requests += send("/admin/active-term", ex -> AdminController.handle(ex, f.adminUserId));
+            }
+        } finally {
+            if (token != null) SessionUtil.invalidate(token);
+        }
+        return requests;
+    }
+
+    private interface Handler {
+        void handle(LocalExchange exchange) throws Exception;
+    }
+
+    private static int send(String pathAndQuery, Handler handler) {
+        try {
+            handler.handle(new LocalExchange("GET", pathAndQuery, null));
+        } catch (Exception e) {
+            Log.debug("Warmup", "Warm-up request failed", "path", pathAndQuery, "error", e.getMessage());
+        }
+        return 1;
+    }
+}
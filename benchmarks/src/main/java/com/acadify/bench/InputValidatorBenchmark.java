@@ -0,0 +1,87 @@
+package com.acadify.bench;
+
+import com.acadify.InputValidator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Validation of the fields carried by login, registration, doubt and marks requests.
+ * Methods that reject their input return the exception so its cost is measured too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InputValidatorBenchmark {
+
+    private final String email = "Ananya.Krishnamurthy@Students.Acadify.edu";
+    private final String password = "c0rrect-h0rse-battery";
+    private final String name = "Ananya Krishnamurthy";
+    private final String question = Payloads.DOUBT_QUESTION;
+    private final String marks = "87.5";
+    private final String id = "4211";
+
+    @Benchmark
+    public Object validateEmail() {
+        try {
+            return InputValidator.validateEmail(email);
+        } catch (InputValidator.ValidationException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object validatePassword() {
+        try {
+            return InputValidator.validatePassword(password);
+        } catch (InputValidator.ValidationException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object validateName() {
+        try {
+            return InputValidator.validateName(name);
+        } catch (InputValidator.ValidationException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object validateText() {
+        try {
+            return InputValidator.validateText(question, "Question");
+        } catch (InputValidator.ValidationException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object validateDecimal() {
+        try {
+            return InputValidator.validateDecimal(marks, "Marks", 0, 100);
+        } catch (InputValidator.ValidationException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object validateId() {
+        try {
+            return InputValidator.validateId(id, "Student ID");
+        } catch (InputValidator.ValidationException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.acadify.bench;
+
+import com.acadify.JsonBuilder;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JsonBuilder cost for the shapes controllers actually emit: one performance-report
+ * object, and arrays of activity/performer rows at typical page sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBuilderBenchmark {
+
+    @Param({"20", "200"})
+    public int rows;
+
+    private String[] names;
+    private String[] descriptions;
+    private Timestamp timestamp;
+
+    @Setup
+    public void setup() {
+        names = new String[rows];
+        descriptions = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            names[i] = Payloads.studentName(i);
+            descriptions[i] = "Updated marks for subject " + (i % 12) + " (" + Payloads.subjectName(i) + ")";
+        }
+        timestamp = new Timestamp(1_760_000_000_000L);
+    }
+
+    @Benchmark
+    public String performanceReportObject() {
+        return JsonBuilder.object()
+                .add("student_id", 4211)
+                .add("student_name", "Ananya Krishnamurthy")
+                .add("roll_number", "CSE2023-0417")
+                .add("stream", "Computer Science")
+                .add("current_cgpa", new BigDecimal("8.47"))
+                .add("total_subjects", 24)
+                .add("overall_average", new BigDecimal("81.35"))
+                .add("total_backlogs", 1)
+                .add("semesters_completed", 4)
+                .build();
+    }
+
+    @Benchmark
+    public String activityArray() {
+        JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
+        for (int i = 0; i < rows; i++) {
+            array.add(JsonBuilder.object()
+                    .add("log_id", 100_000 + i)
+                    .add("action", "UPDATE_MARKS")
+                    .add("description", descriptions[i])
+                    .add("created_at", timestamp));
+        }
+        return array.build();
+    }
+
+    @Benchmark
+    public String topPerformersArray() {
+        JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
+        for (int i = 0; i < rows; i++) {
+            array.add(JsonBuilder.object()
+                    .add("rank", i + 1)
+                    .add("student_id", 4000 + i)
+                    .add("student_name", names[i])
+                    .add("roll_number", "CSE2023-" + (1000 + i))
+                    .add("stream", "Computer Science")
+                    .add("cgpa", 9.8 - i * 0.01));
+        }
+        return array.build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.acadify.bench;
+
+import com.acadify.PBKDF2Util;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PBKDF2 cost per login and per registration at the configured iteration count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordBenchmark {
+
+    private static final String PASSWORD = "c0rrect-h0rse-battery";
+
+    private String storedHash;
+
+    @Setup
+    public void setup() {
+        storedHash = PBKDF2Util.hashPassword(PASSWORD);
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return PBKDF2Util.hashPassword(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verifyPasswordMatch() {
+        return PBKDF2Util.verifyPassword(PASSWORD, storedHash);
+    }
+
+    @Benchmark
+    public boolean verifyPasswordMismatch() {
+        return PBKDF2Util.verifyPassword("wrong-h0rse-battery", storedHash);
+    }
+}
@@ -0,0 +1,34 @@
+package com.acadify.bench;
+
+/**
+ * Realistic field values shared by the benchmarks.
+ */
+final class Payloads {
+
+    private static final String[] FIRST = {"Ananya", "Rohan", "Meera", "Vikram", "Sara", "Arjun", "Kavya", "Ishaan"};
+    private static final String[] LAST = {"Krishnamurthy", "Iyer", "Fernandes", "Chatterjee", "Menon", "Rao", "Kapoor", "Das"};
+    private static final String[] SUBJECTS = {"Data Structures", "Operating Systems", "Database Management Systems",
+            "Computer Networks", "Discrete Mathematics", "Theory of Computation"};
+
+    private Payloads() {
+    }
+
+    static String studentName(int i) {
+        return FIRST[i % FIRST.length] + " " + LAST[(i / FIRST.length) % LAST.length];
+    }
+
+    static String subjectName(int i) {
+        return SUBJECTS[i % SUBJECTS.length];
+    }
+
+    static final String LOGIN_BODY = "{\"email\":\"ananya.krishnamurthy@students.acadify.edu\",\"password\":\"c0rrect-h0rse-battery\"}";
+
+    static final String CREATE_STUDENT_BODY = "{\"email\":\"rohan.iyer@students.acadify.edu\",\"password\":\"Sup3r-secret-pass\","
+            + "\"name\":\"Rohan Iyer\",\"age\":\"19\",\"roll_number\":\"CSE2024-0133\",\"stream\":\"Computer Science\"}";
+
+    static final String DOUBT_QUESTION = "Could you explain why the amortized cost of inserting into a dynamic array is "
+            + "constant, even though resizing copies every element? I followed the lecture but the accounting method "
+            + "example with the credits on each slot did not make sense to me when the array doubles twice in a row.";
+
+    static final String ACTIVITY_QUERY = "limit=50&offset=100&action=UPDATE_MARKS&from=2025-01-01&to=2025-06-30";
+}
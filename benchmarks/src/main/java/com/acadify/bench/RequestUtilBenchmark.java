@@ -0,0 +1,55 @@
+package com.acadify.bench;
+
+import com.acadify.RequestUtil;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Request body and query string parsing as done at the top of every controller.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestUtilBenchmark {
+
+    private final String loginBody = Payloads.LOGIN_BODY;
+    private final String createStudentBody = Payloads.CREATE_STUDENT_BODY;
+    private final String doubtBody = "{\"teacher_id\":\"17\",\"question\":\"" + Payloads.DOUBT_QUESTION + "\"}";
+    private final String query = Payloads.ACTIVITY_QUERY;
+
+    @Benchmark
+    public String[] parseLogin() {
+        return RequestUtil.parseJson(loginBody, "email", "password");
+    }
+
+    @Benchmark
+    public String[] parseCreateStudent() {
+        return RequestUtil.parseJson(createStudentBody, "email", "password", "name", "age", "roll_number", "stream");
+    }
+
+    @Benchmark
+    public String[] parseRaiseDoubt() {
+        return RequestUtil.parseJson(doubtBody, "teacher_id", "question");
+    }
+
+    @Benchmark
+    public String extractQueryParamLast() {
+        return RequestUtil.extractQueryParam(query, "to");
+    }
+
+    @Benchmark
+    public String extractQueryParamMissing() {
+        return RequestUtil.extractQueryParam(query, "semester");
+    }
+}
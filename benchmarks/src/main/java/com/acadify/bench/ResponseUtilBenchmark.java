@@ -0,0 +1,65 @@
+package com.acadify.bench;
+
+import com.acadify.JsonBuilder;
+import com.acadify.ResponseUtil;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Envelope creation, UTF-8 encoding and header handling in ResponseUtil, writing to an
+ * exchange that discards the bytes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseUtilBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int rows;
+
+    private String data;
+    private StubExchange exchange;
+
+    @Setup
+    public void setup() {
+        JsonBuilder.JsonArrayBuilder array = JsonBuilder.array();
+        for (int i = 0; i < rows; i++) {
+            array.add(JsonBuilder.object()
+                    .add("subject_id", i)
+                    .add("subject_name", Payloads.subjectName(i))
+                    .add("marks_obtained", 40 + i % 60)
+                    .add("max_marks", 100)
+                    .add("grade", "A"));
+        }
+        data = array.build();
+        exchange = new StubExchange("GET", "/student/weak-subjects", null);
+    }
+
+    @Benchmark
+    public long sendSuccess() throws IOException {
+        exchange.reset();
+        ResponseUtil.sendSuccess(exchange, "Weak subjects retrieved successfully", data);
+        return exchange.getBytesWritten();
+    }
+
+    @Benchmark
+    public long sendError() throws IOException {
+        exchange.reset();
+        ResponseUtil.sendBadRequest(exchange, "Marks must be between 0 and 100");
+        return exchange.getBytesWritten();
+    }
+}
@@ -0,0 +1,247 @@
+package com.acadify.loadtest;
+
+import com.acadify.loadtest.PlannedRequest.Role;
+import com.acadify.loadtest.PlannedRequest.Session;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * End-to-end load test: prepare a database, boot the server against it, log in a pool
+ * of synthetic users, then drive either a generated open-loop traffic mix ({@code run})
+ * or a recorded request log ({@code replay}), and print per-route throughput and latency.
+ *
+ * <pre>
+ * java -jar loadtest/target/loadtest.jar run --embedded --students 5000 --rate 300 --duration 120
+ * java -jar loadtest/target/loadtest.jar replay --jdbc-url jdbc:postgresql://localhost/acadify_test \
+ *      --db-user acadify --db-password secret --log requests.tsv --speed 4
+ * </pre>
+ */
+public final class LoadTestMain {
+
+    private static final String USAGE = String.join("\n",
+            "usage: loadtest.jar run|replay [options]",
+            "",
+            "database (one of):",
+            "  --embedded                    start a throwaway embedded PostgreSQL",
+            "  --jdbc-url URL --db-user U --db-password P   use an existing test database",
+            "  --sql-dir DIR                 where schema.sql and procedures.sql live (default .)",
+            "  --no-seed                     keep existing data instead of recreating it",
+            "",
+            "institution size (when seeding):",
+            "  --students N (2000)  --teachers N (60)  --admins N (3)  --subjects-per-semester N (6)",
+            "",
+            "server:",
+            "  --base-url URL                (default http://localhost:8080)",
+            "  --no-server                   drive an already running server at --base-url",
+            "  --server-jvm-opts \"OPTS\"      JVM options for the server process",
+            "  --server-env KEY=VALUE        extra server environment, repeatable",
+            "",
+            "traffic:",
+            "  --sessions N (200)            logged-in students; teachers and admins are capped by their counts",
+            "  --duration S (60)  --warmup S (10)  --max-outstanding N (2000)",
+            "  run:    --rate R (100 req/s)  --mix student=1,teacher=1,admin=1,auth=1  --seed N  --record FILE",
+            "  replay: --log FILE  --speed N (1.0)");
+
+    private LoadTestMain() {
+    }
+
+    public static void main(String[] argv) throws Exception {
+        if (argv.length == 0 || !(argv[0].equals("run") || argv[0].equals("replay"))) {
+            System.out.println(USAGE);
+            System.exit(2);
+        }
+        String mode = argv[0];
+        Options options = new Options(Arrays.copyOfRange(argv, 1, argv.length));
+
+        URI base = URI.create(options.get("--base-url", "http://localhost:8080"));
+        int students = options.getInt("--students", 2000);
+        int teachers = options.getInt("--teachers", 60);
+        int admins = options.getInt("--admins", 3);
+
+        try (TestDatabase db = openDatabase(options)) {
+            if (!options.has("--no-seed")) {
+                db.loadSchema(Paths.get(options.get("--sql-dir", ".")));
+                try (Connection conn = db.connect()) {
+                    new SyntheticInstitution(students, teachers, admins, options.getInt("--subjects-per-semester", 6))
+                            .generate(conn);
+                }
+            }
+
+            ServerProcess server = null;
+            try {
+                if (!options.has("--no-server")) {
+                    List<String> jvmOptions = options.has("--server-jvm-opts")
+                            ? Arrays.asList(options.get("--server-jvm-opts", "").trim().split("\\s+")) : List.of();
+                    Map<String, String> env = new HashMap<>();
+                    for (String kv : options.getAll("--server-env")) {
+                        int eq = kv.indexOf('=');
+                        env.put(kv.substring(0, eq), kv.substring(eq + 1));
+                    }
+                    server = ServerProcess.start(db, jvmOptions, env, Paths.get("loadtest-server.log"));
+                    server.awaitReady(base, 180);
+                }
+
+                Map<Role, List<Session>> sessions = login(db, base, options.getInt("--sessions", 200), students, teachers, admins);
+                List<Integer> teacherIds;
+                try (Connection conn = db.connect()) {
+                    teacherIds = SyntheticInstitution.loadTeacherIds(conn);
+                }
+
+                Schedule schedule;
+                BufferedWriter recorder = null;
+                if (mode.equals("run")) {
+                    schedule = new TrafficMix(options.getDouble("--rate", 100), sessions, teacherIds, students,
+                            TrafficMix.parseRoleScale(options.get("--mix", null)), options.getInt("--seed", 1));
+                    if (options.has("--record")) {
+                        recorder = Files.newBufferedWriter(Paths.get(options.get("--record", null)), StandardCharsets.UTF_8);
+                        recorder.write("# timestamp_ms\tmethod\tpath\tbody\n");
+                    }
+                } else {
+                    Path log = Paths.get(options.require("--log"));
+                    schedule = new ReplayLog(log, options.getDouble("--speed", 1.0), sessions);
+                }
+
+                Duration duration = Duration.ofSeconds(options.getInt("--duration", 60));
+                Duration warmup = Duration.ofSeconds(options.getInt("--warmup", 10));
+                RouteStats stats = new RouteStats();
+                System.out.println("Driving load for " + duration.getSeconds() + "s (first " + warmup.getSeconds()
+                        + "s not recorded)");
+                try {
+                    new OpenLoopDriver(base, options.getInt("--max-outstanding", 2000), stats)
+                            .run(schedule, duration, warmup, recorder);
+                } finally {
+                    if (recorder != null) recorder.close();
+                }
+                System.out.println();
+                System.out.print(stats.report(Math.max(1, duration.minus(warmup).toMillis() / 1000.0)));
+            } finally {
+                if (server != null) server.close();
+            }
+        }
+    }
+
+    private static TestDatabase openDatabase(Options options) throws IOException {
+        if (options.has("--embedded")) {
+            System.out.println("Starting embedded PostgreSQL");
+            return TestDatabase.embedded();
+        }
+        return TestDatabase.external(options.require("--jdbc-url"), options.require("--db-user"),
+                options.require("--db-password"));
+    }
+
+    /**
+     * Log in the session pools through the real /auth/login route, a few at a time
+     */
+    private static Map<Role, List<Session>> login(TestDatabase db, URI base, int studentSessions,
+                                                  int students, int teachers, int admins) throws Exception {
+        Map<String, SyntheticInstitution.TeacherFixture> fixtures;
+        try (Connection conn = db.connect()) {
+            fixtures = SyntheticInstitution.loadTeacherFixtures(conn, teachers);
+        }
+        LoopbackClient client = new LoopbackClient(base);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        Map<Role, List<Future<Session>>> pending = new EnumMap<>(Role.class);
+        try {
+            for (int i = 1; i <= Math.min(studentSessions, students); i++) {
+                String email = SyntheticInstitution.studentEmail(i);
+                pending.computeIfAbsent(Role.STUDENT, r -> new ArrayList<>()).add(pool.submit(() -> login(client, email, null)));
+            }
+            for (Map.Entry<String, SyntheticInstitution.TeacherFixture> entry : fixtures.entrySet()) {
+                if (entry.getValue().subjects.isEmpty()) continue;
+                pending.computeIfAbsent(Role.TEACHER, r -> new ArrayList<>())
+                        .add(pool.submit(() -> login(client, entry.getKey(), entry.getValue())));
+            }
+            for (int i = 1; i <= admins; i++) {
+                String email = SyntheticInstitution.adminEmail(i);
+                pending.computeIfAbsent(Role.ADMIN, r -> new ArrayList<>()).add(pool.submit(() -> login(client, email, null)));
+            }
+            Map<Role, List<Session>> sessions = new EnumMap<>(Role.class);
+            for (Map.Entry<Role, List<Future<Session>>> entry : pending.entrySet()) {
+                List<Session> list = new ArrayList<>();
+                for (Future<Session> future : entry.getValue()) {
+                    list.add(future.get());
+                }
+                sessions.put(entry.getKey(), Collections.unmodifiableList(list));
+                System.out.println("Logged in " + list.size() + " " + entry.getKey().name().toLowerCase() + " sessions");
+            }
+            return sessions;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Session login(LoopbackClient client, String email, SyntheticInstitution.TeacherFixture fixture)
+            throws IOException {
+        LoopbackClient.Response response = client.post("/auth/login",
+                "{\"email\":\"" + email + "\",\"password\":\"" + SyntheticInstitution.PASSWORD + "\"}");
+        String token = response.token();
+        if (response.status != 200 || token == null) {
+            throw new IOException("Login failed for " + email + ": HTTP " + response.status + " " + response.body);
+        }
+        return new Session(email, token, fixture);
+    }
+
+    /**
+     * Minimal --key value parser; flags without a value are recorded as present
+     */
+    private static final class Options {
+        private final Map<String, List<String>> values = new HashMap<>();
+
+        Options(String[] args) {
+            for (int i = 0; i < args.length; i++) {
+                String key = args[i];
+                if (!key.startsWith("--")) {
+                    throw new IllegalArgumentException("Unexpected argument: " + key + "\n\n" + USAGE);
+                }
+                String value = i + 1 < args.length && !args[i + 1].startsWith("--") ? args[++i] : "";
+                values.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+            }
+        }
+
+        boolean has(String key) {
+            return values.containsKey(key);
+        }
+
+        String get(String key, String defaultValue) {
+            List<String> list = values.get(key);
+            return list == null ? defaultValue : list.get(list.size() - 1);
+        }
+
+        List<String> getAll(String key) {
+            return values.getOrDefault(key, List.of());
+        }
+
+        String require(String key) {
+            String value = get(key, null);
+            if (value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("Missing " + key + "\n\n" + USAGE);
+            }
+            return value;
+        }
+
+        int getInt(String key, int defaultValue) {
+            return has(key) ? Integer.parseInt(require(key)) : defaultValue;
+        }
+
+        double getDouble(String key, double defaultValue) {
+            return has(key) ? Double.parseDouble(require(key)) : defaultValue;
+        }
+    }
+}
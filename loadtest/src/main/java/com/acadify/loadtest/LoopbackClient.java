@@ -0,0 +1,86 @@
+package com.acadify.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal one-shot HTTP/1.1 client for /auth requests. When the server is local, each
+ * connection is bound to a different 127.x.y.z source address, so the per-IP login
+ * limiter sees a population of clients instead of one address. Without that, the harness
+ * would only measure 429s.
+ * (java.net.http.HttpClient cannot choose a local address before JDK 19.)
+ */
+final class LoopbackClient {
+
+    private static final Pattern STATUS = Pattern.compile("^HTTP/1\\.[01] (\\d{3})");
+    private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+
+    private final String host;
+    private final int port;
+    private final boolean spreadSourceAddresses;
+    private final AtomicInteger nextSource = new AtomicInteger();
+
+    LoopbackClient(URI base) {
+        this.host = base.getHost();
+        this.port = base.getPort() == -1 ? 80 : base.getPort();
+        this.spreadSourceAddresses = host.equals("localhost") || host.startsWith("127.");
+    }
+
+    static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        String token() {
+            Matcher m = TOKEN.matcher(body);
+            return m.find() ? m.group(1) : null;
+        }
+    }
+
+    Response post(String path, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        try (Socket socket = new Socket()) {
+            if (spreadSourceAddresses) {
+                int n = nextSource.getAndIncrement() & 0xFFFF;
+                socket.bind(new InetSocketAddress(InetAddress.getByAddress(
+                        new byte[]{127, 1, (byte) (n >>> 8), (byte) (1 + (n & 0xFF) % 254)}), 0));
+            }
+            socket.connect(new InetSocketAddress(host, port), 5000);
+            socket.setSoTimeout(30_000);
+            OutputStream out = socket.getOutputStream();
+            String head = "POST " + path + " HTTP/1.1\r\n"
+                    + "Host: " + host + ":" + port + "\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "Content-Length: " + body.length + "\r\n"
+                    + "Connection: close\r\n\r\n";
+            out.write(head.getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            in.transferTo(buffer);
+            String response = buffer.toString(StandardCharsets.UTF_8);
+            Matcher m = STATUS.matcher(response);
+            if (!m.find()) {
+                throw new IOException("Malformed response from " + path);
+            }
+            int split = response.indexOf("\r\n\r\n");
+            return new Response(Integer.parseInt(m.group(1)), split < 0 ? "" : response.substring(split + 4));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.acadify.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends a schedule of requests at their planned times, whether or not earlier requests
+ * have completed. A semaphore caps the number outstanding, so a dead server cannot make
+ * the harness spawn unbounded threads. Requests beyond the cap are counted as dropped,
+ * never delayed.
+ */
+final class OpenLoopDriver {
+
+    private final URI base;
+    private final HttpClient client;
+    private final LoopbackClient authClient;
+    private final RouteStats stats;
+    private final int maxOutstanding;
+    private final Semaphore outstanding;
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "loadtest-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    OpenLoopDriver(URI base, int maxOutstanding, RouteStats stats) {
+        this.base = base;
+        this.stats = stats;
+        this.maxOutstanding = maxOutstanding;
+        this.outstanding = new Semaphore(maxOutstanding);
+        this.authClient = new LoopbackClient(base);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    /**
+     * Drive the schedule until it is exhausted or the duration passes. Requests due during
+     * the warm-up are sent but not recorded. If a recorder is given, every sent request is
+     * appended to it in replay-log format.
+     */
+    void run(Schedule schedule, Duration duration, Duration warmup, BufferedWriter recorder) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long startEpochMs = System.currentTimeMillis();
+        long end = start + duration.toNanos();
+        long recordFrom = start + warmup.toNanos();
+        long nextProgress = start + TimeUnit.SECONDS.toNanos(10);
+        PlannedRequest request;
+        while ((request = schedule.next()) != null) {
+            long due = start + request.offsetNanos;
+            if (due - end > 0) break;
+            long now;
+            while ((now = System.nanoTime()) - due < 0) {
+                LockSupport.parkNanos(Math.min(due - now, 1_000_000L));
+            }
+            if (now - nextProgress >= 0) {
+                System.out.printf("  t=%3ds completed=%d outstanding=%d%n", TimeUnit.NANOSECONDS.toSeconds(now - start),
+                        stats.completed(), inFlight());
+                nextProgress += TimeUnit.SECONDS.toNanos(10);
+            }
+            if (recorder != null) {
+                ReplayLog.write(recorder, startEpochMs, request);
+            }
+            boolean measured = due - recordFrom >= 0;
+            if (!outstanding.tryAcquire()) {
+                if (measured) stats.recordDropped(request.route());
+                continue;
+            }
+            PlannedRequest planned = request;
+            workers.execute(() -> {
+                try {
+                    send(planned, due, measured);
+                } finally {
+                    outstanding.release();
+                }
+            });
+        }
+        if (!outstanding.tryAcquire(maxOutstanding, 60, TimeUnit.SECONDS)) {
+            System.out.println("  gave up waiting for " + inFlight() + " requests");
+        }
+        workers.shutdownNow();
+    }
+
+    private int inFlight() {
+        return maxOutstanding - outstanding.availablePermits();
+    }
+
+    private void send(PlannedRequest planned, long due, boolean measured) {
+        String route = planned.route();
+        try {
+            int status;
+            if (planned.role == PlannedRequest.Role.AUTH) {
+                status = authClient.post(planned.pathAndQuery, planned.body == null ? "{}" : planned.body).status;
+            } else {
+                HttpRequest.Builder builder = HttpRequest.newBuilder(base.resolve(planned.pathAndQuery))
+                        .timeout(Duration.ofSeconds(30));
+                if (planned.session != null) {
+                    builder.header("Authorization", "Bearer " + planned.session.token);
+                }
+                if (planned.body != null) {
+                    builder.header("Content-Type", "application/json")
+                            .method(planned.method, HttpRequest.BodyPublishers.ofString(planned.body));
+                } else {
+                    builder.method(planned.method, HttpRequest.BodyPublishers.noBody());
+                }
+                status = client.send(builder.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            }
+            if (measured) stats.record(route, status, System.nanoTime() - due);
+        } catch (IOException e) {
+            if (measured) stats.recordIoError(route, System.nanoTime() - due);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
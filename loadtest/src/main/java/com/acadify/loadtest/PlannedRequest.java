@@ -0,0 +1,56 @@
+package com.acadify.loadtest;
+
+/**
+ * One request on the schedule: when it is due (relative to the start of the run), what to
+ * send, and which session role must send it.
+ */
+final class PlannedRequest {
+
+    final long offsetNanos;
+    final String method;
+    final String pathAndQuery;
+    final String body;
+    final Role role;
+    final Session session;
+
+    enum Role { AUTH, STUDENT, TEACHER, ADMIN }
+
+    PlannedRequest(long offsetNanos, String method, String pathAndQuery, String body, Role role, Session session) {
+        this.offsetNanos = offsetNanos;
+        this.method = method;
+        this.pathAndQuery = pathAndQuery;
+        this.body = body;
+        this.role = role;
+        this.session = session;
+    }
+
+    /**
+     * Route label used in the report: method and path without the query string
+     */
+    String route() {
+        int q = pathAndQuery.indexOf('?');
+        return method + " " + (q < 0 ? pathAndQuery : pathAndQuery.substring(0, q));
+    }
+
+    static Role roleForPath(String path) {
+        if (path.startsWith("/auth/")) return Role.AUTH;
+        if (path.startsWith("/teacher/")) return Role.TEACHER;
+        if (path.startsWith("/admin/")) return Role.ADMIN;
+        return Role.STUDENT;
+    }
+
+    /**
+     * A logged-in account and the fixture ids its requests may reference
+     */
+    static final class Session {
+        final String email;
+        final String token;
+        final SyntheticInstitution.TeacherFixture teacher;
+
+        Session(String email, String token, SyntheticInstitution.TeacherFixture teacher) {
+            this.email = email;
+            this.token = token;
+            this.teacher = teacher;
+        }
+    }
+}
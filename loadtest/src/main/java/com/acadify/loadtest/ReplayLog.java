@@ -0,0 +1,90 @@
+package com.acadify.loadtest;
+
+import com.acadify.loadtest.PlannedRequest.Role;
+import com.acadify.loadtest.PlannedRequest.Session;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Request log in a tab-separated format, one request per line:
+ * <pre>
+ *   timestamp_ms  METHOD  /path?query  body
+ * </pre>
+ * Timestamps may be epoch or relative milliseconds; only differences matter. Use "-" for
+ * an empty body. Lines starting with '#' are ignored. Session tokens cannot be replayed,
+ * so each line is sent with a live session of the role its path prefix implies.
+ * <p>
+ * {@code run --record} writes its generated schedule in this format, and reading it back
+ * at a speed factor of N compresses every gap N-fold.
+ */
+final class ReplayLog implements Schedule {
+
+    private final BufferedReader reader;
+    private final double speed;
+    private final Map<Role, List<Session>> sessions;
+    private final SplittableRandom random = new SplittableRandom(7);
+    private long firstTimestamp = -1;
+    private long lastTimestamp = -1;
+    private int lineNumber;
+
+    ReplayLog(Path file, double speed, Map<Role, List<Session>> sessions) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        this.speed = speed;
+        this.sessions = sessions;
+    }
+
+    @Override
+    public PlannedRequest next() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] cols = line.split("\t", 4);
+                if (cols.length < 3) {
+                    throw new IllegalArgumentException("Replay log line " + lineNumber + " needs at least 3 columns");
+                }
+                long timestamp = Long.parseLong(cols[0].trim());
+                if (firstTimestamp < 0) firstTimestamp = timestamp;
+                if (timestamp < lastTimestamp) {
+                    throw new IllegalArgumentException("Replay log line " + lineNumber + " goes back in time");
+                }
+                lastTimestamp = timestamp;
+                String path = cols[2].trim();
+                String body = cols.length > 3 && !cols[3].equals("-") ? cols[3] : null;
+                Role role = PlannedRequest.roleForPath(path);
+                List<Session> pool = sessions.get(role);
+                Session session = role == Role.AUTH || pool == null || pool.isEmpty() ? null
+                        : pool.get(random.nextInt(pool.size()));
+                long offset = (long) ((timestamp - firstTimestamp) * 1_000_000L / speed);
+                return new PlannedRequest(offset, cols[1].trim(), path, body, role, session);
+            }
+            reader.close();
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Append a planned request to a log being recorded
+     */
+    static void write(BufferedWriter out, long startEpochMs, PlannedRequest request) throws IOException {
+        out.write(Long.toString(startEpochMs + request.offsetNanos / 1_000_000L));
+        out.write('\t');
+        out.write(request.method);
+        out.write('\t');
+        out.write(request.pathAndQuery);
+        out.write('\t');
+        out.write(request.body == null ? "-" : request.body);
+        out.write('\n');
+    }
+}
@@ -0,0 +1,92 @@
+package com.acadify.loadtest;
+
+import com.acadify.Histogram;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-route outcome counts and latency, measured from each request's scheduled time
+ * rather than from when it was actually sent, so a stalled server shows up as latency
+ * instead of silently lowering the offered load.
+ */
+final class RouteStats {
+
+    private static final class Route {
+        final Histogram latency = new Histogram();
+        final LongAdder success = new LongAdder();
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder ioErrors = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+    }
+
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    void record(String route, int status, long latencyNanos) {
+        Route r = route(route);
+        r.latency.record(latencyNanos);
+        if (status >= 500) r.serverErrors.increment();
+        else if (status >= 400) r.clientErrors.increment();
+        else r.success.increment();
+    }
+
+    void recordIoError(String route, long latencyNanos) {
+        Route r = route(route);
+        r.latency.record(latencyNanos);
+        r.ioErrors.increment();
+    }
+
+    /**
+     * A request that was due but not sent because too many were already outstanding
+     */
+    void recordDropped(String route) {
+        route(route).dropped.increment();
+    }
+
+    long completed() {
+        long total = 0;
+        for (Route r : routes.values()) total += r.latency.getCount();
+        return total;
+    }
+
+    String report(double seconds) {
+        StringBuilder sb = new StringBuilder();
+        String header = String.format(Locale.ROOT, "%-42s %8s %8s %7s %6s %6s %6s %6s %9s %9s %9s %9s %9s%n",
+                "route", "count", "req/s", "2xx/3xx", "4xx", "5xx", "io", "drop", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        sb.append(header);
+        Route all = new Route();
+        long allCount = 0;
+        for (Map.Entry<String, Route> entry : new TreeMap<>(routes).entrySet()) {
+            Route r = entry.getValue();
+            allCount += r.latency.getCount();
+            appendRow(sb, entry.getKey(), r, seconds);
+        }
+        for (Route r : routes.values()) {
+            all.success.add(r.success.sum());
+            all.clientErrors.add(r.clientErrors.sum());
+            all.serverErrors.add(r.serverErrors.sum());
+            all.ioErrors.add(r.ioErrors.sum());
+            all.dropped.add(r.dropped.sum());
+        }
+        sb.append(String.format(Locale.ROOT, "%-42s %8d %8.1f %7d %6d %6d %6d %6d%n", "TOTAL", allCount, allCount / seconds,
+                all.success.sum(), all.clientErrors.sum(), all.serverErrors.sum(), all.ioErrors.sum(), all.dropped.sum()));
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, String name, Route r, double seconds) {
+        Histogram h = r.latency;
+        long count = h.getCount();
+        sb.append(String.format(Locale.ROOT, "%-42s %8d %8.1f %7d %6d %6d %6d %6d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                name, count, count / seconds, r.success.sum(), r.clientErrors.sum(), r.serverErrors.sum(),
+                r.ioErrors.sum(), r.dropped.sum(),
+                h.valueAtQuantile(0.50) / 1e6, h.valueAtQuantile(0.90) / 1e6, h.valueAtQuantile(0.99) / 1e6,
+                h.valueAtQuantile(0.999) / 1e6, h.valueAtQuantile(1.0) / 1e6));
+    }
+
+    private Route route(String route) {
+        return routes.computeIfAbsent(route, k -> new Route());
+    }
+}
@@ -0,0 +1,12 @@
+package com.acadify.loadtest;
+
+/**
+ * Source of planned requests in non-decreasing offset order.
+ */
+interface Schedule {
+
+    /**
+     * The next request, or null when the schedule is exhausted
+     */
+    PlannedRequest next();
+}
@@ -0,0 +1,80 @@
+package com.acadify.loadtest;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The server under test, started as a separate JVM from the harness's own classpath,
+ * which already contains the backend and the PostgreSQL driver. Running it
+ * out-of-process keeps the load generator's threads and allocation out of the
+ * server's profile.
+ */
+final class ServerProcess implements AutoCloseable {
+
+    private final Process process;
+
+    private ServerProcess(Process process) {
+        this.process = process;
+    }
+
+    static ServerProcess start(TestDatabase db, List<String> jvmOptions, Map<String, String> extraEnv, Path logFile)
+            throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("com.acadify.MainApplication");
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile());
+        builder.environment().put("DB_URL", db.getJdbcUrl());
+        builder.environment().put("DB_USER", db.getUser());
+        builder.environment().put("DB_PASSWORD", db.getPassword());
+        builder.environment().putAll(extraEnv);
+        System.out.println("Starting server, output in " + logFile);
+        return new ServerProcess(builder.start());
+    }
+
+    /**
+     * Block until the server reports ready (listening and warmed up), failing early if the process exits
+     */
+    void awaitReady(URI base, long timeoutSeconds) throws IOException, InterruptedException {
+        URL probe = base.resolve("/health/ready").toURL();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (System.nanoTime() - deadline < 0) {
+            if (!process.isAlive()) {
+                throw new IOException("Server exited with code " + process.exitValue() + " during startup");
+            }
+            try {
+                HttpURLConnection conn = (HttpURLConnection) probe.openConnection();
+                conn.setConnectTimeout(500);
+                conn.setReadTimeout(2000);
+                int status = conn.getResponseCode();
+                conn.disconnect();
+                if (status == 200) return;
+            } catch (IOException notYet) {
+                // not listening yet
+            }
+            Thread.sleep(250);
+        }
+        throw new IOException("Server did not become ready within " + timeoutSeconds + "s");
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
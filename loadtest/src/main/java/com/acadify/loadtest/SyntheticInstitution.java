@@ -0,0 +1,181 @@
+package com.acadify.loadtest;
+
+import com.acadify.PBKDF2Util;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates a synthetic institution directly in the database: users, student, teacher and
+ * admin profiles, subjects for eight semesters, marks for every semester a student has
+ * completed, pending doubts and an active term. Everything is set-based SQL seeded with
+ * a fixed random seed, so a given size produces the same data each time.
+ * <p>
+ * Every account shares one password. It is hashed once with the server's own
+ * PBKDF2Util, so logins exercise the real verification path.
+ */
+final class SyntheticInstitution {
+
+    static final String PASSWORD = "LoadTest#2025";
+    static final int SEMESTERS = 8;
+
+    private final int students;
+    private final int teachers;
+    private final int admins;
+    private final int subjectsPerSemester;
+
+    SyntheticInstitution(int students, int teachers, int admins, int subjectsPerSemester) {
+        this.students = students;
+        this.teachers = teachers;
+        this.admins = admins;
+        this.subjectsPerSemester = subjectsPerSemester;
+    }
+
+    static String studentEmail(int n) {
+        return "student" + n + "@load.acadify.test";
+    }
+
+    static String teacherEmail(int n) {
+        return "teacher" + n + "@load.acadify.test";
+    }
+
+    static String adminEmail(int n) {
+        return "admin" + n + "@load.acadify.test";
+    }
+
+    void generate(Connection conn) throws SQLException {
+        String hash = PBKDF2Util.hashPassword(PASSWORD);
+        long start = System.nanoTime();
+        conn.setAutoCommit(false);
+        try (Statement st = conn.createStatement()) {
+            st.execute("SELECT setseed(0.42)");
+
+            insertUsers(conn, "STUDENT", "student", students, hash);
+            insertUsers(conn, "TEACHER", "teacher", teachers, hash);
+            insertUsers(conn, "ADMIN", "admin", admins, hash);
+
+            st.execute("INSERT INTO students (user_id, name, age, roll_number, stream, cgpa) "
+                    + "SELECT u.user_id, 'Student ' || u.user_id, 17 + (u.user_id % 7), "
+                    + "'LT' || lpad(u.user_id::text, 8, '0'), "
+                    + "(ARRAY['Computer Science','Electronics','Mechanical','Civil','Mathematics'])[1 + u.user_id % 5], 0 "
+                    + "FROM users u WHERE u.role = 'STUDENT' ORDER BY u.user_id");
+            st.execute("INSERT INTO teachers (user_id, name, department, designation) "
+                    + "SELECT u.user_id, 'Teacher ' || u.user_id, "
+                    + "(ARRAY['Computer Science','Electronics','Mechanical','Civil','Mathematics'])[1 + u.user_id % 5], "
+                    + "(ARRAY['Professor','Associate Professor','Assistant Professor'])[1 + u.user_id % 3] "
+                    + "FROM users u WHERE u.role = 'TEACHER' ORDER BY u.user_id");
+            st.execute("INSERT INTO admins (user_id, name) "
+                    + "SELECT u.user_id, 'Admin ' || u.user_id FROM users u WHERE u.role = 'ADMIN' ORDER BY u.user_id");
+
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO subjects (subject_name, semester, teacher_id) "
+                    + "SELECT 'Subject ' || sem || '.' || n, sem, "
+                    + "(SELECT teacher_id FROM teachers ORDER BY teacher_id OFFSET ((sem * ? + n) % ?) LIMIT 1) "
+                    + "FROM generate_series(1, ?) sem, generate_series(1, ?) n")) {
+                ps.setInt(1, subjectsPerSemester);
+                ps.setInt(2, teachers);
+                ps.setInt(3, SEMESTERS);
+                ps.setInt(4, subjectsPerSemester);
+                ps.executeUpdate();
+            }
+
+            // Students are spread across semesters; each has marks for every subject up to theirs.
+            // Roughly a quarter of marks fall below 40, which feeds the backlog and risk reports.
+            st.execute("INSERT INTO marks (student_id, subject_id, marks_obtained, semester) "
+                    + "SELECT s.student_id, sub.subject_id, round((20 + random() * 80)::numeric, 2), sub.semester "
+                    + "FROM students s JOIN subjects sub ON sub.semester <= 1 + (s.student_id % " + SEMESTERS + ")");
+            st.execute("UPDATE students s SET cgpa = round(LEAST(10, a.avg_marks / 10), 2) "
+                    + "FROM (SELECT student_id, avg(marks_obtained) AS avg_marks FROM marks GROUP BY student_id) a "
+                    + "WHERE a.student_id = s.student_id");
+
+            st.execute("INSERT INTO doubts (student_id, teacher_id, question) "
+                    + "SELECT s.student_id, sub.teacher_id, 'Could you go over question ' || (s.student_id % 9 + 1) "
+                    + "|| ' from ' || sub.subject_name || ' again?' "
+                    + "FROM students s JOIN subjects sub ON sub.semester = 1 + (s.student_id % " + SEMESTERS + ") "
+                    + "WHERE random() < 0.05");
+
+            st.execute("INSERT INTO academic_terms (academic_year, semester, is_active) VALUES ('2025-2026', 1, TRUE)");
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute("ANALYZE");
+        }
+        System.out.printf("Generated %d students, %d teachers, %d admins, %d subjects in %.1fs%n",
+                students, teachers, admins, subjectsPerSemester * SEMESTERS, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void insertUsers(Connection conn, String role, String prefix, int count, String hash) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO users (email, password, role) "
+                + "SELECT ? || g || '@load.acadify.test', ?, ? FROM generate_series(1, ?) g ORDER BY g")) {
+            ps.setString(1, prefix);
+            ps.setString(2, hash);
+            ps.setString(3, role);
+            ps.setInt(4, count);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Per-teacher ids the traffic mix needs to build valid requests
+     */
+    static final class TeacherFixture {
+        final List<int[]> subjects = new ArrayList<>();
+        final List<Integer> markIds = new ArrayList<>();
+    }
+
+    /**
+     * Load, for teacher accounts teacher1..teacherN, the subjects they teach and a sample of marks they may update
+     */
+    static Map<String, TeacherFixture> loadTeacherFixtures(Connection conn, int count) throws SQLException {
+        Map<String, TeacherFixture> fixtures = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT u.email, sub.subject_id, sub.semester FROM subjects sub "
+                + "JOIN teachers t ON t.teacher_id = sub.teacher_id JOIN users u ON u.user_id = t.user_id")) {
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                fixtures.computeIfAbsent(rs.getString(1), e -> new TeacherFixture())
+                        .subjects.add(new int[]{rs.getInt(2), rs.getInt(3)});
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT email, mark_id FROM (SELECT u.email, m.mark_id, "
+                + "row_number() OVER (PARTITION BY u.email ORDER BY m.mark_id) AS rn FROM marks m "
+                + "JOIN subjects sub ON sub.subject_id = m.subject_id JOIN teachers t ON t.teacher_id = sub.teacher_id "
+                + "JOIN users u ON u.user_id = t.user_id) x WHERE rn <= 200")) {
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                fixtures.computeIfAbsent(rs.getString(1), e -> new TeacherFixture()).markIds.add(rs.getInt(2));
+            }
+        }
+        fixtures.keySet().removeIf(email -> {
+            int n = Integer.parseInt(email.substring("teacher".length(), email.indexOf('@')));
+            return n > count;
+        });
+        return fixtures;
+    }
+
+    /**
+     * Teacher ids students can address doubts to
+     */
+    static List<Integer> loadTeacherIds(Connection conn) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT teacher_id FROM teachers")) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+}
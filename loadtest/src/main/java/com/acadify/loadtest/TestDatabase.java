@@ -0,0 +1,147 @@
+package com.acadify.loadtest;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The database the server under test talks to: either a throwaway embedded PostgreSQL
+ * started in-process, or an existing test instance reached over JDBC.
+ */
+final class TestDatabase implements AutoCloseable {
+
+    private final String jdbcUrl;
+    private final String user;
+    private final String password;
+    private final EmbeddedPostgres embedded;
+
+    private TestDatabase(String jdbcUrl, String user, String password, EmbeddedPostgres embedded) {
+        this.jdbcUrl = jdbcUrl;
+        this.user = user;
+        this.password = password;
+        this.embedded = embedded;
+    }
+
+    static TestDatabase embedded() throws IOException {
+        EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+        String url = "jdbc:postgresql://localhost:" + postgres.getPort() + "/postgres";
+        return new TestDatabase(url, "postgres", "postgres", postgres);
+    }
+
+    static TestDatabase external(String jdbcUrl, String user, String password) {
+        return new TestDatabase(jdbcUrl, user, password, null);
+    }
+
+    String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    String getUser() {
+        return user;
+    }
+
+    String getPassword() {
+        return password;
+    }
+
+    Connection connect() throws SQLException {
+        return DriverManager.getConnection(jdbcUrl, user, password);
+    }
+
+    /**
+     * Recreate the schema and stored routines from the repository's SQL files.
+     * schema.sql drops every table first, so this wipes any previous run.
+     * Statements run one at a time and a failing one is reported and skipped, the same
+     * as feeding the files to psql; procedures.sql redefines some functions with a
+     * different signature, and the later definition is the one the server expects.
+     */
+    void loadSchema(Path sqlDir) throws IOException, SQLException {
+        try (Connection conn = connect(); Statement st = conn.createStatement()) {
+            for (String file : new String[]{"schema.sql", "procedures.sql"}) {
+                String sql = Files.readString(sqlDir.resolve(file), StandardCharsets.UTF_8);
+                int failed = 0;
+                for (String statement : splitStatements(sql)) {
+                    try {
+                        st.execute(statement);
+                    } catch (SQLException e) {
+                        failed++;
+                        System.out.println(file + ": " + e.getMessage().lines().findFirst().orElse(""));
+                    }
+                }
+                System.out.println("Loaded " + file + (failed == 0 ? "" : " (" + failed + " statements failed)"));
+            }
+        }
+    }
+
+    /**
+     * Split a script on top-level semicolons, skipping comments, quoted strings and
+     * dollar-quoted function bodies
+     */
+    static List<String> splitStatements(String sql) {
+        List<String> statements = new ArrayList<>();
+        int start = 0;
+        int i = 0;
+        int n = sql.length();
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                int eol = sql.indexOf('\n', i);
+                i = eol < 0 ? n : eol + 1;
+            } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+            } else if (c == '\'') {
+                i++;
+                while (i < n) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < n && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+            } else if (c == '$') {
+                int close = sql.indexOf('$', i + 1);
+                String tag = close < 0 ? null : sql.substring(i, close + 1);
+                if (tag != null && tag.matches("\\$[A-Za-z_]*\\$")) {
+                    int end = sql.indexOf(tag, close + 1);
+                    i = end < 0 ? n : end + tag.length();
+                } else {
+                    i++;
+                }
+            } else if (c == ';') {
+                addStatement(statements, sql.substring(start, i));
+                start = ++i;
+            } else {
+                i++;
+            }
+        }
+        addStatement(statements, sql.substring(start));
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, String statement) {
+        String trimmed = statement.strip();
+        if (!trimmed.isEmpty() && !trimmed.lines().allMatch(line -> line.isBlank() || line.strip().startsWith("--"))) {
+            statements.add(trimmed);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (embedded != null) {
+            embedded.close();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.acadify.loadtest;
+
+import com.acadify.loadtest.PlannedRequest.Role;
+import com.acadify.loadtest.PlannedRequest.Session;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * Open-loop request generator. Arrivals form a Poisson process at the configured total
+ * rate, with exponential gaps drawn independently of how fast the server responds.
+ * Each arrival picks a route by weight and a random session of the route's role.
+ * The default weights approximate a term in progress: mostly students reading their
+ * reports, teachers working through doubts and marks, and occasional admin dashboards.
+ */
+final class TrafficMix implements Schedule {
+
+    private static final class Route {
+        final Role role;
+        final double weight;
+        final Function<Session, Template> build;
+
+        Route(Role role, double weight, Function<Session, Template> build) {
+            this.role = role;
+            this.weight = weight;
+            this.build = build;
+        }
+    }
+
+    private final SplittableRandom random;
+    private final double ratePerNano;
+    private final Map<Role, List<Session>> sessions;
+    private final List<Integer> teacherIds;
+    private final int studentAccounts;
+    private final List<Route> routes = new ArrayList<>();
+    private final double[] cumulative;
+    private long offsetNanos;
+
+    private static final class Template {
+        final String method;
+        final String path;
+        final String body;
+
+        Template(String method, String path, String body) {
+            this.method = method;
+            this.path = path;
+            this.body = body;
+        }
+    }
+
+    TrafficMix(double requestsPerSecond, Map<Role, List<Session>> sessions, List<Integer> teacherIds,
+               int studentAccounts, Map<Role, Double> roleScale, long seed) {
+        this.random = new SplittableRandom(seed);
+        this.ratePerNano = requestsPerSecond / 1e9;
+        this.sessions = sessions;
+        this.teacherIds = teacherIds;
+        this.studentAccounts = studentAccounts;
+
+        add(Role.STUDENT, 10, s -> get("/student/report"));
+        add(Role.STUDENT, 8, s -> get("/student/semester-performance"));
+        add(Role.STUDENT, 8, s -> get("/student/marks-trend"));
+        add(Role.STUDENT, 6, s -> get("/student/weak-subjects"));
+        add(Role.STUDENT, 5, s -> get("/student/doubts"));
+        add(Role.STUDENT, 4, s -> get("/student/activity"));
+        add(Role.STUDENT, 2, s -> post("/student/doubt", "{\"teacher_id\":\"" + pick(this.teacherIds)
+                + "\",\"question\":\"Could you explain the last example from lecture " + (1 + random.nextInt(40)) + " again\"}"));
+
+        add(Role.TEACHER, 5, s -> get("/teacher/doubts"));
+        add(Role.TEACHER, 6, s -> {
+            int[] subject = pick(s.teacher.subjects);
+            return get("/teacher/class-performance?subject_id=" + subject[0] + "&semester=" + subject[1]);
+        });
+        add(Role.TEACHER, 2, s -> get("/teacher/activity"));
+        add(Role.TEACHER, 3, s -> s.teacher.markIds.isEmpty() ? get("/teacher/doubts")
+                : put("/teacher/marks", "{\"mark_id\":\"" + pick(s.teacher.markIds) + "\",\"marks_obtained\":\""
+                        + String.format(Locale.ROOT, "%.2f", 20 + random.nextDouble() * 80) + "\"}"));
+
+        add(Role.ADMIN, 2, s -> get("/admin/top-performers?limit=10"));
+        add(Role.ADMIN, 1, s -> get("/admin/lowest-performers?limit=10"));
+        add(Role.ADMIN, 1, s -> get("/admin/backlogs"));
+        add(Role.ADMIN, 1, s -> get("/admin/high-risk"));
+        add(Role.ADMIN, 1, s -> get("/admin/stream-performance"));
+        add(Role.ADMIN, 1, s -> get("/admin/activity"));
+
+        add(Role.AUTH, 3, s -> post("/auth/login", "{\"email\":\""
+                + SyntheticInstitution.studentEmail(1 + random.nextInt(this.studentAccounts))
+                + "\",\"password\":\"" + SyntheticInstitution.PASSWORD + "\"}"));
+
+        routes.removeIf(r -> r.role != Role.AUTH && sessions.getOrDefault(r.role, List.of()).isEmpty());
+        cumulative = new double[routes.size()];
+        double total = 0;
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            total += route.weight * roleScale.getOrDefault(route.role, 1.0);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    /**
+     * Parse "student=70,teacher=20,admin=7,auth=3" into per-role multipliers of the default weights
+     */
+    static Map<Role, Double> parseRoleScale(String spec) {
+        Map<Role, Double> scale = new EnumMap<>(Role.class);
+        if (spec == null || spec.isBlank()) return scale;
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            scale.put(Role.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)), Double.parseDouble(kv[1].trim()));
+        }
+        return scale;
+    }
+
+    @Override
+    public PlannedRequest next() {
+        offsetNanos += (long) (-Math.log(1.0 - random.nextDouble()) / ratePerNano);
+        double u = random.nextDouble();
+        int index = 0;
+        while (index < cumulative.length - 1 && cumulative[index] < u) index++;
+        Route route = routes.get(index);
+        Session session = route.role == Role.AUTH ? null : pick(sessions.get(route.role));
+        Template template = route.build.apply(session);
+        return new PlannedRequest(offsetNanos, template.method, template.path, template.body, route.role, session);
+    }
+
+    private void add(Role role, double weight, Function<Session, Template> build) {
+        routes.add(new Route(role, weight, build));
+    }
+
+    private static Template get(String path) {
+        return new Template("GET", path, null);
+    }
+
+    private static Template post(String path, String body) {
+        return new Template("POST", path, body);
+    }
+
+    private static Template put(String path, String body) {
+        return new Template("PUT", path, body);
+    }
+
+    private <T> T pick(List<T> list) {
+        return list.get(random.nextInt(list.size()));
+    }
+}
@@ -140,6 +140,7 @@ CREATE INDEX IF NOT EXISTS idx_activity_logs_created_at ON activity_logs(created
 CREATE INDEX IF NOT EXISTS idx_activity_logs_action ON activity_logs(action);
 CREATE INDEX IF NOT EXISTS idx_activity_logs_entity_type ON activity_logs(entity_type);
 CREATE INDEX IF NOT EXISTS idx_activity_logs_user_created ON activity_logs(user_id, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_activity_logs_entity ON activity_logs(entity_type, entity_id);
 
 CREATE INDEX IF NOT EXISTS idx_password_resets_reset_token ON password_resets(reset_token);
 CREATE INDEX IF NOT EXISTS idx_password_resets_user_id ON password_resets(user_id);